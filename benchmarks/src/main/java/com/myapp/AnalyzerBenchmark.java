@@ -0,0 +1,117 @@
+package com.myapp;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.myapp.CodeStatsCore.CodeMetrics;
+import com.myapp.CodeStatsCore.FunctionStat;
+import com.myapp.CodeStatsCore.Language;
+
+/**
+ * 各语言 CodeAnalyzer 的基准测试：analyze（函数长度）和 analyzeCodeMetrics（代码量，String / UTF-8 字节两种入口），
+ * 输入为 CorpusGenerator 生成的小 / 中 / 大三种规模的单个文件（固定种子）。
+ *
+ * 除每秒操作数外，Counters 还给出 lines（行/秒）和 megabytes（MB/秒）；
+ * 每次操作的分配量用 -prof gc 查看（gc.alloc.rate.norm，单位 B/op）：
+ *
+ *   java -jar target/benchmarks.jar AnalyzerBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class AnalyzerBenchmark {
+
+    @Param({"JAVA", "PYTHON", "C", "CPP", "CSHARP"})
+    public Language language;
+
+    @Param({"SMALL", "MEDIUM", "HUGE"})
+    public Size size;
+
+    /** 输入规模：单个文件中的函数个数 */
+    public enum Size {
+        SMALL(20), MEDIUM(1_000), HUGE(20_000);
+
+        final int functions;
+
+        Size(int functions) {
+            this.functions = functions;
+        }
+    }
+
+    private CodeAnalyzer analyzer;
+    private String code;
+    private ByteBuffer utf8;
+    private int lines;
+    private double megabytes;
+
+    /** 吞吐量计数器：每次操作累加处理的行数和字节数，JMH 按秒折算 */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long lines;
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lines = 0;
+            megabytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        analyzer = switch (language) {
+            case JAVA -> new JavaAnalyzer();
+            case PYTHON -> new PythonAnalyzer();
+            case C, CPP -> new CppAnalyzer();
+            case CSHARP -> new CSharpAnalyzer();
+        };
+        CorpusGenerator.Expected expected = new CorpusGenerator.Expected();
+        code = CorpusGenerator.source(language, new CorpusGenerator.Config(), size.functions, expected);
+        byte[] bytes = code.getBytes(StandardCharsets.UTF_8);
+        utf8 = ByteBuffer.allocateDirect(bytes.length).put(bytes).flip();
+        lines = expected.totalLines;
+        megabytes = bytes.length / 1e6;
+    }
+
+    @Benchmark
+    public List<FunctionStat> analyze(Counters counters) {
+        counters.lines += lines;
+        counters.megabytes += megabytes;
+        return analyzer.analyze(code, "Generated");
+    }
+
+    @Benchmark
+    public CodeMetrics analyzeCodeMetrics(Counters counters) {
+        counters.lines += lines;
+        counters.megabytes += megabytes;
+        return analyzer.analyzeCodeMetrics(code, "Generated");
+    }
+
+    /** 字节入口（服务读取文件 / 内存映射时走的路径），不含编码开销 */
+    @Benchmark
+    public CodeMetrics analyzeCodeMetricsUtf8(Counters counters) {
+        counters.lines += lines;
+        counters.megabytes += megabytes;
+        return analyzer.analyzeCodeMetrics(utf8.duplicate(), "Generated");
+    }
+}
@@ -0,0 +1,156 @@
+package com.myapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.myapp.CodeStatsCore.FunctionStat;
+import com.myapp.CodeStatsCore.Language;
+
+/**
+ * CSharpAnalyzer 声明识别：按词法单元驱动的 CSharpScanner 与原先逐行匹配类型 / 命名空间正则
+ * （每行 String.matches 两次，另加 substring / trim）的实现对比。
+ * 输入为 CorpusGenerator 生成的单个 C# 文件，typeDepth 为嵌套类层数。
+ *
+ * Counters 的 lines 为每秒处理的行数；分配量用 -prof gc 查看。
+ *
+ *   java -jar target/benchmarks.jar CSharpAnalyzerBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CSharpAnalyzerBenchmark {
+
+    @Param({"0", "3"})
+    public int typeDepth;
+
+    @Param({"5000"})
+    public int functions;
+
+    private String code;
+    private int lines;
+    private CSharpAnalyzer analyzer;
+
+    /** 每次操作累加处理的行数，JMH 按秒折算 */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long lines;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lines = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        analyzer = new CSharpAnalyzer();
+        CorpusGenerator.Config config = new CorpusGenerator.Config();
+        config.typeDepth = typeDepth;
+        CorpusGenerator.Expected expected = new CorpusGenerator.Expected();
+        code = CorpusGenerator.source(Language.CSHARP, config, functions, expected);
+        lines = expected.totalLines;
+    }
+
+    @Benchmark
+    public List<FunctionStat> tokenScanner(Counters counters) {
+        counters.lines += lines;
+        return analyzer.analyze(code, "Generated.cs");
+    }
+
+    @Benchmark
+    public List<FunctionStat> legacyLineRegex(Counters counters) {
+        counters.lines += lines;
+        return LegacyCSharp.analyze(code, "Generated.cs");
+    }
+
+    /** 原先的 CSharpAnalyzer.analyze：CFamilyLexer 逐行，类型 / 命名空间用正则识别，函数头用 functionHeader */
+    static final class LegacyCSharp {
+        private static final int SCOPE = -2;
+
+        private LegacyCSharp() {}
+
+        static List<FunctionStat> analyze(String code, String filePath) {
+            List<FunctionStat> out = new ArrayList<>();
+            Deque<String> stack = new ArrayDeque<>();
+            CFamilyLexer lexer = new CFamilyLexer(code, CFamilyLexer.CSHARP, (tag, line) -> {
+                if (tag == SCOPE) {
+                    if (!stack.isEmpty()) stack.pop();
+                } else {
+                    CFamilyLexer.closeFunction(out, tag, line);
+                }
+            });
+
+            while (lexer.nextLine()) {
+                int s = lexer.contentStart();
+                int e = lexer.lineEnd();
+                if (!lexer.inCode() || s == e || code.charAt(s) == '#' || code.startsWith("//", s)
+                        || code.startsWith("/*", s)) {
+                    continue;
+                }
+                String trimmed = code.substring(s, e).trim();
+
+                if (trimmed.matches("^\\s*(public|private|internal)?\\s*(class|interface|struct)\\s+[\\w<>]+.*")) {
+                    String typeName = trimmed.replaceAll("^\\s*(public|private|internal)?\\s*(class|interface|struct)\\s+", "")
+                            .split("[\\s:{]")[0];
+                    stack.push(typeName);
+                    lexer.openNext(SCOPE);
+                    continue;
+                }
+
+                if (trimmed.matches("^\\s*namespace\\s+[\\w.]+.*")) {
+                    String namespace = trimmed.replaceFirst("^\\s*namespace\\s+", "").split("[\\s{]")[0];
+                    stack.push(namespace);
+                    lexer.openNext(SCOPE);
+                    continue;
+                }
+
+                int body = lexer.functionHeader();
+                if (body >= 0) {
+                    String funcName = lexer.name();
+                    if ("if".equals(funcName) || "for".equals(funcName) || "while".equals(funcName) ||
+                            "foreach".equals(funcName) || "using".equals(funcName) || "catch".equals(funcName)) {
+                        continue;
+                    }
+                    if (code.charAt(body) == '{') {
+                        String qualName = funcName;
+                        if (!stack.isEmpty()) {
+                            List<String> pathElements = new ArrayList<>(stack);
+                            Collections.reverse(pathElements);
+                            qualName = String.join(".", pathElements) + "." + funcName;
+                        }
+                        boolean isMethod = stack.stream().anyMatch(t ->
+                                t.contains("class") || t.contains("struct"));
+                        boolean isNested = stack.size() > 1;
+                        int line = lexer.line();
+                        out.add(new FunctionStat(filePath, qualName, line, line,
+                                isMethod, isNested, funcName.startsWith("async")));
+                        lexer.openAt(body, out.size() - 1);
+                    }
+                }
+            }
+            return out;
+        }
+    }
+}
@@ -0,0 +1,555 @@
+package com.myapp;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.myapp.CodeStatsCore.AnalyzeResult;
+import com.myapp.CodeStatsCore.CodeMetrics;
+import com.myapp.CodeStatsCore.Language;
+
+/**
+ * 可重复的合成源代码语料生成器：同样的 Config（含种子）每次生成逐字节相同的目录树。
+ *
+ * 生成时逐行记录每一行是代码、注释还是空行，以及写出的函数定义个数，
+ * 连同参数一起写入根目录的 expected.json；分析结果与之对比即可同时检查正确性。
+ * 生成的代码避开了各分析器的已知歧义（例如 else if），
+ * 期望值按“实际写出的定义”计算，与分析器的实现无关。
+ *
+ *   java -cp target/benchmarks.jar com.myapp.CorpusGenerator 输出目录 [--seed 42] [--files 100] ... [--check]
+ */
+public final class CorpusGenerator {
+
+    public static final String MANIFEST = "expected.json";
+
+    /** 函数长度（行数）的分布 */
+    public enum LengthDistribution { FIXED, UNIFORM, LOG_NORMAL }
+
+    /** 生成参数 */
+    public static class Config {
+        public long seed = 42;
+        public Set<Language> languages = EnumSet.allOf(Language.class);
+        public int filesPerLanguage = 100;
+        public int functionsPerFile = 20;       // 平均值，每个文件在 [1/2, 3/2] 倍之间均匀取值
+        public LengthDistribution lengthDistribution = LengthDistribution.LOG_NORMAL;
+        public int meanFunctionLength = 15;     // 函数的平均行数（含签名和结束行）
+        public int maxFunctionLength = 400;
+        public int blockDepth = 3;              // 函数体内 if / for / while 的最大嵌套层数
+        public int typeDepth = 1;               // 嵌套定义层数：Java / C# 嵌套类、Python 嵌套函数、C++ 类内方法；C 忽略
+        public double commentDensity = 0.15;    // 函数体内注释行的大致比例
+        public double blankDensity = 0.08;      // 函数体内空行的大致比例
+        public int lineLength = 40;             // 语句行的平均长度（字符），不足时用行尾注释补齐
+    }
+
+    /** 一种语言的期望结果 */
+    public static class Expected {
+        public int fileCount;
+        public int codeLines;
+        public int commentLines;
+        public int blankLines;
+        public int totalLines;
+        public int functions;                   // 写出的函数 / 方法定义个数
+        public long bytes;
+    }
+
+    /** expected.json 的内容 */
+    public static class Manifest {
+        public Config config;
+        public Map<String, Expected> languages = new LinkedHashMap<>();   // Language.name() -> 期望结果
+
+        public Expected expected(Language language) {
+            return languages.get(language.name());
+        }
+    }
+
+    private static final Gson GSON = new GsonBuilder().setPrettyPrinting().create();
+
+    private static final String[] WORDS = {
+            "value", "count", "index", "buffer", "total", "result", "state", "update", "check", "limit",
+            "offset", "length", "merge", "parse", "token", "cache", "entry", "level", "range", "step"
+    };
+
+    private CorpusGenerator() {}
+
+    /** 在 root 下生成语料并写出 expected.json；root 不存在时创建 */
+    public static Manifest generate(Config config, Path root) throws IOException {
+        Files.createDirectories(root);
+        Manifest manifest = new Manifest();
+        manifest.config = config;
+        Random random = new Random(config.seed);
+        for (Language language : Language.values()) {
+            if (!config.languages.contains(language)) continue;
+            Expected expected = new Expected();
+            Path dir = root.resolve(language.name().toLowerCase());
+            for (int i = 0; i < config.filesPerLanguage; i++) {
+                Path pkg = dir.resolve("p" + (i / 50));
+                Files.createDirectories(pkg);
+                int lo = Math.max(1, config.functionsPerFile / 2);
+                int hi = Math.max(lo, config.functionsPerFile * 3 / 2);
+                int functions = lo + random.nextInt(hi - lo + 1);
+                String name = "File" + i;
+                String code = new FileWriter(config, random, expected).write(language, pkg.getFileName().toString(), name, functions);
+                Files.writeString(pkg.resolve(name + extension(language)), code, StandardCharsets.UTF_8);
+            }
+            manifest.languages.put(language.name(), expected);
+        }
+        try (Writer out = Files.newBufferedWriter(root.resolve(MANIFEST), StandardCharsets.UTF_8)) {
+            GSON.toJson(manifest, out);
+        }
+        return manifest;
+    }
+
+    /** 生成单个文件的内容（不写磁盘），期望结果累加到 expected */
+    public static String source(Language language, Config config, int functions, Expected expected) {
+        return new FileWriter(config, new Random(config.seed), expected).write(language, "p0", "File0", functions);
+    }
+
+    public static Manifest readManifest(Path root) throws IOException {
+        try (Reader in = Files.newBufferedReader(root.resolve(MANIFEST), StandardCharsets.UTF_8)) {
+            return GSON.fromJson(in, Manifest.class);
+        }
+    }
+
+    /** 对比分析结果（MODE_BOTH）与期望，返回不一致的项，全部一致时为空 */
+    public static List<String> check(Expected expected, AnalyzeResult result) {
+        List<String> problems = new ArrayList<>();
+        CodeMetrics m = result.codeMetrics;
+        if (m != null) {
+            compare(problems, "fileCount", expected.fileCount, m.fileCount);
+            compare(problems, "codeLines", expected.codeLines, m.codeLines);
+            compare(problems, "commentLines", expected.commentLines, m.commentLines);
+            compare(problems, "blankLines", expected.blankLines, m.blankLines);
+            compare(problems, "totalLines", expected.totalLines, m.totalLines);
+        }
+        if (result.summary != null) {
+            compare(problems, "functions", expected.functions, result.summary.count);
+        }
+        return problems;
+    }
+
+    private static void compare(List<String> problems, String name, long expected, long actual) {
+        if (expected != actual) problems.add(name + ": expected " + expected + ", actual " + actual);
+    }
+
+    static String extension(Language language) {
+        return switch (language) {
+            case JAVA -> ".java";
+            case PYTHON -> ".py";
+            case C -> ".c";
+            case CPP -> ".cpp";
+            case CSHARP -> ".cs";
+        };
+    }
+
+    /** 逐行写出一个文件，同时按 LineClassifier 的规则累计期望值 */
+    private static class FileWriter {
+        private final Config config;
+        private final Random random;
+        private final Expected expected;
+        private final StringBuilder sb = new StringBuilder();
+        private String lineComment;
+        private int nextId;
+
+        FileWriter(Config config, Random random, Expected expected) {
+            this.config = config;
+            this.random = random;
+            this.expected = expected;
+        }
+
+        String write(Language language, String pkg, String name, int functions) {
+            switch (language) {
+                case JAVA -> java(pkg, name, functions);
+                case PYTHON -> python(name, functions);
+                case C -> c(name, functions);
+                case CPP -> cpp(name, functions);
+                case CSHARP -> csharp(pkg, name, functions);
+            }
+            // 以换行结尾：按行切分后最后还有一个空行
+            expected.totalLines++;
+            expected.blankLines++;
+            expected.fileCount++;
+            String code = sb.toString();
+            expected.bytes += code.getBytes(StandardCharsets.UTF_8).length;
+            return code;
+        }
+
+        // ---------- Java ----------
+
+        private void java(String pkg, String name, int functions) {
+            lineComment = "//";
+            code("package gen." + pkg + ";");
+            blank();
+            code("import java.util.List;");
+            blank();
+            comment("/** " + words(4) + " */");
+            code("public class " + name + " {");
+            cMembers("    ", functions, 0, "public int method", "(int x) {", "static class Inner", " {");
+            code("}");
+        }
+
+        // ---------- C# ----------
+
+        private void csharp(String pkg, String name, int functions) {
+            lineComment = "//";
+            code("using System;");
+            blank();
+            code("namespace Gen." + pkg + " {");
+            comment("    /// <summary>" + words(4) + "</summary>");
+            code("    public class " + name + " {");
+            cMembers("        ", functions, 0, "public int Method", "(int x) {", "public class Inner", " {");
+            code("    }");
+            code("}");
+        }
+
+        /** Java / C# 类成员：方法和（typeDepth 允许时）嵌套类 */
+        private void cMembers(String indent, int functions, int level, String sigPrefix, String sigSuffix,
+                              String typePrefix, String typeSuffix) {
+            int written = 0;
+            while (written < functions) {
+                if (level < config.typeDepth && functions - written >= 2 && random.nextInt(5) == 0) {
+                    int inner = 1 + random.nextInt(Math.min(3, functions - written));
+                    blank();
+                    code(indent + typePrefix + (nextId++) + typeSuffix);
+                    cMembers(indent + "    ", inner, level + 1, sigPrefix, sigSuffix, typePrefix, typeSuffix);
+                    code(indent + "}");
+                    written += inner;
+                } else {
+                    blank();
+                    if (random.nextDouble() < config.commentDensity) comment(indent + lineComment + " " + words(5));
+                    cFunction(indent, indent + sigPrefix + (nextId++) + sigSuffix);
+                    written++;
+                }
+            }
+        }
+
+        // ---------- C / C++ ----------
+
+        private void c(String name, int functions) {
+            lineComment = "//";
+            code("#include <stdio.h>");
+            blank();
+            blockComment("", 3);
+            for (int i = 0; i < functions; i++) {
+                blank();
+                if (random.nextDouble() < config.commentDensity) comment("// " + words(5));
+                String modifier = random.nextInt(4) == 0 ? "static " : "";
+                cFunction("", modifier + "int " + name.toLowerCase() + "_func" + (nextId++) + "(int x) {");
+            }
+        }
+
+        private void cpp(String name, int functions) {
+            lineComment = "//";
+            code("#include <vector>");
+            blank();
+            code("namespace gen {");
+            int written = 0;
+            while (written < functions) {
+                blank();
+                if (config.typeDepth > 0 && functions - written >= 2 && random.nextInt(4) == 0) {
+                    // 类内定义的方法
+                    int inner = 1 + random.nextInt(Math.min(3, functions - written));
+                    code("class " + name + "_Widget" + (nextId++) + " {");
+                    code("public:");
+                    for (int k = 0; k < inner; k++) {
+                        cFunction("    ", "    int get" + (nextId++) + "(int x) const {");
+                    }
+                    code("};");
+                    written += inner;
+                } else {
+                    String sig = random.nextBoolean()
+                            ? "inline int func" + (nextId++) + "(std::vector<int>& v, int x) {"
+                            : "int func" + (nextId++) + "(int x) {";
+                    cFunction("", sig);
+                    written++;
+                }
+            }
+            code("}");
+        }
+
+        // ---------- C 系函数体 ----------
+
+        /** 签名 + 函数体 + 结束行，总行数服从长度分布（至少 4 行） */
+        private void cFunction(String indent, String signature) {
+            int length = functionLength(4);
+            expected.functions++;
+            code(signature);
+            String inner = indent + "    ";
+            code(inner + "int s = 0;");
+            cBlock(inner, length - 4, 0);
+            code(inner + "return s;");
+            code(indent + "}");
+        }
+
+        /** 恰好 lines 行的语句序列 */
+        private void cBlock(String indent, int lines, int depth) {
+            while (lines > 0) {
+                double r = random.nextDouble();
+                if (lines >= 3 && depth < config.blockDepth && r < 0.12) {
+                    int inner = 1 + random.nextInt(lines - 2);
+                    code(indent + cBlockOpener(depth));
+                    statement(indent + "    ", "s += x * " + random.nextInt(100) + ";");
+                    cBlock(indent + "    ", inner - 1, depth + 1);
+                    code(indent + "}");
+                    lines -= inner + 2;
+                } else if (lines >= 3 && r < 0.12 + config.commentDensity * 0.1) {
+                    int n = 3 + random.nextInt(Math.min(3, lines - 2));
+                    blockComment(indent, n);
+                    lines -= n;
+                } else if (r < 0.12 + config.commentDensity) {
+                    comment(indent + "// " + words(1 + random.nextInt(6)));
+                    lines--;
+                } else if (r < 0.12 + config.commentDensity + config.blankDensity) {
+                    blank();
+                    lines--;
+                } else {
+                    statement(indent, cStatement());
+                    lines--;
+                }
+            }
+        }
+
+        private String cBlockOpener(int depth) {
+            int n = random.nextInt(1000);
+            return switch (random.nextInt(3)) {
+                case 0 -> "if (s > " + n + ") {";
+                case 1 -> "for (int k" + depth + " = 0; k" + depth + " < x; k" + depth + "++) {";
+                default -> "while (s < " + n + ") {";
+            };
+        }
+
+        private String cStatement() {
+            int n = random.nextInt(100);
+            return switch (random.nextInt(4)) {
+                case 0 -> "s += x * " + n + ";";
+                case 1 -> "s -= " + n + ";";
+                case 2 -> "s = s * 31 + " + n + ";";
+                default -> "s ^= x + " + n + ";";
+            };
+        }
+
+        /** n 行的块注释（n >= 3）：开始行、中间行、结束行 */
+        private void blockComment(String indent, int n) {
+            comment(indent + "/*");
+            for (int i = 0; i < n - 2; i++) comment(indent + " * " + words(1 + random.nextInt(6)));
+            comment(indent + " */");
+        }
+
+        // ---------- Python ----------
+
+        private void python(String name, int functions) {
+            lineComment = "#";
+            comment("\"\"\"");
+            comment(words(5));
+            comment("\"\"\"");
+            code("import os");
+            int written = 0;
+            while (written < functions) {
+                blank();
+                if (random.nextInt(5) == 0) {
+                    int inner = 1 + random.nextInt(Math.min(3, functions - written));
+                    code("class " + name + "Holder" + (nextId++) + ":");
+                    for (int k = 0; k < inner; k++) {
+                        pyFunction("    ", 1, Integer.MAX_VALUE);
+                    }
+                    written += inner;
+                } else {
+                    if (random.nextDouble() < config.commentDensity) comment("# " + words(5));
+                    pyFunction("", 0, Integer.MAX_VALUE);
+                    written++;
+                }
+            }
+        }
+
+        /**
+         * def 行 + 函数体，总行数服从长度分布（至少 3 行，至多 maxLines 行）；level 为已有的定义嵌套层数。
+         * 返回写出的行数
+         */
+        private int pyFunction(String indent, int level, int maxLines) {
+            int length = Math.min(functionLength(3), maxLines);
+            expected.functions++;
+            code(indent + (random.nextInt(4) == 0 ? "async def" : "def") + " func" + (nextId++) + "(x):");
+            String inner = indent + "    ";
+            int lines = length - 1;
+            double r = random.nextDouble();
+            if (lines >= 6 && r < config.commentDensity) {
+                comment(inner + "\"\"\"" + words(3));
+                comment(inner + words(4));
+                comment(inner + "\"\"\"");
+                lines -= 3;
+            } else if (lines >= 3 && r < config.commentDensity * 2) {
+                comment(inner + "\"\"\"" + words(4) + "\"\"\"");
+                lines--;
+            }
+            code(inner + "s = 0");
+            pyBlock(inner, lines - 2, 0, level);
+            code(inner + "return s");
+            return length;
+        }
+
+        private void pyBlock(String indent, int lines, int depth, int level) {
+            while (lines > 0) {
+                double r = random.nextDouble();
+                if (lines >= 2 && depth < config.blockDepth && r < 0.12) {
+                    int inner = 1 + random.nextInt(lines - 1);
+                    code(indent + pyBlockOpener(depth));
+                    statement(indent + "    ", "s += x * " + random.nextInt(100));
+                    pyBlock(indent + "    ", inner - 1, depth + 1, level);
+                    lines -= inner + 1;
+                } else if (lines >= 3 && level < config.typeDepth && r < 0.16) {
+                    // 嵌套函数：长度由分布决定，但不超过剩余行数
+                    lines -= pyFunction(indent, level + 1, lines);
+                } else if (r < 0.16 + config.commentDensity) {
+                    comment(indent + "# " + words(1 + random.nextInt(6)));
+                    lines--;
+                } else if (r < 0.16 + config.commentDensity + config.blankDensity) {
+                    blank();
+                    lines--;
+                } else {
+                    statement(indent, "s = s * 31 + " + random.nextInt(100));
+                    lines--;
+                }
+            }
+        }
+
+        private String pyBlockOpener(int depth) {
+            int n = random.nextInt(1000);
+            return switch (random.nextInt(3)) {
+                case 0 -> "if s > " + n + ":";
+                case 1 -> "for k" + depth + " in range(x):";
+                default -> "while s < " + n + ":";
+            };
+        }
+
+        // ---------- 行记录 ----------
+
+        private void code(String line) {
+            sb.append(line).append('\n');
+            expected.codeLines++;
+            expected.totalLines++;
+        }
+
+        /** 语句行：按 lineLength 用行尾注释补齐长度（仍是代码行） */
+        private void statement(String indent, String text) {
+            String line = indent + text;
+            int target = config.lineLength / 2 + random.nextInt(config.lineLength + 1);
+            if (line.length() + 4 < target) {
+                StringBuilder pad = new StringBuilder(line).append(' ').append(lineComment);
+                while (pad.length() < target) pad.append(' ').append(WORDS[random.nextInt(WORDS.length)]);
+                line = pad.toString();
+            }
+            code(line);
+        }
+
+        private void comment(String line) {
+            sb.append(line).append('\n');
+            expected.commentLines++;
+            expected.totalLines++;
+        }
+
+        private void blank() {
+            sb.append('\n');
+            expected.blankLines++;
+            expected.totalLines++;
+        }
+
+        private int functionLength(int min) {
+            int max = Math.max(min, config.maxFunctionLength);
+            int mean = Math.max(min, config.meanFunctionLength);
+            int length = switch (config.lengthDistribution) {
+                case FIXED -> mean;
+                case UNIFORM -> min + random.nextInt(Math.max(1, 2 * (mean - min) + 1));
+                case LOG_NORMAL -> {
+                    double sigma = 0.8;
+                    double mu = Math.log(mean) - sigma * sigma / 2;
+                    yield (int) Math.round(Math.exp(mu + sigma * random.nextGaussian()));
+                }
+            };
+            return Math.max(min, Math.min(max, length));
+        }
+
+        private String words(int n) {
+            StringBuilder w = new StringBuilder();
+            for (int i = 0; i < n; i++) {
+                if (i > 0) w.append(' ');
+                w.append(WORDS[random.nextInt(WORDS.length)]);
+            }
+            return w.toString();
+        }
+    }
+
+    // ---------- 命令行 ----------
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 0) {
+            System.err.println("usage: CorpusGenerator <dir> [--seed N] [--files N] [--functions N]"
+                    + " [--distribution FIXED|UNIFORM|LOG_NORMAL] [--mean-length N] [--max-length N]"
+                    + " [--block-depth N] [--type-depth N] [--comment-density F] [--blank-density F]"
+                    + " [--line-length N] [--languages JAVA,PYTHON,...] [--check]");
+            System.exit(2);
+        }
+        Path root = Paths.get(args[0]);
+        Config config = new Config();
+        boolean check = false;
+        for (int i = 1; i < args.length; i++) {
+            String opt = args[i];
+            if (opt.equals("--check")) {
+                check = true;
+                continue;
+            }
+            if (i + 1 >= args.length) throw new IllegalArgumentException("missing value for " + opt);
+            String v = args[++i];
+            switch (opt) {
+                case "--seed" -> config.seed = Long.parseLong(v);
+                case "--files" -> config.filesPerLanguage = Integer.parseInt(v);
+                case "--functions" -> config.functionsPerFile = Integer.parseInt(v);
+                case "--distribution" -> config.lengthDistribution = LengthDistribution.valueOf(v);
+                case "--mean-length" -> config.meanFunctionLength = Integer.parseInt(v);
+                case "--max-length" -> config.maxFunctionLength = Integer.parseInt(v);
+                case "--block-depth" -> config.blockDepth = Integer.parseInt(v);
+                case "--type-depth" -> config.typeDepth = Integer.parseInt(v);
+                case "--comment-density" -> config.commentDensity = Double.parseDouble(v);
+                case "--blank-density" -> config.blankDensity = Double.parseDouble(v);
+                case "--line-length" -> config.lineLength = Integer.parseInt(v);
+                case "--languages" -> {
+                    config.languages = EnumSet.noneOf(Language.class);
+                    for (String l : v.split(",")) config.languages.add(Language.valueOf(l.trim()));
+                }
+                default -> throw new IllegalArgumentException("unknown option " + opt);
+            }
+        }
+
+        Manifest manifest = generate(config, root);
+        boolean ok = true;
+        for (Language language : config.languages) {
+            Expected e = manifest.expected(language);
+            System.out.printf("%-6s files=%d lines=%d code=%d comment=%d blank=%d functions=%d bytes=%d%n",
+                    language, e.fileCount, e.totalLines, e.codeLines, e.commentLines, e.blankLines, e.functions, e.bytes);
+            if (!check) continue;
+            CodeStatsService.AnalyzeRequest req = new CodeStatsService.AnalyzeRequest();
+            req.language = language;
+            req.paths = List.of(root.resolve(language.name().toLowerCase()).toString());
+            req.mode = CodeStatsService.MODE_BOTH;
+            req.parallelism = 0;
+            List<String> problems = check(e, new CodeStatsService().analyze(req));
+            for (String p : problems) System.out.println("       MISMATCH " + p);
+            ok &= problems.isEmpty();
+        }
+        if (check) {
+            System.out.println(ok ? "check: OK" : "check: FAILED");
+            if (!ok) System.exit(1);
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package com.myapp;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import com.myapp.CodeStatsCore.FunctionStat;
+
+/**
+ * Java 快速扫描（JavaScanner）与 JavaParser（JavaAnalyzer）的逐文件对比：
+ * 对目录下每个 .java 文件分别运行两种模式，按 起始行 / 结束行 / 限定名 / 是否嵌套 比较输出，
+ * 打印结果不同的文件及差异、扫描器放弃（退回 JavaParser）的文件数，以及两种模式各自的耗时。
+ * 没有参数时用 CorpusGenerator 生成的 Java 文件。
+ *
+ *   java -cp target/benchmarks.jar com.myapp.JavaScannerParity 源码目录 [--show N]
+ *
+ * 有差异时退出码为 1。
+ */
+public class JavaScannerParity {
+
+    private static final Comparator<FunctionStat> ORDER = Comparator
+            .comparingInt((FunctionStat f) -> f.startLine)
+            .thenComparingInt(f -> f.endLine)
+            .thenComparing(f -> f.qualName);
+
+    public static void main(String[] args) throws IOException {
+        Path root = null;
+        int show = 20;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--show")) show = Integer.parseInt(args[++i]);
+            else root = Paths.get(args[i]);
+        }
+
+        List<String> names = new ArrayList<>();
+        List<String> sources = new ArrayList<>();
+        if (root != null) {
+            List<Path> files;
+            try (Stream<Path> s = Files.walk(root)) {
+                files = s.filter(p -> p.toString().endsWith(".java") && Files.isRegularFile(p))
+                        .sorted().collect(Collectors.toList());
+            }
+            for (Path p : files) {
+                try {
+                    sources.add(Files.readString(p, StandardCharsets.UTF_8));
+                    names.add(p.toString());
+                } catch (IOException e) {
+                    // 不是 UTF-8：与服务一样跳过
+                }
+            }
+        } else {
+            CorpusGenerator.Config config = new CorpusGenerator.Config();
+            config.typeDepth = 3;
+            for (int i = 0; i < 200; i++) {
+                config.seed = i;
+                sources.add(CorpusGenerator.source(CodeStatsCore.Language.JAVA, config, 50,
+                        new CorpusGenerator.Expected()));
+                names.add("Generated" + i + ".java");
+            }
+        }
+
+        JavaAnalyzer precise = new JavaAnalyzer();
+        int same = 0, different = 0, fallback = 0, preciseFailed = 0;
+        long preciseNanos = 0, scanNanos = 0;
+        int shown = 0;
+        for (int i = 0; i < sources.size(); i++) {
+            String code = sources.get(i);
+            String name = names.get(i);
+
+            long t0 = System.nanoTime();
+            List<FunctionStat> fast = JavaScanner.scan(code, name);
+            scanNanos += System.nanoTime() - t0;
+
+            List<FunctionStat> exact;
+            t0 = System.nanoTime();
+            try {
+                exact = precise.analyze(code, name);
+            } catch (RuntimeException e) {
+                exact = null;
+            }
+            preciseNanos += System.nanoTime() - t0;
+
+            if (exact == null) {
+                preciseFailed++;
+                if (fast != null && shown++ < show) {
+                    System.out.println("JavaParser 无法解析，扫描器给出 " + fast.size() + " 个函数: " + name);
+                }
+                continue;
+            }
+            if (fast == null) {
+                fallback++;
+                continue;
+            }
+            List<String> a = describe(exact);
+            List<String> b = describe(fast);
+            if (a.equals(b)) {
+                same++;
+                continue;
+            }
+            different++;
+            if (shown++ < show) {
+                System.out.println("不同: " + name);
+                List<String> onlyExact = new ArrayList<>(a);
+                onlyExact.removeAll(b);
+                List<String> onlyFast = new ArrayList<>(b);
+                onlyFast.removeAll(a);
+                onlyExact.stream().limit(5).forEach(s -> System.out.println("  - " + s));
+                onlyFast.stream().limit(5).forEach(s -> System.out.println("  + " + s));
+            }
+        }
+
+        System.out.printf("文件 %d：相同 %d，不同 %d，扫描器放弃 %d，JavaParser 失败 %d%n",
+                sources.size(), same, different, fallback, preciseFailed);
+        System.out.printf("耗时：扫描器 %d ms，JavaParser %d ms（%.1fx）%n",
+                scanNanos / 1_000_000, preciseNanos / 1_000_000,
+                scanNanos == 0 ? 0 : (double) preciseNanos / scanNanos);
+        if (different > 0) System.exit(1);
+    }
+
+    private static List<String> describe(List<FunctionStat> functions) {
+        List<FunctionStat> sorted = new ArrayList<>(functions);
+        sorted.sort(ORDER);
+        List<String> out = new ArrayList<>(sorted.size());
+        for (FunctionStat f : sorted) {
+            out.add(f.startLine + "-" + f.endLine + " " + f.qualName + (f.isNested ? " (nested)" : ""));
+        }
+        return out;
+    }
+}
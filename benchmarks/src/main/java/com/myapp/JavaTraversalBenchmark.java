@@ -0,0 +1,171 @@
+package com.myapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.ParserConfiguration;
+import com.github.javaparser.ast.CompilationUnit;
+import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.CallableDeclaration;
+import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
+import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.RecordDeclaration;
+import com.myapp.CodeStatsCore.FunctionStat;
+
+/**
+ * JavaAnalyzer 语法树遍历（不含解析）：单次遍历的 CallableCollector 与原先的三次 findAll + 递归实现对比。
+ * 输入为 depth 层嵌套类的链，每层 methods 个方法（解析一次，各次操作复用同一棵树）。
+ *
+ * Counters 的 callables 为每秒输出的函数条数：原实现中第 k 层的方法会输出 k 次，
+ * 所以 legacyFindAll 的 callables / ops 大于实际方法数。
+ *
+ *   java -jar target/benchmarks.jar JavaTraversalBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JavaTraversalBenchmark {
+
+    @Param({"1", "4", "8", "16"})
+    public int depth;
+
+    @Param({"20"})
+    public int methods;
+
+    private CompilationUnit cu;
+    private JavaAnalyzer analyzer;
+
+    /** 每次操作累加输出的函数条数，JMH 按秒折算 */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long callables;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            callables = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        analyzer = new JavaAnalyzer();
+        cu = new JavaParser(new ParserConfiguration().setLanguageLevel(ParserConfiguration.LanguageLevel.RAW))
+                .parse(nestedSource(depth, methods)).getResult().orElseThrow();
+    }
+
+    @Benchmark
+    public List<FunctionStat> visitor(Counters counters) {
+        List<FunctionStat> out = analyzer.functions(cu, "Nested.java");
+        counters.callables += out.size();
+        return out;
+    }
+
+    @Benchmark
+    public List<FunctionStat> legacyFindAll(Counters counters) {
+        List<FunctionStat> out = LegacyTraversal.functions(cu, "Nested.java");
+        counters.callables += out.size();
+        return out;
+    }
+
+    /** depth 层嵌套类，每层 methods 个三行的方法 */
+    static String nestedSource(int depth, int methods) {
+        StringBuilder sb = new StringBuilder("package bench;\n\n");
+        for (int level = 0; level < depth; level++) {
+            String indent = "    ".repeat(level);
+            sb.append(indent).append(level == 0 ? "public class Level0 {\n" : "static class Level" + level + " {\n");
+            for (int m = 0; m < methods; m++) {
+                sb.append(indent).append("    int m").append(m).append("(int x) {\n");
+                sb.append(indent).append("        return x + ").append(m).append(";\n");
+                sb.append(indent).append("    }\n");
+            }
+        }
+        for (int level = depth - 1; level >= 0; level--) {
+            sb.append("    ".repeat(level)).append("}\n");
+        }
+        return sb.toString();
+    }
+
+    /** 原先的 JavaAnalyzer 遍历：findAll 已包含嵌套类型，递归时又遍历一次，嵌套方法会重复输出 */
+    static final class LegacyTraversal {
+        private LegacyTraversal() {}
+
+        static List<FunctionStat> functions(CompilationUnit cu, String filePath) {
+            List<FunctionStat> out = new ArrayList<>();
+            Deque<String> typeStack = new ArrayDeque<>();
+            cu.findAll(ClassOrInterfaceDeclaration.class).forEach(c -> traverseType(c, filePath, typeStack, out));
+            cu.findAll(EnumDeclaration.class).forEach(e -> traverseEnum(e, filePath, typeStack, out));
+            cu.findAll(RecordDeclaration.class).forEach(r -> traverseRecord(r, filePath, typeStack, out));
+            return out;
+        }
+
+        private static void traverseType(ClassOrInterfaceDeclaration type, String filePath,
+                                         Deque<String> stack, List<FunctionStat> out) {
+            stack.push(type.getNameAsString());
+            for (BodyDeclaration<?> m : type.getMembers()) {
+                if (m instanceof CallableDeclaration<?> c) {
+                    addCallable(c, filePath, stack, out);
+                } else if (m instanceof ClassOrInterfaceDeclaration nested) {
+                    traverseType(nested, filePath, stack, out);
+                } else if (m instanceof EnumDeclaration en) {
+                    traverseEnum(en, filePath, stack, out);
+                } else if (m instanceof RecordDeclaration rd) {
+                    traverseRecord(rd, filePath, stack, out);
+                }
+            }
+            stack.pop();
+        }
+
+        private static void traverseEnum(EnumDeclaration en, String filePath,
+                                         Deque<String> stack, List<FunctionStat> out) {
+            stack.push(en.getNameAsString());
+            for (BodyDeclaration<?> m : en.getMembers()) {
+                if (m instanceof CallableDeclaration<?> c) addCallable(c, filePath, stack, out);
+                else if (m instanceof ClassOrInterfaceDeclaration nested) traverseType(nested, filePath, stack, out);
+            }
+            stack.pop();
+        }
+
+        private static void traverseRecord(RecordDeclaration rd, String filePath,
+                                           Deque<String> stack, List<FunctionStat> out) {
+            stack.push(rd.getNameAsString());
+            for (BodyDeclaration<?> m : rd.getMembers()) {
+                if (m instanceof CallableDeclaration<?> c) addCallable(c, filePath, stack, out);
+            }
+            stack.pop();
+        }
+
+        private static void addCallable(CallableDeclaration<?> c, String filePath,
+                                        Deque<String> stack, List<FunctionStat> out) {
+            if (c.getRange().isEmpty()) return;
+            int start = c.getRange().get().begin.line;
+            int end = c.getRange().get().end.line;
+            List<String> names = new ArrayList<>(stack);
+            Collections.reverse(names);
+            String qual = String.join(".", names) + "." + c.getNameAsString();
+            out.add(new FunctionStat(filePath, qual, start, end, true, stack.size() > 1, false));
+        }
+    }
+}
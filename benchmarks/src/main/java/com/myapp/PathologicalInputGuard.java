@@ -0,0 +1,130 @@
+package com.myapp;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import com.myapp.CodeStatsCore.FunctionStat;
+
+/**
+ * C / C++ / C# 分析器的病态输入守护：对一组生成的极端输入（超长行、深层模板嵌套、压缩成一行的代码、
+ * 宏密集的行、很长的修饰符链、深层大括号、超长字符串 / 注释）分别运行 CppAnalyzer 和 CSharpAnalyzer，
+ * 每个输入必须在固定的时间预算内完成且不抛异常；回溯型正则在这类输入上耗时成倍增长，甚至栈溢出。
+ * 抛异常的输入记为失败，最后以退出码 1 结束；超时则立即以退出码 1 结束
+ * （卡住的线程无法中断，不再继续后面的输入）。
+ *
+ *   java -cp target/benchmarks.jar com.myapp.PathologicalInputGuard [--budget-ms 2000] [--scale 1]
+ *
+ * --scale 按比例放大各输入的规模。
+ */
+public class PathologicalInputGuard {
+
+    public static void main(String[] args) throws Exception {
+        long budgetMs = 2000;
+        int scale = 1;
+        for (int i = 0; i < args.length; i++) {
+            if (args[i].equals("--budget-ms")) budgetMs = Long.parseLong(args[++i]);
+            else if (args[i].equals("--scale")) scale = Integer.parseInt(args[++i]);
+        }
+
+        Map<String, String> inputs = inputs(scale);
+        Map<String, CodeAnalyzer> analyzers = new LinkedHashMap<>();
+        analyzers.put("C/C++", new CppAnalyzer());
+        analyzers.put("C#", new CSharpAnalyzer());
+
+        // 守护线程：超时后进程仍可退出
+        ExecutorService worker = Executors.newSingleThreadExecutor(r -> {
+            Thread t = new Thread(r, "guard");
+            t.setDaemon(true);
+            return t;
+        });
+        int failed = 0;
+        for (Map.Entry<String, String> input : inputs.entrySet()) {
+            String code = input.getValue();
+            for (Map.Entry<String, CodeAnalyzer> analyzer : analyzers.entrySet()) {
+                long t0 = System.nanoTime();
+                Future<List<FunctionStat>> result = worker.submit(() -> analyzer.getValue().analyze(code, input.getKey()));
+                try {
+                    List<FunctionStat> functions = result.get(budgetMs, TimeUnit.MILLISECONDS);
+                    long ms = (System.nanoTime() - t0) / 1_000_000;
+                    System.out.printf("%-28s %-6s %8d 字符 %6d 个函数 %6d ms%n",
+                            input.getKey(), analyzer.getKey(), code.length(), functions.size(), ms);
+                } catch (TimeoutException e) {
+                    System.out.printf("%-28s %-6s %8d 字符 超过 %d ms%n",
+                            input.getKey(), analyzer.getKey(), code.length(), budgetMs);
+                    System.exit(1);
+                } catch (ExecutionException e) {
+                    // 例如回溯过深导致的 StackOverflowError
+                    failed++;
+                    System.out.printf("%-28s %-6s %8d 字符 失败: %s%n",
+                            input.getKey(), analyzer.getKey(), code.length(), e.getCause());
+                }
+            }
+        }
+        if (failed > 0) System.exit(1);
+        System.out.println("全部输入均在 " + budgetMs + " ms 内完成");
+    }
+
+    /** 名称 → 源码；规模随 scale 线性增长 */
+    static Map<String, String> inputs(int scale) {
+        Map<String, String> inputs = new LinkedHashMap<>();
+
+        // 一行很长的“返回类型”：没有 (，或者 ( 之后没有 )
+        inputs.put("long-words", "    " + repeat("unsigned long ", 20_000 * scale) + "\n");
+        inputs.put("long-words-open-paren", "    " + repeat("static const ", 20_000 * scale) + "f(int a,\n");
+        inputs.put("long-words-no-body", "    " + repeat("a b ", 20_000 * scale) + "f(int a) const x\n");
+
+        // 修饰符链：修饰符和返回类型都能匹配 static，回溯型正则每行要试遍所有划分（更长时直接栈溢出）
+        StringBuilder modifiers = new StringBuilder();
+        for (int i = 0; i < 200 * scale; i++) modifiers.append("    ").append(repeat("static ", 400)).append("f(int a) x\n");
+        inputs.put("modifier-chain", modifiers.toString());
+        inputs.put("modifier-chain-long-line", "    " + repeat("static ", 5_000 * scale) + "f(int a\n");
+
+        // 深层模板 / 泛型嵌套
+        int depth = 5_000 * scale;
+        inputs.put("deep-template", "    " + repeat("std::map<int, ", depth) + "int" + repeat("> ", depth)
+                + " lookup(int key) {\n        return key;\n    }\n");
+        inputs.put("deep-generic-csharp", "        public " + repeat("Dictionary<string, ", depth) + "int"
+                + repeat(">", depth) + " Lookup(string key) {\n            return null;\n        }\n");
+        inputs.put("long-attribute-list", "    [" + repeat("Obsolete, ", 20_000 * scale) + "Serializable]\n"
+                + "    public void Run() {\n    }\n");
+
+        // 压缩成一行：上万个函数首尾相连
+        StringBuilder minified = new StringBuilder("static int f(int a){return a;}");
+        for (int i = 0; i < 20_000 * scale; i++) {
+            minified.append("int g").append(i).append("(int a,int b){if(a<b){return a;}return b;}");
+        }
+        inputs.put("minified", minified.append('\n').toString());
+
+        // 宏密集：长的续行宏定义，以及一行里连续的宏调用
+        StringBuilder macros = new StringBuilder("#define TABLE(X) \\\n");
+        for (int i = 0; i < 20_000 * scale; i++) macros.append("    X(entry").append(i).append(", ").append(i).append(") \\\n");
+        macros.append("    X(last, 0)\n");
+        macros.append("    ").append(repeat("DECLARE_HANDLER EXPORT_SYMBOL ", 10_000 * scale)).append("(handler) {\n    }\n");
+        inputs.put("macro-heavy", macros.toString());
+
+        // 大量中等长度、没有 ( 的行
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 100_000 * scale; i++) lines.append("        a b c d e f g h i j k l m n o p q r s t;\n");
+        inputs.put("many-word-lines", lines.toString());
+
+        // 深层大括号
+        int braces = 100_000 * scale;
+        inputs.put("deep-braces", "void deep(int a) {\n" + repeat("{", braces) + "\n" + repeat("}", braces) + "\n}\n");
+
+        // 超长字符串和注释
+        inputs.put("long-string", "const char *s = \"" + repeat("{ ( ) } \\\" ", 100_000 * scale) + "\";\n");
+        inputs.put("long-comment", "/*" + repeat(" int f(int a) { ", 100_000 * scale) + "*/\nint main() {\n}\n");
+        return inputs;
+    }
+
+    private static String repeat(String s, int count) {
+        return s.repeat(count);
+    }
+}
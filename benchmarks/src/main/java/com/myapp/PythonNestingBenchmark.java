@@ -0,0 +1,183 @@
+package com.myapp;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.myapp.CodeStatsCore.FunctionStat;
+
+/**
+ * PythonAnalyzer 函数边界识别：单遍的缩进栈实现与原先“每个 def 向后扫描到缩进回落”的实现对比。
+ * 输入为约 lines 行的模块，由若干个类组成，每个方法内再嵌套 depth 层 def；
+ * 原实现中每一行会被外层的每个 def 各扫描一次，耗时随 depth 线性增长。
+ *
+ * Counters 的 lines 为每秒处理的行数。
+ *
+ *   java -jar target/benchmarks.jar PythonNestingBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PythonNestingBenchmark {
+
+    @Param({"1", "4", "8", "16"})
+    public int depth;
+
+    @Param({"50000"})
+    public int lines;
+
+    private String code;
+    private int totalLines;
+    private PythonAnalyzer analyzer;
+
+    /** 每次操作累加处理的行数，JMH 按秒折算 */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long lines;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lines = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        analyzer = new PythonAnalyzer();
+        code = nestedModule(depth, lines);
+        totalLines = code.split("\n", -1).length;
+    }
+
+    @Benchmark
+    public List<FunctionStat> indentStack(Counters counters) {
+        counters.lines += totalLines;
+        return analyzer.analyze(code, "module.py");
+    }
+
+    @Benchmark
+    public List<FunctionStat> legacyForwardScan(Counters counters) {
+        counters.lines += totalLines;
+        return LegacyPython.analyze(code, "module.py");
+    }
+
+    /** 约 lines 行的模块：类中的每个方法嵌套 depth 层 def，每层带注释、空行、多行字符串和续行 */
+    static String nestedModule(int depth, int lines) {
+        StringBuilder sb = new StringBuilder("import os\n\n");
+        int count = 2;
+        for (int c = 0; count < lines; c++) {
+            sb.append("class Service").append(c).append("(object):\n");
+            count++;
+            for (int m = 0; m < 8 && count < lines; m++) {
+                for (int level = 0; level < depth; level++) {
+                    String indent = "    ".repeat(level + 1);
+                    sb.append(indent).append("def f").append(m).append('_').append(level)
+                            .append("(self, a,\n").append(indent).append("        b=None):\n");
+                    sb.append(indent).append("    \"\"\"level ").append(level).append("\n\n")
+                            .append(indent).append("    def not_a_function(): pass\n")
+                            .append(indent).append("    \"\"\"\n");
+                    sb.append(indent).append("    # comment\n");
+                    sb.append(indent).append("    x = a + \\\n").append(indent).append("        1\n\n");
+                    count += 9;
+                }
+                for (int level = depth - 1; level >= 0; level--) {
+                    sb.append("    ".repeat(level + 2)).append("return x\n");
+                    count++;
+                }
+                sb.append('\n');
+                count++;
+            }
+            sb.append('\n');
+            count++;
+        }
+        return sb.toString();
+    }
+
+    /** 原先的 PythonAnalyzer.analyze：每个 def 向后扫描到缩进不大于自身的行，注释行也会出栈 */
+    static final class LegacyPython {
+        private static final Pattern DEF_PATTERN =
+                Pattern.compile("^\\s*(async\\s+def|def)\\s+([A-Za-z_][A-Za-z0-9_]*)\\s*\\(");
+
+        private LegacyPython() {}
+
+        static List<FunctionStat> analyze(String code, String filePath) {
+            List<FunctionStat> out = new ArrayList<>();
+            String[] lines = code.split("\\r?\\n", -1);
+
+            class Frame { String name; int indent; boolean cls; boolean fn;
+                Frame(String n,int i,boolean c,boolean f){name=n;indent=i;cls=c;fn=f;} }
+            Deque<Frame> stack = new ArrayDeque<>();
+
+            for (int i=0;i<lines.length;i++){
+                String line = lines[i];
+                String trimmed = line.trim();
+                int indent = leadingSpaces(line);
+
+                while (!stack.isEmpty() && indent <= stack.peek().indent && !trimmed.isEmpty()) {
+                    stack.pop();
+                }
+
+                if (trimmed.startsWith("class ")) {
+                    String cls = trimmed.substring(6).split("[(:\\s]")[0];
+                    stack.push(new Frame(cls, indent, true, false));
+                    continue;
+                }
+
+                Matcher m = DEF_PATTERN.matcher(line);
+                if (m.find()) {
+                    boolean isAsync = m.group(1).startsWith("async");
+                    String fname = m.group(2);
+                    int start = i + 1;
+                    int end = start;
+
+                    for (int j=i+1;j<lines.length;j++){
+                        String t = lines[j].trim();
+                        if (t.isEmpty() || t.startsWith("#")) continue;
+                        int ind2 = leadingSpaces(lines[j]);
+                        if (ind2 <= indent) break;
+                        end = j + 1;
+                    }
+
+                    List<String> parts = new ArrayList<>();
+                    for (Frame f : stack) if (f.cls || f.fn) parts.add(f.name);
+                    Collections.reverse(parts);
+                    parts.add(fname);
+                    String qual = String.join(".", parts);
+
+                    boolean isMethod = stack.stream().anyMatch(fr -> fr.cls);
+                    boolean isNested = stack.stream().anyMatch(fr -> fr.fn);
+
+                    out.add(new FunctionStat(filePath, qual, start, Math.max(end, start),
+                            isMethod, isNested, isAsync));
+
+                    stack.push(new Frame(fname, indent, false, true));
+                }
+            }
+            return out;
+        }
+
+        private static int leadingSpaces(String s){ int i=0; while (i<s.length() && s.charAt(i)==' ') i++; return i; }
+    }
+}
@@ -0,0 +1,124 @@
+package com.myapp;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.myapp.CodeStatsCore.AnalyzeResult;
+import com.myapp.CodeStatsCore.Language;
+
+/**
+ * CodeStatsService 整体吞吐量：在 CorpusGenerator 生成的目录树上按 MODE_BOTH 分析一种语言。
+ * 每轮迭代结束时把最后一次的结果与 expected.json 对比；不一致时中止（-p failOnMismatch=false 时只打印差异）。
+ *
+ *   java -jar target/benchmarks.jar ServiceBenchmark -p language=PYTHON -p files=1000
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ServiceBenchmark {
+
+    @Param({"JAVA", "PYTHON", "C", "CPP", "CSHARP"})
+    public Language language;
+
+    @Param({"200"})
+    public int files;
+
+    /** 1 为单线程，0 为全部 CPU 核 */
+    @Param({"1", "0"})
+    public int parallelism;
+
+    /** 嵌套定义层数（见 CorpusGenerator.Config.typeDepth） */
+    @Param({"0"})
+    public int typeDepth;
+
+    @Param({"true"})
+    public boolean failOnMismatch;
+
+    private Path root;
+    private CorpusGenerator.Expected expected;
+    private CodeStatsService service;
+    private CodeStatsService.AnalyzeRequest request;
+    private volatile AnalyzeResult last;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Counters {
+        public long lines;
+        public double megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            lines = 0;
+            megabytes = 0;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        root = Files.createTempDirectory("corpus-");
+        CorpusGenerator.Config config = new CorpusGenerator.Config();
+        config.languages = EnumSet.of(language);
+        config.filesPerLanguage = files;
+        config.typeDepth = typeDepth;
+        expected = CorpusGenerator.generate(config, root).expected(language);
+
+        service = new CodeStatsService();
+        request = new CodeStatsService.AnalyzeRequest();
+        request.language = language;
+        request.paths = List.of(root.toString());
+        request.mode = CodeStatsService.MODE_BOTH;
+        request.parallelism = parallelism;
+    }
+
+    @Benchmark
+    public AnalyzeResult analyze(Counters counters) {
+        AnalyzeResult result = service.analyze(request);
+        counters.lines += expected.totalLines;
+        counters.megabytes += expected.bytes / 1e6;
+        last = result;
+        return result;
+    }
+
+    @TearDown(Level.Iteration)
+    public void verify() {
+        if (last == null) return;
+        List<String> problems = CorpusGenerator.check(expected, last);
+        if (problems.isEmpty()) return;
+        String message = language + " result does not match " + CorpusGenerator.MANIFEST + ": " + problems;
+        if (failOnMismatch) throw new IllegalStateException(message);
+        System.out.println("MISMATCH " + message);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        try (Stream<Path> walk = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) walk.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(p);
+            }
+        }
+    }
+}
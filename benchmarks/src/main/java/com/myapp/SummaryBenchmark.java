@@ -0,0 +1,94 @@
+package com.myapp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.myapp.CodeStatsCore.AnalyzeResult;
+import com.myapp.CodeStatsCore.FunctionStat;
+import com.myapp.CodeStatsCore.FunctionTable;
+import com.myapp.CodeStatsCore.Summary;
+
+/**
+ * 汇总阶段的基准测试：CodeStatsCore.buildResult（列表 / 列式两种明细）和 Summary.of。
+ * 函数长度服从长尾分布（大多数几行到几十行，少数上千行），用固定种子生成。
+ *
+ *   java -jar target/benchmarks.jar SummaryBenchmark -prof gc
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class SummaryBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int functions;
+
+    /** 每个文件的平均函数个数 */
+    @Param({"20"})
+    public int functionsPerFile;
+
+    private List<FunctionStat> stats;
+    private List<Integer> boxedLengths;
+    private int[] lengths;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        SplittableRandom random = new SplittableRandom(42);
+        stats = new ArrayList<>(functions);
+        boxedLengths = new ArrayList<>(functions);
+        lengths = new int[functions];
+        int file = 0;
+        int line = 1;
+        for (int i = 0; i < functions; i++) {
+            if (random.nextInt(functionsPerFile) == 0) {
+                file++;
+                line = 1;
+            }
+            int length = 1 + (int) Math.min(5_000, Math.exp(random.nextDouble() * 7) - 1);
+            stats.add(new FunctionStat("src/pkg" + (file % 50) + "/File" + file + ".java", "Class" + file + ".method" + i,
+                    line, line + length - 1, true, i % 9 == 0, false));
+            boxedLengths.add(length);
+            lengths[i] = length;
+            line += length + 2;
+        }
+    }
+
+    @Benchmark
+    public AnalyzeResult buildResult() {
+        // buildResult 会对按文件分组的新列表排序，不修改 stats 本身
+        return CodeStatsCore.buildResult(stats);
+    }
+
+    /** 列式明细：包含由对象列表建表的开销（buildResult 会就地排序表，每次需要新表） */
+    @Benchmark
+    public AnalyzeResult buildResultColumnar() {
+        return CodeStatsCore.buildResult(FunctionTable.of(stats));
+    }
+
+    @Benchmark
+    public Summary summaryOfList() {
+        return Summary.of(boxedLengths);
+    }
+
+    @Benchmark
+    public Summary summaryOfArray() {
+        return Summary.of(lengths);
+    }
+}
@@ -0,0 +1,233 @@
+package com.myapp;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.myapp.CodeStatsCore.CodeMetrics;
+import com.myapp.CodeStatsCore.FunctionStat;
+
+/**
+ * 持久化的增量分析缓存：按 文件路径 + 大小 + 修改时间 + 分析器版本 保存单个文件的
+ * CodeMetrics 和函数列表，未变化的文件再次分析时无需读取和解析。
+ *
+ * 缓存按最近使用顺序淘汰，条目数不超过 maxEntries；close() 时写回缓存目录。
+ * 所有方法线程安全，可在并行 / 流水线模式下共用。
+ */
+public class AnalysisCache implements Closeable {
+
+    private static final String FILE_NAME = "analysis-cache.bin";
+    private static final int MAGIC = 0x43534331;   // "CSC1"
+    private static final int FORMAT_VERSION = 2;
+
+    /** 缓存条目：文件指纹 + 已计算的部分（未计算的部分为 null） */
+    static class Entry {
+        final long size;
+        final long mtime;
+        final int analyzerVersion;
+        CodeMetrics metrics;
+        List<FunctionStat> functions;   // filePath 不保存，命中时按当前路径重新填写
+        ContentHash hash;               // 内容指纹（启用去重时才计算），未知为 null
+
+        Entry(long size, long mtime, int analyzerVersion) {
+            this.size = size;
+            this.mtime = mtime;
+            this.analyzerVersion = analyzerVersion;
+        }
+
+        boolean matches(long size, long mtime, int analyzerVersion) {
+            return this.size == size && this.mtime == mtime && this.analyzerVersion == analyzerVersion;
+        }
+    }
+
+    private final Path dir;
+    private final int maxEntries;
+    private final LinkedHashMap<String, Entry> entries;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private boolean dirty;
+
+    private AnalysisCache(Path dir, int maxEntries) {
+        this.dir = dir;
+        this.maxEntries = Math.max(1, maxEntries);
+        // accessOrder = true：最近使用的条目排在最后，超过上限时淘汰最久未用的
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                if (size() > AnalysisCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /** 打开缓存目录（不存在则创建）；缓存文件损坏或格式不兼容时从空缓存开始 */
+    public static AnalysisCache open(Path dir, int maxEntries) throws IOException {
+        Files.createDirectories(dir);
+        AnalysisCache cache = new AnalysisCache(dir, maxEntries);
+        Path file = dir.resolve(FILE_NAME);
+        if (Files.isRegularFile(file)) {
+            try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+                cache.read(in);
+            } catch (IOException | RuntimeException e) {
+                cache.entries.clear();
+            }
+            cache.evictions = 0;
+        }
+        return cache;
+    }
+
+    /** 查找指纹一致且包含所需部分的条目，并记录命中 / 未命中 */
+    synchronized Entry get(String key, long size, long mtime, int analyzerVersion,
+                           boolean needMetrics, boolean needFunctions) {
+        Entry e = entries.get(key);
+        if (e != null && e.matches(size, mtime, analyzerVersion)
+                && (!needMetrics || e.metrics != null) && (!needFunctions || e.functions != null)) {
+            hits++;
+            return e;
+        }
+        misses++;
+        return null;
+    }
+
+    /** 保存分析结果；指纹未变时与已有条目合并（例如先统计代码量、后统计函数） */
+    synchronized void put(String key, long size, long mtime, int analyzerVersion,
+                          CodeMetrics metrics, List<FunctionStat> functions, ContentHash hash) {
+        Entry e = entries.get(key);
+        if (e == null || !e.matches(size, mtime, analyzerVersion)) {
+            e = new Entry(size, mtime, analyzerVersion);
+        }
+        if (metrics != null) e.metrics = metrics;
+        if (functions != null) e.functions = functions;
+        if (hash != null) e.hash = hash;
+        entries.put(key, e);
+        dirty = true;
+    }
+
+    public synchronized long hits() { return hits; }
+    public synchronized long misses() { return misses; }
+    public synchronized long evictions() { return evictions; }
+    public synchronized int size() { return entries.size(); }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("cache entries=%d, hits=%d, misses=%d, evictions=%d",
+                entries.size(), hits, misses, evictions);
+    }
+
+    /** 写回缓存目录（先写临时文件再替换，避免中途失败留下半个文件） */
+    public synchronized void save() throws IOException {
+        if (!dirty) return;
+        Path file = dir.resolve(FILE_NAME);
+        Path tmp = dir.resolve(FILE_NAME + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmp)))) {
+            write(out);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    @Override
+    public void close() throws IOException {
+        save();
+    }
+
+    private void write(DataOutputStream out) throws IOException {
+        out.writeInt(MAGIC);
+        out.writeInt(FORMAT_VERSION);
+        out.writeInt(entries.size());
+        // 按最久未用 -> 最近使用的顺序写出，重新加载后淘汰顺序不变
+        for (Map.Entry<String, Entry> me : entries.entrySet()) {
+            Entry e = me.getValue();
+            writeString(out, me.getKey());
+            out.writeLong(e.size);
+            out.writeLong(e.mtime);
+            out.writeInt(e.analyzerVersion);
+            out.writeBoolean(e.metrics != null);
+            if (e.metrics != null) {
+                out.writeInt(e.metrics.fileCount);
+                out.writeInt(e.metrics.codeLines);
+                out.writeInt(e.metrics.commentLines);
+                out.writeInt(e.metrics.blankLines);
+                out.writeInt(e.metrics.totalLines);
+            }
+            out.writeBoolean(e.functions != null);
+            if (e.functions != null) {
+                out.writeInt(e.functions.size());
+                for (FunctionStat f : e.functions) {
+                    writeString(out, f.qualName);
+                    out.writeInt(f.startLine);
+                    out.writeInt(f.endLine);
+                    out.writeByte((f.isMethod ? 1 : 0) | (f.isNested ? 2 : 0) | (f.isAsync ? 4 : 0));
+                }
+            }
+            out.writeBoolean(e.hash != null);
+            if (e.hash != null) {
+                out.writeLong(e.hash.h1);
+                out.writeLong(e.hash.h2);
+            }
+        }
+    }
+
+    private void read(DataInputStream in) throws IOException {
+        if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) return;
+        int n = in.readInt();
+        for (int i = 0; i < n; i++) {
+            String key = readString(in);
+            Entry e = new Entry(in.readLong(), in.readLong(), in.readInt());
+            if (in.readBoolean()) {
+                CodeMetrics m = new CodeMetrics();
+                m.fileCount = in.readInt();
+                m.codeLines = in.readInt();
+                m.commentLines = in.readInt();
+                m.blankLines = in.readInt();
+                m.totalLines = in.readInt();
+                e.metrics = m;
+            }
+            if (in.readBoolean()) {
+                int count = in.readInt();
+                List<FunctionStat> functions = new ArrayList<>(count);
+                for (int j = 0; j < count; j++) {
+                    String qual = readString(in);
+                    int start = in.readInt();
+                    int end = in.readInt();
+                    int flags = in.readByte();
+                    functions.add(new FunctionStat(null, qual, start, end,
+                            (flags & 1) != 0, (flags & 2) != 0, (flags & 4) != 0));
+                }
+                e.functions = functions;
+            }
+            if (in.readBoolean()) {
+                e.hash = new ContentHash(in.readLong(), in.readLong(), e.size);
+            }
+            // 文件里的条目多于当前上限时，由 removeEldestEntry 淘汰最久未用的
+            entries.put(key, e);
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        byte[] b = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(b.length);
+        out.write(b);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] b = new byte[in.readInt()];
+        in.readFully(b);
+        return new String(b, StandardCharsets.UTF_8);
+    }
+}
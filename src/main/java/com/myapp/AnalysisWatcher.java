@@ -0,0 +1,441 @@
+package com.myapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.FileVisitResult;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.stream.IntStream;
+
+import com.myapp.CodeStatsCore.AnalyzeResult;
+import com.myapp.CodeStatsCore.CodeMetrics;
+import com.myapp.CodeStatsCore.FunctionStat;
+import com.myapp.CodeStatsCore.Language;
+import com.myapp.CodeStatsCore.Summary;
+
+/**
+ * 监视模式：用 WatchService 监视分析过的目录，合并一连串的变更事件后只重新分析变化的文件，
+ * 并就地更新同一个 AnalyzeResult（代码量做减法 / 加法，函数长度直方图移除旧长度、加入新长度，
+ * 全局函数明细是 SortedFunctionList，每个函数的删除 / 插入为 O(log n)），
+ * 每批的开销与变化的文件（及其中的函数）数成正比，只多一个对数因子。
+ *
+ * 结果只在监视线程上修改；onUpdate 回调中读取是安全的，其他线程读取时需对本对象加锁。
+ * 解析失败的文件（例如编辑到一半的 Java 文件）保留上一次的结果，错误可由 lastError() 查看。
+ * 修改过的文件在 byFile 中保持原来的位置，新出现的文件排在末尾，其余内容与重新完整分析的结果相同。
+ * result.functions 是只读的列表视图，按下标访问为 O(log n)。
+ * include / exclude 和忽略文件的规则与完整分析相同，被排除的目录不会注册监视；忽略文件在开始监视时读取。
+ */
+public class AnalysisWatcher implements Closeable {
+
+    private static final int MAX_DEBOUNCE_ROUNDS = 10;
+
+    /** 单个文件的分析结果（未统计的部分为 null） */
+    private static class FileState {
+        CodeMetrics metrics;
+        List<FunctionStat> functions;
+        long[] seqs;            // functions 在全局明细中的序号
+        Object byFileEntry;
+    }
+
+    private final CodeStatsService service;
+    private final CodeStatsService.AnalyzeRequest req;
+    private final Language language;
+    private final Consumer<AnalyzeResult> onUpdate;
+    private final PathFilter filter;                               // 没有过滤规则时为 null
+    private final WatchService watchService;
+    private final Map<WatchKey, Path> keys = new HashMap<>();
+    private final Set<Path> registered = new HashSet<>();
+    private final Set<Path> roots = new LinkedHashSet<>();         // 监视的目录
+    private final Set<Path> explicitFiles = new HashSet<>();       // 直接指定的文件（监视其所在目录）
+    private final Map<Path, FileState> files = new LinkedHashMap<>();
+    private final Summary.Builder lengths = new Summary.Builder();
+    private final SortedFunctionList sorted = new SortedFunctionList(CodeStatsCore.LONGEST_FIRST);
+    private long nextSeq;                                          // 全局明细的下一个序号（递增，相等的函数按序号排列）
+    private final AnalyzeResult result = new AnalyzeResult();
+    private final Thread thread;
+    private volatile RuntimeException lastError;
+    private long updates;
+    private int lastBatchSize;
+
+    private AnalysisWatcher(CodeStatsService service, CodeStatsService.AnalyzeRequest req,
+                            Consumer<AnalyzeResult> onUpdate) throws IOException {
+        this.service = service;
+        this.req = req;
+        this.language = req.language;
+        this.onUpdate = onUpdate;
+        this.filter = PathFilter.of(req);
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.thread = new Thread(this::run, "code-stats-watch");
+        this.thread.setDaemon(true);
+    }
+
+    /** 注册所有目录、完整分析一次，然后启动监视线程 */
+    static AnalysisWatcher start(CodeStatsService service, CodeStatsService.AnalyzeRequest req,
+                                 Consumer<AnalyzeResult> onUpdate) throws IOException {
+        AnalysisWatcher w = new AnalysisWatcher(service, req, onUpdate);
+        try {
+            w.initialScan();
+        } catch (IOException | RuntimeException e) {
+            w.watchService.close();
+            throw e;
+        }
+        w.thread.start();
+        return w;
+    }
+
+    /** 当前结果（与 onUpdate 收到的是同一个对象） */
+    public synchronized AnalyzeResult result() {
+        return result;
+    }
+
+    /** 已应用的变更批次数 */
+    public synchronized long updates() {
+        return updates;
+    }
+
+    /** 最近一批重新分析的文件数 */
+    public synchronized int lastBatchSize() {
+        return lastBatchSize;
+    }
+
+    /** 最近一次分析失败的异常，没有则为 null */
+    public RuntimeException lastError() {
+        return lastError;
+    }
+
+    @Override
+    public void close() throws IOException {
+        watchService.close();
+        try {
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // ---------- 初次分析 ----------
+
+    private synchronized void initialScan() throws IOException {
+        List<Path> found = new ArrayList<>();
+        if (req.paths != null) {
+            for (String p : req.paths) {
+                if (p == null || p.isBlank()) continue;
+                Path path = Paths.get(p);
+                if (Files.isDirectory(path)) {
+                    roots.add(path);
+                    registerTree(path, found);
+                } else if (Files.isRegularFile(path)) {
+                    // 单个文件：监视其所在目录，只接受该文件的事件
+                    path = path.normalize();
+                    explicitFiles.add(path);
+                    register(path.getParent() != null ? path.getParent() : Paths.get("."));
+                    if (accepts(path)) found.add(path);
+                }
+            }
+        }
+
+        // 与完整分析的返回体字段保持一致
+        if (req.mode != CodeStatsService.MODE_FUNCTION_LENGTH) result.codeMetrics = new CodeMetrics();
+        if (req.mode == CodeStatsService.MODE_FUNCTION_LENGTH) result.byFile = new LinkedHashMap<>();
+
+        // 序号按文件、函数的出现顺序递增，全局明细与完整分析的稳定排序结果一致
+        FileState[] states = analyzeFiles(found);
+        for (int i = 0; i < found.size(); i++) {
+            FileState st = states[i];
+            if (st == null) continue;
+            files.put(found.get(i), st);
+            addTotals(st);
+            updateByFile(found.get(i), st);
+        }
+        if (wantFunctions()) {
+            result.functions = sorted;
+            result.summary = lengths.build();
+        }
+    }
+
+    // ---------- 监视线程 ----------
+
+    private void run() {
+        try {
+            while (true) {
+                WatchKey key = watchService.take();
+                Set<Path> changed = new LinkedHashSet<>();
+                boolean overflow = drain(key, changed);
+                // 去抖动：直到 watchDebounceMillis 内没有新事件才处理这一批；
+                // 持续有事件时最多等待 MAX_DEBOUNCE_ROUNDS 个间隔，避免一直不更新
+                long debounce = Math.max(1, req.watchDebounceMillis);
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(debounce * MAX_DEBOUNCE_ROUNDS);
+                while (System.nanoTime() < deadline
+                        && (key = watchService.poll(debounce, TimeUnit.MILLISECONDS)) != null) {
+                    overflow |= drain(key, changed);
+                }
+                applyChanges(changed, overflow);
+            }
+        } catch (ClosedWatchServiceException | InterruptedException e) {
+            // close() 结束监视
+        }
+    }
+
+    /** 取出一个目录的全部事件；返回是否丢失过事件（OVERFLOW） */
+    private boolean drain(WatchKey key, Set<Path> changed) {
+        boolean overflow = false;
+        Path dir;
+        synchronized (this) {
+            dir = keys.get(key);
+        }
+        for (WatchEvent<?> event : key.pollEvents()) {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                overflow = true;
+            } else if (dir != null) {
+                Path p = dir.resolve((Path) event.context());
+                if (explicitFiles.contains(p.normalize())) p = p.normalize();
+                changed.add(p);
+            }
+        }
+        if (!key.reset()) {
+            // 目录已删除
+            synchronized (this) {
+                Path removed = keys.remove(key);
+                if (removed != null) registered.remove(removed);
+            }
+        }
+        return overflow;
+    }
+
+    private void applyChanges(Set<Path> changed, boolean overflow) {
+        List<Path> toAnalyze = new ArrayList<>();
+        Set<Path> toRemove = new LinkedHashSet<>();
+        synchronized (this) {
+            if (overflow) {
+                // 事件丢失：重新遍历所有目录，已知文件全部重新检查
+                changed.addAll(files.keySet());
+                for (Path root : roots) {
+                    try {
+                        registerTree(root, toAnalyze);
+                    } catch (IOException e) {
+                        // 目录不可读时按已删除处理
+                    }
+                }
+                changed.addAll(explicitFiles);
+            }
+            Set<Path> seen = new HashSet<>(toAnalyze);
+            for (Path p : changed) {
+                if (Files.isDirectory(p)) {
+                    // 新建（或移入）的目录：注册并分析其中的文件
+                    if (underRoot(p) && !registered.contains(p) && !excludedDirectory(p)) {
+                        try {
+                            List<Path> inner = new ArrayList<>();
+                            registerTree(p, inner);
+                            for (Path f : inner) if (seen.add(f)) toAnalyze.add(f);
+                        } catch (IOException e) {
+                            // 忽略无法读取的目录
+                        }
+                    }
+                } else if (Files.isRegularFile(p)) {
+                    if (accepts(p) && seen.add(p)) toAnalyze.add(p);
+                } else if (files.containsKey(p)) {
+                    toRemove.add(p);
+                } else {
+                    // 不存在且不是已知文件：可能是被删除的目录，去掉其下的所有文件
+                    for (Path known : files.keySet()) {
+                        if (known.startsWith(p)) toRemove.add(known);
+                    }
+                }
+            }
+        }
+
+        // 读取和解析不持有锁，其他线程仍可读取旧结果
+        FileState[] states = analyzeFiles(toAnalyze);
+
+        synchronized (this) {
+            for (Path p : toRemove) replace(p, null);
+            for (int i = 0; i < toAnalyze.size(); i++) {
+                if (states[i] != null) replace(toAnalyze.get(i), states[i]);
+            }
+            if (toAnalyze.isEmpty() && toRemove.isEmpty()) return;
+            if (wantFunctions()) result.summary = lengths.build();
+            updates++;
+            lastBatchSize = toAnalyze.size() + toRemove.size();
+        }
+        if (onUpdate != null) {
+            synchronized (this) {
+                onUpdate.accept(result);
+            }
+        }
+    }
+
+    // ---------- 就地更新 ----------
+
+    private void replace(Path path, FileState now) {
+        FileState old = now == null ? files.remove(path) : files.put(path, now);
+        if (old != null) removeTotals(old);
+        if (now != null) addTotals(now);
+        updateByFile(path, now);
+    }
+
+    /** 加入代码量、函数长度和全局明细（新的序号排在所有相等的函数之后，与完整分析的稳定排序一致） */
+    private void addTotals(FileState st) {
+        if (st.metrics != null && result.codeMetrics != null) result.codeMetrics.merge(st.metrics);
+        if (st.functions != null) {
+            st.seqs = new long[st.functions.size()];
+            for (int i = 0; i < st.seqs.length; i++) {
+                FunctionStat f = st.functions.get(i);
+                lengths.add(f.length);
+                st.seqs[i] = nextSeq++;
+                sorted.insert(f, st.seqs[i]);
+            }
+        }
+    }
+
+    private void removeTotals(FileState st) {
+        if (st.metrics != null && result.codeMetrics != null) result.codeMetrics.subtract(st.metrics);
+        if (st.functions != null) {
+            for (int i = 0; i < st.seqs.length; i++) {
+                FunctionStat f = st.functions.get(i);
+                lengths.remove(f.length);
+                sorted.remove(f, st.seqs[i]);
+            }
+        }
+    }
+
+    /** put 不改变已有键的位置：修改的文件留在原处，只有新文件排到末尾 */
+    private void updateByFile(Path path, FileState st) {
+        if (result.byFile == null) return;
+        String key = path.toString();
+        if (st != null && st.byFileEntry != null) result.byFile.put(key, st.byFileEntry);
+        else result.byFile.remove(key);
+    }
+
+    // ---------- 分析单个文件 ----------
+
+    /** 分析一批文件（按 req.parallelism 并行），失败的文件对应位置为 null */
+    private FileState[] analyzeFiles(List<Path> paths) {
+        FileState[] states = new FileState[paths.size()];
+        int parallelism = req.parallelism <= 0 ? Runtime.getRuntime().availableProcessors() : req.parallelism;
+        if (parallelism == 1 || paths.size() < 2) {
+            for (int i = 0; i < states.length; i++) states[i] = analyzeFile(paths.get(i));
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                pool.submit(() -> IntStream.range(0, states.length).parallel()
+                        .forEach(i -> states[i] = analyzeFile(paths.get(i)))).join();
+            } finally {
+                pool.shutdown();
+            }
+        }
+        return states;
+    }
+
+    private FileState analyzeFile(Path path) {
+        CodeStatsService.AnalyzeRequest one = new CodeStatsService.AnalyzeRequest();
+        one.language = language;
+        one.paths = List.of(path.toString());
+        one.mode = req.mode;
+        one.cache = req.cache;
+        one.fastJava = req.fastJava;
+        try {
+            AnalyzeResult r = service.analyze(one);
+            FileState st = new FileState();
+            st.metrics = r.codeMetrics;
+            if (wantFunctions()) {
+                st.functions = r.functions != null ? r.functions : List.of();
+                if (r.byFile != null) st.byFileEntry = r.byFile.get(path.toString());
+            }
+            return st;
+        } catch (RuntimeException e) {
+            lastError = e;
+            return null;
+        }
+    }
+
+    // ---------- 目录注册 ----------
+
+    /** 注册 dir 及其所有子目录，并把其中属于当前语言的文件加入 found */
+    private void registerTree(Path dir, List<Path> found) throws IOException {
+        Files.walkFileTree(dir, new SimpleFileVisitor<>() {
+            @Override
+            public FileVisitResult preVisitDirectory(Path d, BasicFileAttributes attrs) throws IOException {
+                if (filter != null && filter.excluded(rootOf(d), d, true)) return FileVisitResult.SKIP_SUBTREE;
+                register(d);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                if (attrs.isRegularFile() && accepts(file)) found.add(file);
+                return FileVisitResult.CONTINUE;
+            }
+
+            @Override
+            public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                return FileVisitResult.CONTINUE;
+            }
+        });
+    }
+
+    private void register(Path dir) throws IOException {
+        if (!registered.add(dir)) return;
+        WatchKey key = dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY);
+        keys.put(key, dir);
+    }
+
+    /** 是否属于本次分析：扩展名对应当前语言，且是直接指定的文件或在监视的目录下、未被过滤规则排除 */
+    private boolean accepts(Path file) {
+        if (CodeStatsService.languageOf(file) != language) return false;
+        if (explicitFiles.contains(file)) return true;
+        Path root = rootOf(file);
+        return root != null && (filter == null || filter.accepts(root, file));
+    }
+
+    /** 新出现的目录（或其上级目录）是否被过滤规则排除 */
+    private boolean excludedDirectory(Path dir) {
+        Path root = rootOf(dir);
+        return filter != null && root != null && filter.excludedWithParents(root, dir, true);
+    }
+
+    private boolean underRoot(Path p) {
+        return rootOf(p) != null;
+    }
+
+    /** p 所在的监视目录，不在任何监视目录下时为 null */
+    private Path rootOf(Path p) {
+        for (Path root : roots) {
+            if (p.startsWith(root)) return root;
+        }
+        return null;
+    }
+
+    private boolean wantFunctions() {
+        return req.mode != CodeStatsService.MODE_CODE_METRICS;
+    }
+
+    @Override
+    public synchronized String toString() {
+        Iterator<Path> it = roots.iterator();
+        return String.format("watching %s%s, files=%d, updates=%d",
+                it.hasNext() ? it.next() : "-", roots.size() > 1 ? " (+" + (roots.size() - 1) + ")" : "",
+                files.size(), updates);
+    }
+}
@@ -1,20 +1,31 @@
 package com.myapp;
 
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Deque;
+import java.util.Iterator;
 import java.util.List;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
-import com.github.javaparser.StaticJavaParser;
+import com.github.javaparser.JavaParser;
+import com.github.javaparser.Range;
+import com.github.javaparser.ParseProblemException;
+import com.github.javaparser.ParseResult;
+import com.github.javaparser.ParserConfiguration;
 import com.github.javaparser.ast.CompilationUnit;
-import com.github.javaparser.ast.body.BodyDeclaration;
+import com.github.javaparser.ast.body.AnnotationDeclaration;
 import com.github.javaparser.ast.body.CallableDeclaration;
 import com.github.javaparser.ast.body.ClassOrInterfaceDeclaration;
 import com.github.javaparser.ast.body.EnumDeclaration;
+import com.github.javaparser.ast.body.ConstructorDeclaration;
+import com.github.javaparser.ast.body.EnumConstantDeclaration;
+import com.github.javaparser.ast.body.MethodDeclaration;
 import com.github.javaparser.ast.body.RecordDeclaration;
+import com.github.javaparser.ast.expr.ObjectCreationExpr;
+import com.github.javaparser.ast.visitor.VoidVisitorAdapter;
 import com.myapp.CodeStatsCore.CodeMetrics;
 import com.myapp.CodeStatsCore.FunctionStat;
 import com.myapp.CodeStatsCore.Language;
@@ -27,400 +38,360 @@ interface CodeAnalyzer {
     List<FunctionStat> analyze(String code, String filePath);
     
     /** 统计代码量（代码行数、注释行数、空行数） */
-    CodeMetrics analyzeCodeMetrics(String code, String filePath);
+    default CodeMetrics analyzeCodeMetrics(String code, String filePath) {
+        return analyzeCodeMetrics(ByteBuffer.wrap(code.getBytes(StandardCharsets.UTF_8)), filePath);
+    }
+
+    /** 直接在 UTF-8 字节上统计代码量（不解码为 String）；不是合法 UTF-8 时返回 null */
+    CodeMetrics analyzeCodeMetrics(ByteBuffer utf8, String filePath);
     
     /** 返回支持的语言类型 */
     Language language();
+
+    /** 分析器版本：分析逻辑变化导致结果不同时递增，使增量缓存中的旧结果失效 */
+    default int version() { return 1; }
 }
 
 /** —— Java 解析：基于 JavaParser —— */
 class JavaAnalyzer implements CodeAnalyzer {
 
-    @Override public List<FunctionStat> analyze(String code, String filePath) {
-        List<FunctionStat> out = new ArrayList<>();
-        CompilationUnit cu = StaticJavaParser.parse(code);
-
-        Deque<String> typeStack = new ArrayDeque<>();
-        cu.findAll(ClassOrInterfaceDeclaration.class).forEach(c -> traverseType(c, filePath, typeStack, out));
-        cu.findAll(EnumDeclaration.class).forEach(e -> traverseEnum(e, filePath, typeStack, out));
-        cu.findAll(RecordDeclaration.class).forEach(r -> traverseRecord(r, filePath, typeStack, out));
-        return out;
+    /**
+     * 每个线程一个 JavaParser（JavaParser 不是线程安全的，StaticJavaParser 的配置又是全局的），在文件之间复用。
+     * 只需要类型结构和方法的行号范围，因此：
+     *  - 不把注释归属到节点（注释仍会被词法分析跳过，只是不再做归属计算）；
+     *  - 先用 RAW 语言级别（不做按 Java 版本的语法校验，record 等新语法也能解析）；
+     *    RAW 不识别 yield 等依赖语言级别的语法，失败时再用 JAVA_21 解析一次；
+     *  - storeTokens 保持默认的 true：节点的行号范围由词法单元计算，关闭后 getRange() 为空
+     */
+    private static final ThreadLocal<JavaParser> PARSER = ThreadLocal.withInitial(
+            () -> parser(ParserConfiguration.LanguageLevel.RAW));
+    private static final ThreadLocal<JavaParser> LEVEL_PARSER = ThreadLocal.withInitial(
+            () -> parser(ParserConfiguration.LanguageLevel.JAVA_21));
+
+    private static JavaParser parser(ParserConfiguration.LanguageLevel level) {
+        return new JavaParser(new ParserConfiguration().setAttributeComments(false).setLanguageLevel(level));
     }
 
-    private void traverseType(ClassOrInterfaceDeclaration type, String filePath,
-                              Deque<String> stack, List<FunctionStat> out) {
-        stack.push(type.getNameAsString());
-        for (BodyDeclaration<?> m : type.getMembers()) {
-            if (m instanceof CallableDeclaration<?> c) {
-                addCallable(c, filePath, stack, out);
-            } else if (m instanceof ClassOrInterfaceDeclaration nested) {
-                traverseType(nested, filePath, stack, out);
-            } else if (m instanceof EnumDeclaration en) {
-                traverseEnum(en, filePath, stack, out);
-            } else if (m instanceof RecordDeclaration rd) {
-                traverseRecord(rd, filePath, stack, out);
-            }
+    @Override public List<FunctionStat> analyze(String code, String filePath) {
+        ParseResult<CompilationUnit> result = PARSER.get().parse(code);
+        if (!result.isSuccessful() || result.getResult().isEmpty()) {
+            result = LEVEL_PARSER.get().parse(code);
         }
-        stack.pop();
-    }
-
-    private void traverseEnum(EnumDeclaration en, String filePath,
-                              Deque<String> stack, List<FunctionStat> out) {
-        stack.push(en.getNameAsString());
-        for (BodyDeclaration<?> m : en.getMembers()) {
-            if (m instanceof CallableDeclaration<?> c) addCallable(c, filePath, stack, out);
-            else if (m instanceof ClassOrInterfaceDeclaration nested) traverseType(nested, filePath, stack, out);
+        if (!result.isSuccessful() || result.getResult().isEmpty()) {
+            throw new ParseProblemException(result.getProblems()); // 与 StaticJavaParser.parse 相同的异常
         }
-        stack.pop();
+        return functions(result.getResult().get(), filePath);
     }
 
-    private void traverseRecord(RecordDeclaration rd, String filePath,
-                                Deque<String> stack, List<FunctionStat> out) {
-        stack.push(rd.getNameAsString());
-        for (BodyDeclaration<?> m : rd.getMembers()) {
-            if (m instanceof CallableDeclaration<?> c) addCallable(c, filePath, stack, out);
-        }
-        stack.pop();
+    /** 一次遍历语法树，按出现顺序输出具名类型（类 / 接口 / 枚举 / record，含局部类）中的方法和构造器，每个只输出一次 */
+    List<FunctionStat> functions(CompilationUnit cu, String filePath) {
+        List<FunctionStat> out = new ArrayList<>();
+        cu.accept(new CallableCollector(filePath, out), null);
+        return out;
     }
 
-    private void addCallable(CallableDeclaration<?> c, String filePath,
-                             Deque<String> stack, List<FunctionStat> out) {
-        if (c.getRange().isEmpty()) return;
-        int start = c.getRange().get().begin.line;
-        int end   = c.getRange().get().end.line;
-        String qual = String.join(".", reverse(stack)) + "." + c.getNameAsString();
-        boolean isNested = stack.size() > 1;
-        out.add(new FunctionStat(filePath, qual, start, end, true, isNested, false));
-    }
+    @Override public int version() { return 2; }
 
-    private List<String> reverse(Deque<String> stack) {
-        List<String> list = new ArrayList<>(stack);
-        Collections.reverse(list);
-        return list;
-    }
+    /**
+     * 类型名栈随遍历进出；匿名类和枚举常量的类体压入 ANONYMOUS，其中的方法不统计（与之前一致），
+     * 但其中的局部类照常统计，限定名跳过匿名的一层
+     */
+    private static final class CallableCollector extends VoidVisitorAdapter<Void> {
+        private static final String ANONYMOUS = "";
 
-    @Override 
-    public CodeMetrics analyzeCodeMetrics(String code, String filePath) {
-        CodeMetrics metrics = new CodeMetrics();
-        metrics.fileCount = 1;
-        
-        String[] lines = code.split("\\r?\\n", -1);
-        metrics.totalLines = lines.length;
-        
-        boolean inBlockComment = false;
-        for (String line : lines) {
-            String trimmed = line.trim();
-            
-            // 空行
-            if (trimmed.isEmpty()) {
-                metrics.blankLines++;
-                continue;
-            }
-            
-            // 块注释处理
-            if (inBlockComment) {
-                metrics.commentLines++;
-                if (trimmed.contains("*/")) {
-                    inBlockComment = false;
-                }
-                continue;
-            }
-            
-            // 开始块注释
-            if (trimmed.startsWith("/*")) {
-                metrics.commentLines++;
-                if (!trimmed.contains("*/")) {
-                    inBlockComment = true;
-                }
-                continue;
-            }
-            
-            // 单行注释
-            if (trimmed.startsWith("//")) {
-                metrics.commentLines++;
-                continue;
-            }
-            
-            // 代码行
-            metrics.codeLines++;
+        private final String filePath;
+        private final List<FunctionStat> out;
+        private final Deque<String> stack = new ArrayDeque<>();
+        private int namedDepth;
+
+        CallableCollector(String filePath, List<FunctionStat> out) {
+            this.filePath = filePath;
+            this.out = out;
         }
-        
-        return metrics;
-    }
-    
-    @Override public Language language() { return Language.JAVA; }
-}
 
-/** —— Python 解析：按缩进规则的轻量实现 —— */
-class PythonAnalyzer implements CodeAnalyzer {
-    private static final Pattern DEF_PATTERN =
-            Pattern.compile("^\\s*(async\\s+def|def)\\s+([A-Za-z_][A-Za-z0-9_]*)\\s*\\(");
+        @Override public void visit(ClassOrInterfaceDeclaration n, Void arg) {
+            enter(n.getNameAsString());
+            super.visit(n, arg);
+            exit();
+        }
 
-    @Override public List<FunctionStat> analyze(String code, String filePath) {
-        List<FunctionStat> out = new ArrayList<>();
-        String[] lines = code.split("\\r?\\n", -1);
+        @Override public void visit(EnumDeclaration n, Void arg) {
+            enter(n.getNameAsString());
+            super.visit(n, arg);
+            exit();
+        }
 
-        class Frame { String name; int indent; boolean cls; boolean fn;
-            Frame(String n,int i,boolean c,boolean f){name=n;indent=i;cls=c;fn=f;} }
-        Deque<Frame> stack = new ArrayDeque<>();
+        @Override public void visit(RecordDeclaration n, Void arg) {
+            enter(n.getNameAsString());
+            super.visit(n, arg);
+            exit();
+        }
 
-        for (int i=0;i<lines.length;i++){
-            String line = lines[i];
-            String trimmed = line.trim();
-            int indent = leadingSpaces(line);
+        @Override public void visit(AnnotationDeclaration n, Void arg) {
+            enter(n.getNameAsString());
+            super.visit(n, arg);
+            exit();
+        }
 
-            // 缩进出栈
-            while (!stack.isEmpty() && indent <= stack.peek().indent && !trimmed.isEmpty()) {
-                stack.pop();
+        @Override public void visit(ObjectCreationExpr n, Void arg) {
+            if (n.getAnonymousClassBody().isEmpty()) {
+                super.visit(n, arg);
+                return;
             }
+            enter(ANONYMOUS);
+            super.visit(n, arg);
+            exit();
+        }
 
-            if (trimmed.startsWith("class ")) {
-                String cls = trimmed.substring(6).split("[(:\\s]")[0];
-                stack.push(new Frame(cls, indent, true, false));
-                continue;
+        @Override public void visit(EnumConstantDeclaration n, Void arg) {
+            if (n.getClassBody().isEmpty()) {
+                super.visit(n, arg);
+                return;
             }
+            enter(ANONYMOUS);
+            super.visit(n, arg);
+            exit();
+        }
 
-            Matcher m = DEF_PATTERN.matcher(line);
-            if (m.find()) {
-                boolean isAsync = m.group(1).startsWith("async");
-                String fname = m.group(2);
-                int start = i + 1;
-                int end = start;
-
-                // 找到下一个缩进 <= 当前缩进 的非空非注释行的上一行
-                for (int j=i+1;j<lines.length;j++){
-                    String t = lines[j].trim();
-                    if (t.isEmpty() || t.startsWith("#")) continue;
-                    int ind2 = leadingSpaces(lines[j]);
-                    if (ind2 <= indent) break;
-                    end = j + 1;
-                }
+        @Override public void visit(MethodDeclaration n, Void arg) {
+            add(n);
+            super.visit(n, arg); // 方法体中可能有局部类
+        }
 
-                List<String> parts = new ArrayList<>();
-                for (Frame f : stack) if (f.cls || f.fn) parts.add(f.name);
-                Collections.reverse(parts);
-                parts.add(fname);
-                String qual = String.join(".", parts);
+        @Override public void visit(ConstructorDeclaration n, Void arg) {
+            add(n);
+            super.visit(n, arg);
+        }
 
-                boolean isMethod = stack.stream().anyMatch(fr -> fr.cls);
-                boolean isNested = stack.stream().anyMatch(fr -> fr.fn);
+        private void enter(String name) {
+            stack.push(name);
+            if (name != ANONYMOUS) namedDepth++;
+        }
 
-                out.add(new FunctionStat(filePath, qual, start, Math.max(end, start),
-                        isMethod, isNested, isAsync));
+        private void exit() {
+            if (stack.pop() != ANONYMOUS) namedDepth--;
+        }
 
-                stack.push(new Frame(fname, indent, false, true));
+        private void add(CallableDeclaration<?> c) {
+            if (stack.isEmpty() || stack.peek() == ANONYMOUS || c.getRange().isEmpty()) return;
+            StringBuilder qual = new StringBuilder();
+            for (Iterator<String> it = stack.descendingIterator(); it.hasNext(); ) {
+                String name = it.next();
+                if (name != ANONYMOUS) qual.append(name).append('.');
             }
+            qual.append(c.getNameAsString());
+            Range range = c.getRange().get();
+            out.add(new FunctionStat(filePath, qual.toString(), range.begin.line, range.end.line,
+                    true, namedDepth > 1, false));
         }
-        return out;
     }
 
-    private int leadingSpaces(String s){ int i=0; while (i<s.length() && s.charAt(i)==' ') i++; return i; }
-
     @Override
-    public CodeMetrics analyzeCodeMetrics(String code, String filePath) {
-        CodeMetrics metrics = new CodeMetrics();
-        metrics.fileCount = 1;
-        
-        String[] lines = code.split("\\r?\\n", -1);
-        metrics.totalLines = lines.length;
-        
-        boolean inBlockComment = false;
-        for (String line : lines) {
-            String trimmed = line.trim();
-            
-            // 空行
-            if (trimmed.isEmpty()) {
-                metrics.blankLines++;
-                continue;
-            }
-            
-            // 多行字符串（文档字符串）处理
-            if (trimmed.startsWith("\"\"\"") || trimmed.startsWith("'''")) {
-                metrics.commentLines++;
-                // 简化处理：如果同一行有结束标记，不改变状态
-                String marker = trimmed.startsWith("\"\"\"") ? "\"\"\"" : "'''";
-                int firstIdx = trimmed.indexOf(marker);
-                int secondIdx = trimmed.indexOf(marker, firstIdx + 3);
-                if (secondIdx == -1) {
-                    inBlockComment = !inBlockComment;
-                }
-                continue;
-            }
-            
-            if (inBlockComment) {
-                metrics.commentLines++;
-                if (trimmed.contains("\"\"\"") || trimmed.contains("'''")) {
-                    inBlockComment = false;
-                }
-                continue;
-            }
-            
-            // 单行注释
-            if (trimmed.startsWith("#")) {
-                metrics.commentLines++;
-                continue;
-            }
-            
-            // 代码行
-            metrics.codeLines++;
-        }
-        
-        return metrics;
+    public CodeMetrics analyzeCodeMetrics(ByteBuffer utf8, String filePath) {
+        return LineClassifier.cLike(utf8);
     }
     
-    @Override public Language language() { return Language.PYTHON; }
+    @Override public Language language() { return Language.JAVA; }
 }
 
-/** —— C# 解析器 —— */
-class CSharpAnalyzer implements CodeAnalyzer {
-    // C#函数定义的正则表达式
-    private static final Pattern FUNCTION_PATTERN =
-            Pattern.compile("^\\s*(?:(?:public|private|protected|internal|static|virtual|override|abstract|sealed|async)\\s+)*" +
-                    "(?:[\\w<>\\[\\],\\s]+)\\s+" +  // 返回类型
-                    "([\\w]+)\\s*" +               // 函数名
-                    "\\([^)]*\\)\\s*" +            // 参数列表
-                    "(?:\\{|;)");                  // 函数体开始或声明结束
+/**
+ * —— Java 快速模式：JavaScanner 词法扫描，没有把握时退回 JavaAnalyzer ——
+ * 输出规则与 JavaAnalyzer 相同，但不检查语法（JavaParser 会拒绝的文件这里可能仍有结果）
+ */
+class FastJavaAnalyzer implements CodeAnalyzer {
+    private final JavaAnalyzer precise = new JavaAnalyzer();
 
-    @Override
-    public List<FunctionStat> analyze(String code, String filePath) {
-        List<FunctionStat> out = new ArrayList<>();
-        String[] lines = code.split("\\r?\\n", -1);
+    @Override public List<FunctionStat> analyze(String code, String filePath) {
+        List<FunctionStat> out = JavaScanner.scan(code, filePath);
+        if (out != null) return out;
+        return precise.analyze(code, filePath);
+    }
 
-        // 使用栈跟踪类和命名空间结构
-        Deque<String> stack = new ArrayDeque<>();
+    @Override
+    public CodeMetrics analyzeCodeMetrics(ByteBuffer utf8, String filePath) {
+        return precise.analyzeCodeMetrics(utf8, filePath);
+    }
 
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i];
-            String trimmed = line.trim();
+    @Override public Language language() { return Language.JAVA; }
 
-            // 跳过注释和预处理指令
-            if (trimmed.startsWith("//") || trimmed.startsWith("#") ||
-                    trimmed.startsWith("/*") || trimmed.isEmpty()) {
-                continue;
-            }
+    /** 与精确模式的版本号不同，增量缓存不会混用两种模式的结果 */
+    @Override public int version() { return 1000 + precise.version(); }
+}
 
-            // 检查类、接口、结构体定义
-            if (trimmed.matches("^\\s*(public|private|internal)?\\s*(class|interface|struct)\\s+[\\w<>]+.*")) {
-                String typeName = trimmed.replaceAll("^\\s*(public|private|internal)?\\s*(class|interface|struct)\\s+", "")
-                        .split("[\\s:{]")[0];
-                stack.push(typeName);
-                continue;
-            }
+/** —— Python 解析：按缩进规则的轻量实现 —— */
+class PythonAnalyzer implements CodeAnalyzer {
+    private static final Pattern DEF_PATTERN =
+            Pattern.compile("^\\s*(async\\s+def|def)\\s+([A-Za-z_][A-Za-z0-9_]*)\\s*\\(");
 
-            // 检查命名空间
-            if (trimmed.matches("^\\s*namespace\\s+[\\w.]+.*")) {
-                String namespace = trimmed.replaceFirst("^\\s*namespace\\s+", "").split("[\\s{]")[0];
-                stack.push(namespace);
-                continue;
-            }
+    /** 打开的 class / def；qual 为含自身的限定名 */
+    private static final class Frame {
+        final String qual;
+        final int indent;
+        final boolean cls;
+        final int slot;      // def：在输出中的位置（结束行在出栈时回填）
+
+        Frame(String qual, int indent, boolean cls, int slot) {
+            this.qual = qual;
+            this.indent = indent;
+            this.cls = cls;
+            this.slot = slot;
+        }
+    }
 
-            // 检查右花括号，可能是结束类/命名空间定义
-            if (trimmed.equals("}")) {
-                if (!stack.isEmpty()) {
-                    stack.pop();
-                }
-                continue;
+    /**
+     * 单遍扫描：逐个逻辑行（跨行的括号、反斜杠续行、多行字符串合为一行）按缩进维护 class / def 栈，
+     * 逻辑行缩进不大于栈顶时出栈，函数结束行为此前最后一个非空、非纯注释的物理行。
+     * 空行和纯注释行不影响缩进；制表符按 Python 的规则对齐到 8 的倍数
+     */
+    @Override public List<FunctionStat> analyze(String code, String filePath) {
+        List<FunctionStat> out = new ArrayList<>();
+        Deque<Frame> stack = new ArrayDeque<>();
+        int classes = 0;
+        int functions = 0;
+
+        // 跨行的词法状态
+        char quote = 0;            // 所在字符串的引号，0 为不在字符串中
+        boolean triple = false;
+        int depth = 0;             // 未闭合的括号数
+        boolean backslash = false; // 上一行以 \ 续行
+        int lastContent = 0;       // 最后一个非空、非纯注释的物理行
+
+        int n = code.length();
+        int lineNo = 0;
+        for (int lineStart = 0; lineStart <= n; ) {
+            int lineEnd = code.indexOf('\n', lineStart);
+            if (lineEnd < 0) lineEnd = n;
+            int next = lineEnd + 1;
+            if (lineEnd > lineStart && code.charAt(lineEnd - 1) == '\r') lineEnd--;
+            lineNo++;
+
+            boolean continuation = quote != 0 || depth > 0 || backslash;
+            int indent = 0;
+            int s = lineStart;
+            for (; s < lineEnd; s++) {
+                char c = code.charAt(s);
+                if (c == ' ') indent++;
+                else if (c == '\t') indent = (indent / 8 + 1) * 8;
+                else if (c == '\f') indent = 0;
+                else break;
             }
-
-            Matcher m = FUNCTION_PATTERN.matcher(line);
-            if (m.find()) {
-                String funcName = m.group(1);
-
-                // 排除一些常见的非函数关键字
-                if ("if".equals(funcName) || "for".equals(funcName) || "while".equals(funcName) ||
-                        "foreach".equals(funcName) || "using".equals(funcName) || "catch".equals(funcName)) {
-                    continue;
-                }
-
-                int start = i + 1;
-                int end = start;
-
-                // 如果是函数定义（有大括号），找到函数结束位置
-                if (line.contains("{")) {
-                    int braceCount = 1;
-                    for (int j = i + 1; j < lines.length && braceCount > 0; j++) {
-                        String l = lines[j];
-                        for (char c : l.toCharArray()) {
-                            if (c == '{') braceCount++;
-                            else if (c == '}') braceCount--;
+            boolean blank = s == lineEnd || (quote == 0 && code.charAt(s) == '#');
+
+            if (!blank) {
+                if (!continuation) {
+                    // 新的逻辑行：缩进不大于栈顶的 class / def 结束于上一个内容行
+                    while (!stack.isEmpty() && indent <= stack.peek().indent) {
+                        Frame f = stack.pop();
+                        if (f.cls) {
+                            classes--;
+                        } else {
+                            functions--;
+                            close(out, f, lastContent);
                         }
-                        if (braceCount == 0) {
-                            end = j + 1;
-                            break;
+                    }
+                    char first = code.charAt(s);
+                    if (first == 'c' && code.startsWith("class", s) && s + 5 < lineEnd
+                            && (code.charAt(s + 5) == ' ' || code.charAt(s + 5) == '\t')) {
+                        int nameStart = s + 6;
+                        int nameEnd = nameStart;
+                        while (nameEnd < lineEnd && "(: \t".indexOf(code.charAt(nameEnd)) < 0) nameEnd++;
+                        String name = code.substring(nameStart, nameEnd);
+                        stack.push(new Frame(qualify(stack, name), indent, true, -1));
+                        classes++;
+                    } else if (first == 'd' || first == 'a') {
+                        Matcher m = DEF_PATTERN.matcher(code).region(s, lineEnd);
+                        if (m.find()) {
+                            boolean isAsync = m.group(1).startsWith("async");
+                            String qual = qualify(stack, m.group(2));
+                            out.add(new FunctionStat(filePath, qual, lineNo, lineNo,
+                                    classes > 0, functions > 0, isAsync));
+                            stack.push(new Frame(qual, indent, false, out.size() - 1));
+                            functions++;
                         }
-                        end = j + 1;
                     }
+                }
+                lastContent = lineNo;
+            }
 
-                    // 构建限定名称
-                    String qualName = funcName;
-                    if (!stack.isEmpty()) {
-                        List<String> pathElements = new ArrayList<>(stack);
-                        Collections.reverse(pathElements);
-                        qualName = String.join(".", pathElements) + "." + funcName;
+            // 更新跨行状态：字符串、括号、注释、行尾反斜杠
+            backslash = false;
+            for (int i = s; i < lineEnd; i++) {
+                char c = code.charAt(i);
+                if (quote != 0) {
+                    if (c == '\\') {
+                        if (i + 1 == lineEnd) backslash = true;
+                        i++;
+                    } else if (c == quote && (!triple || (i + 2 < lineEnd
+                            && code.charAt(i + 1) == quote && code.charAt(i + 2) == quote))) {
+                        if (triple) i += 2;
+                        quote = 0;
                     }
-
-                    boolean isMethod = stack.stream().anyMatch(s ->
-                            s.contains("class") || s.contains("struct"));
-                    boolean isNested = stack.size() > 1;
-
-                    out.add(new FunctionStat(filePath, qualName, start, end,
-                            isMethod, isNested, funcName.startsWith("async")));
+                } else if (c == '#') {
+                    break;
+                } else if (c == '"' || c == '\'') {
+                    quote = c;
+                    triple = i + 2 < lineEnd && code.charAt(i + 1) == c && code.charAt(i + 2) == c;
+                    if (triple) i += 2;
+                } else if (c == '(' || c == '[' || c == '{') {
+                    depth++;
+                } else if (c == ')' || c == ']' || c == '}') {
+                    if (depth > 0) depth--;
+                } else if (c == '\\' && i + 1 == lineEnd) {
+                    backslash = true;
                 }
             }
-        }
+            // 单引号字符串不能跨行（除非反斜杠续行）：不完整的行不影响后面
+            if (quote != 0 && !triple && !backslash) quote = 0;
 
+            lineStart = next;
+        }
+        while (!stack.isEmpty()) {
+            Frame f = stack.pop();
+            if (!f.cls) close(out, f, lastContent);
+        }
         return out;
     }
 
-    @Override
-    public CodeMetrics analyzeCodeMetrics(String code, String filePath) {
-        CodeMetrics metrics = new CodeMetrics();
-        metrics.fileCount = 1;
-
-        String[] lines = code.split("\\r?\\n", -1);
-        metrics.totalLines = lines.length;
-
-        boolean inBlockComment = false;
-        for (String line : lines) {
-            String trimmed = line.trim();
-
-            // 空行
-            if (trimmed.isEmpty()) {
-                metrics.blankLines++;
-                continue;
-            }
+    /** 回填函数的结束行 */
+    private static void close(List<FunctionStat> out, Frame f, int end) {
+        FunctionStat open = out.get(f.slot);
+        out.set(f.slot, new FunctionStat(open.filePath, open.qualName, open.startLine,
+                Math.max(end, open.startLine), open.isMethod, open.isNested, open.isAsync));
+    }
 
-            // 块注释处理
-            if (inBlockComment) {
-                metrics.commentLines++;
-                if (trimmed.contains("*/")) {
-                    inBlockComment = false;
-                }
-                continue;
-            }
+    private static String qualify(Deque<Frame> stack, String name) {
+        return stack.isEmpty() ? name : stack.peek().qual + "." + name;
+    }
 
-            // 开始块注释
-            if (trimmed.startsWith("/*")) {
-                metrics.commentLines++;
-                if (!trimmed.contains("*/")) {
-                    inBlockComment = true;
-                }
-                continue;
-            }
+    @Override
+    public CodeMetrics analyzeCodeMetrics(ByteBuffer utf8, String filePath) {
+        return LineClassifier.python(utf8);
+    }
+    
+    @Override public int version() { return 2; }
 
-            // 单行注释
-            if (trimmed.startsWith("//")) {
-                metrics.commentLines++;
-                continue;
-            }
+    @Override public Language language() { return Language.PYTHON; }
+}
 
-            // 代码行
-            metrics.codeLines++;
-        }
+/** —— C# 解析器 —— */
+class CSharpAnalyzer implements CodeAnalyzer {
+    /**
+     * 单遍扫描：CFamilyLexer 跟踪注释、字符串和大括号并给出词法单元，
+     * CSharpScanner 按词法单元识别命名空间、类型、属性和函数，不再逐行匹配正则
+     */
+    @Override
+    public List<FunctionStat> analyze(String code, String filePath) {
+        return CSharpScanner.scan(code, filePath);
+    }
 
-        return metrics;
+    @Override
+    public CodeMetrics analyzeCodeMetrics(ByteBuffer utf8, String filePath) {
+        return LineClassifier.cLike(utf8);
     }
 
+    @Override
+    public int version() { return 3; }
+
     @Override
     public Language language() {
         return Language.CSHARP;
@@ -428,110 +399,43 @@ class CSharpAnalyzer implements CodeAnalyzer {
 }
 /** —— C/C++ 解析器 —— */
 class CppAnalyzer implements CodeAnalyzer {
-    // C/C++函数定义的正则表达式（简化版）
-    private static final Pattern FUNCTION_PATTERN = 
-        Pattern.compile("^\\s*(?:(?:inline|static|extern|virtual|explicit|friend|constexpr)\\s+)*" +
-                       "(?:[\\w:<>,\\s\\*&]+)\\s+" +  // 返回类型
-                       "([\\w:~]+)\\s*" +              // 函数名
-                       "\\([^)]*\\)\\s*" +             // 参数列表
-                       "(?:const|override|final|noexcept|throw)?\\s*" +  // 修饰符
-                       "(?:\\{|;)");                   // 函数体开始或声明结束
-
+    /** 单遍扫描：CFamilyLexer 跟踪注释、字符串、预处理指令和大括号，函数的结束行为其函数体的 } 所在行 */
     @Override
     public List<FunctionStat> analyze(String code, String filePath) {
         List<FunctionStat> out = new ArrayList<>();
-        String[] lines = code.split("\\r?\\n", -1);
-        
-        for (int i = 0; i < lines.length; i++) {
-            String line = lines[i];
-            String trimmed = line.trim();
-            
-            // 跳过注释和预处理指令
-            if (trimmed.startsWith("//") || trimmed.startsWith("#") || 
-                trimmed.startsWith("/*") || trimmed.isEmpty()) {
+        CFamilyLexer lexer = new CFamilyLexer(code, CFamilyLexer.CPP,
+                (slot, line) -> CFamilyLexer.closeFunction(out, slot, line));
+
+        while (lexer.nextLine()) {
+            int s = lexer.contentStart();
+            int e = lexer.lineEnd();
+            // 跳过注释、字符串中的行和预处理指令
+            if (!lexer.inCode() || s == e || code.charAt(s) == '#' || code.startsWith("//", s)
+                    || code.startsWith("/*", s)) {
                 continue;
             }
-            
-            Matcher m = FUNCTION_PATTERN.matcher(line);
-            if (m.find()) {
-                String funcName = m.group(1);
-                int start = i + 1;
-                int end = start;
-                
-                // 如果是函数定义（有大括号），找到函数结束位置
-                if (line.contains("{")) {
-                    int braceCount = 1;
-                    for (int j = i + 1; j < lines.length && braceCount > 0; j++) {
-                        String l = lines[j];
-                        for (char c : l.toCharArray()) {
-                            if (c == '{') braceCount++;
-                            else if (c == '}') braceCount--;
-                        }
-                        if (braceCount == 0) {
-                            end = j + 1;
-                            break;
-                        }
-                        end = j + 1;
-                    }
-                    
-                    out.add(new FunctionStat(filePath, funcName, start, end, 
-                            false, false, false));
-                }
+
+            // 函数定义（有函数体）：结束行在函数体的 { 闭合时回填
+            int body = lexer.functionHeader();
+            if (body >= 0 && code.charAt(body) == '{') {
+                int line = lexer.line();
+                out.add(new FunctionStat(filePath, lexer.name(), line, line,
+                        false, false, false));
+                lexer.openAt(body, out.size() - 1);
             }
         }
-        
+
         return out;
     }
-    
+
     @Override
-    public CodeMetrics analyzeCodeMetrics(String code, String filePath) {
-        CodeMetrics metrics = new CodeMetrics();
-        metrics.fileCount = 1;
-        
-        String[] lines = code.split("\\r?\\n", -1);
-        metrics.totalLines = lines.length;
-        
-        boolean inBlockComment = false;
-        for (String line : lines) {
-            String trimmed = line.trim();
-            
-            // 空行
-            if (trimmed.isEmpty()) {
-                metrics.blankLines++;
-                continue;
-            }
-            
-            // 块注释处理
-            if (inBlockComment) {
-                metrics.commentLines++;
-                if (trimmed.contains("*/")) {
-                    inBlockComment = false;
-                }
-                continue;
-            }
-            
-            // 开始块注释
-            if (trimmed.startsWith("/*")) {
-                metrics.commentLines++;
-                if (!trimmed.contains("*/")) {
-                    inBlockComment = true;
-                }
-                continue;
-            }
-            
-            // 单行注释
-            if (trimmed.startsWith("//")) {
-                metrics.commentLines++;
-                continue;
-            }
-            
-            // 代码行
-            metrics.codeLines++;
-        }
-        
-        return metrics;
+    public CodeMetrics analyzeCodeMetrics(ByteBuffer utf8, String filePath) {
+        return LineClassifier.cLike(utf8);
     }
     
+    @Override
+    public int version() { return 3; }
+
     @Override 
     public Language language() { 
         return Language.CPP; // C和C++使用相同的分析器
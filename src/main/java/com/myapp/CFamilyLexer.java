@@ -0,0 +1,502 @@
+package com.myapp;
+
+import java.util.Arrays;
+import java.util.List;
+
+import com.myapp.CodeStatsCore.FunctionStat;
+
+/**
+ * C / C++ / C# 的单遍词法扫描：逐行前进，跟踪跨行的注释、字符串、字符字面量和预处理指令状态，
+ * 并维护大括号栈。分析器可以给某个 { 打上标记（如函数在输出中的位置），
+ * 带标记的一层闭合时通过 Listener 回报所在行——整个文件只扫描一次，不再从每个函数开头重新数大括号。
+ *
+ * 用法：每次 nextLine() 前进一行（同时扫描上一行），在该行被扫描之前可以查看行的位置、
+ * 调用 openAt / openNext 标记这一行（或之后）的 {；nextLine() 返回 false 时所有回调都已完成，
+ * 文件结束时仍未闭合的层按最后一行回报。
+ *
+ * 识别的写法：
+ *  - 通用：// 和块注释、"..." 字符串、'...' 字符字面量；
+ *  - C / C++：行尾反斜杠续行（字符串、// 注释、预处理指令）、原始字符串 R"delim(...)delim"、数字分隔符 1'000；
+ *  - C#：逐字字符串 @"..."、原始字符串 """..."""、内插字符串 $"...{expr}..."
+ *    （内插表达式按代码扫描，其中的大括号不入栈；原始内插字符串的表达式按字符串内容处理）。
+ * 预处理指令行（# 开头）中的大括号不计数，多余的 } 忽略。
+ */
+final class CFamilyLexer {
+
+    // 方言
+    static final int CPP = 0;
+    static final int CSHARP = 1;
+
+    /** 没有标记的一层 */
+    static final int NONE = -1;
+
+    /** 带标记的一层闭合、或等待中的 openNext 被取消时回调；line 为 } 或 ; 所在行（1-based） */
+    interface Listener {
+        void closed(int tag, int line);
+    }
+
+    // 词法单元类型
+    static final int WORD = 1;      // 标识符、关键字、数字
+    static final int PUNCT = 2;     // 单个标点字符
+    static final int LITERAL = 3;   // 字符串或字符字面量（只报告开头）
+
+    /**
+     * 代码中的词法单元，按出现顺序回调，回调时 line() 为所在行。
+     * 注释、预处理指令和内插字符串的表达式中的内容不报告
+     */
+    interface Tokens {
+        void token(int kind, int start, int end);
+    }
+
+    // 行间状态
+    private static final int CODE = 0;
+    private static final int LINE_COMMENT = 1;   // C / C++ 的 // 注释以反斜杠续到下一行
+    private static final int BLOCK_COMMENT = 2;
+    private static final int STRING = 3;         // "..."；C / C++ 可以反斜杠续行
+    private static final int VERBATIM = 4;       // C# @"..."
+    private static final int RAW_STRING = 5;     // C++ R"delim(...)delim"、C# """..."""
+
+    /** C / C++ 函数头参数表之后可以有的一个限定词 */
+    private static final String[] QUALIFIERS = {"const", "override", "final", "noexcept", "throw"};
+
+    /** C / C++ 中后面跟 ( 的语句关键字：缩进的 if (...) { 等语句块与函数头形式相同，不作为函数名 */
+    private static final String[] STATEMENT_KEYWORDS = {"if", "for", "while", "switch", "catch", "return", "sizeof"};
+
+    private final String code;
+    private final int dialect;
+    private final Listener listener;
+    private final Tokens tokens;
+    private final int n;
+
+    // 当前行
+    private int line;
+    private int lineStart;
+    private int lineEnd;        // 不含 \r\n
+    private int next;           // 下一行的开头
+    private int contentStart;   // 第一个非空白字符
+    private boolean inCode;
+
+    private int state = CODE;
+    private boolean interpolated;   // 所在的 STRING / VERBATIM 是内插字符串
+    private boolean directive;      // 在预处理指令中（C / C++ 可续行）
+    private int resume;             // BLOCK_COMMENT / RAW_STRING：结束符之后的位置，没有结束符时为 n + 1
+
+    // 大括号栈：每层的标记
+    private int[] tags = new int[64];
+    private int depth;
+
+    // C# 内插表达式：所在字符串的状态和表达式中未闭合的 { 数
+    private int[] holeStates = new int[8];
+    private int[] holeDepths = new int[8];
+    private int holes;
+
+    // functionHeader() 识别出的函数名
+    private int nameStart;
+    private int nameEnd;
+
+    private int openIndex = -1;
+    private int openIndexTag = NONE;
+    private int pendingTag = NONE;
+
+    CFamilyLexer(String code, int dialect, Listener listener) {
+        this(code, dialect, listener, null);
+    }
+
+    CFamilyLexer(String code, int dialect, Listener listener, Tokens tokens) {
+        this.code = code;
+        this.dialect = dialect;
+        this.listener = listener;
+        this.tokens = tokens;
+        this.n = code.length();
+    }
+
+    /** 扫描当前行并前进到下一行；没有下一行时回报所有未闭合的层并返回 false */
+    boolean nextLine() {
+        if (line > 0) {
+            scan();
+            if (next > n) {
+                finish();
+                return false;
+            }
+            lineStart = next;
+        }
+        int end = code.indexOf('\n', lineStart);
+        if (end < 0) end = n;
+        next = end + 1;
+        if (end > lineStart && code.charAt(end - 1) == '\r') end--;
+        lineEnd = end;
+        line++;
+
+        int s = lineStart;
+        while (s < lineEnd && code.charAt(s) <= ' ') s++;
+        contentStart = s;
+        inCode = state == CODE && holes == 0 && !directive;
+        if (inCode && s < lineEnd && code.charAt(s) == '#') directive = true;
+        return true;
+    }
+
+    int line() { return line; }
+    int lineStart() { return lineStart; }
+    int lineEnd() { return lineEnd; }
+    int contentStart() { return contentStart; }
+
+    /** 当前行从代码开始：不在注释、字符串、内插表达式或上一行续下来的预处理指令中 */
+    boolean inCode() { return inCode; }
+
+    /** 当前行 index 处的 {（若确实是代码中的 {）打上标记 */
+    void openAt(int index, int tag) {
+        openIndex = index;
+        openIndexTag = tag;
+    }
+
+    /** 从当前行开头起的下一个代码中的 { 打上标记；在此之前遇到 ; 时取消（同样回调） */
+    void openNext(int tag) {
+        if (pendingTag != NONE) listener.closed(pendingTag, line);
+        pendingTag = tag;
+    }
+
+    /**
+     * 识别当前行开头的函数头，返回其后 { 或 ; 的位置（不是函数头时返回 -1），函数名见 nameStart / nameEnd。
+     * 与原先的正则等价，但只做常数次线性扫描，不会回溯：
+     *   C / C++：^\s*[\w:<>,\s*&]+\s+([\w:~]+)\s*\([^)]*\)\s*(const|override|final|noexcept|throw)?\s*[{;]
+     *   C#：    ^\s*[\w<>\[\],\s]+\s+(\w+)\s*\([^)]*\)\s*[{;]
+     * 即：行中第一个 ( 之前是函数名，函数名前至少有两个字符、全部属于返回类型的字符集且以空白结尾
+     * （修饰符也由返回类型的字符集覆盖），参数表到第一个 ) 为止。
+     * C / C++ 的函数名不能是 STATEMENT_KEYWORDS 中的关键字（C# 由调用方排除）。
+     */
+    int functionHeader() {
+        int ls = lineStart;
+        int le = lineEnd;
+        boolean csharp = dialect == CSHARP;
+
+        // 第一个 (；记下第一个不属于返回类型字符集的字符（只能出现在函数名中）
+        int paren = ls;
+        int firstOther = -1;
+        for (; paren < le; paren++) {
+            char c = code.charAt(paren);
+            if (c == '(') break;
+            if (!isTypeChar(c, csharp)) {
+                if (!isNameChar(c, csharp)) return -1;
+                if (firstOther < 0) firstOther = paren;
+            }
+        }
+        if (paren == le) return -1;
+
+        int end = paren;
+        while (end > ls && isSpace(code.charAt(end - 1))) end--;
+        int start = end;
+        while (start > ls && isNameChar(code.charAt(start - 1), csharp)) start--;
+        if (start == end || start - ls < 2 || !isSpace(code.charAt(start - 1))
+                || firstOther >= 0 && firstOther < start || !csharp && isStatementKeyword(start, end)) {
+            return -1;
+        }
+
+        int i = paren + 1;
+        while (i < le && code.charAt(i) != ')') i++;
+        if (i == le) return -1;
+        i = skipSpaces(i + 1, le);
+        if (i < le && (code.charAt(i) == '{' || code.charAt(i) == ';')) {
+            nameStart = start;
+            nameEnd = end;
+            return i;
+        }
+        if (csharp) return -1;
+        for (String qualifier : QUALIFIERS) {
+            if (code.startsWith(qualifier, i)) {
+                int j = skipSpaces(i + qualifier.length(), le);
+                if (j < le && (code.charAt(j) == '{' || code.charAt(j) == ';')) {
+                    nameStart = start;
+                    nameEnd = end;
+                    return j;
+                }
+                return -1;
+            }
+        }
+        return -1;
+    }
+
+    /** functionHeader() 识别出的函数名 */
+    String name() {
+        return code.substring(nameStart, nameEnd);
+    }
+
+    private void scan() {
+        int end = lineEnd;
+        int run = -1;   // 当前标识符 / 数字的起点
+        for (int i = lineStart; i < end; i++) {
+            char c = code.charAt(i);
+            switch (state) {
+                case LINE_COMMENT:
+                    i = end;
+                    break;
+                case BLOCK_COMMENT:
+                case RAW_STRING:
+                    if (resume <= end) {
+                        i = resume - 1;
+                        state = CODE;
+                    } else {
+                        i = end;
+                    }
+                    break;
+                case STRING:
+                    if (c == '\\') {
+                        i++;
+                    } else if (c == '"') {
+                        state = CODE;
+                    } else if (c == '{' && interpolated) {
+                        if (i + 1 < end && code.charAt(i + 1) == '{') i++;
+                        else openHole();
+                    }
+                    break;
+                case VERBATIM:
+                    if (c == '"') {
+                        if (i + 1 < end && code.charAt(i + 1) == '"') i++;
+                        else state = CODE;
+                    } else if (c == '{' && interpolated) {
+                        if (i + 1 < end && code.charAt(i + 1) == '{') i++;
+                        else openHole();
+                    }
+                    break;
+                default:
+                    if (isIdentPart(c)) {
+                        if (run < 0) run = i;
+                        break;
+                    }
+                    int runStart = run;
+                    run = -1;
+                    if (runStart >= 0) emit(WORD, runStart, i);
+                    if (c == '\'' && dialect == CPP && runStart >= 0 && isDigit(code.charAt(runStart))
+                            && i + 1 < end && isIdentPart(code.charAt(i + 1))) {
+                        run = runStart;   // 数字分隔符 1'000
+                        break;
+                    }
+                    if (c > ' ') i = code(c, i, end, runStart);
+            }
+        }
+        if (run >= 0 && state == CODE) emit(WORD, run, end);
+
+        // 行尾：按续行规则决定下一行的状态
+        boolean backslash = end > lineStart && code.charAt(end - 1) == '\\';
+        if (state == LINE_COMMENT && !(dialect == CPP && backslash)) state = CODE;
+        if (state == STRING && !(dialect == CPP && backslash)) {
+            // 没有结束的字符串不能跨行：丢掉所在的内插表达式
+            state = CODE;
+            holes = 0;
+        }
+        if (directive && !(dialect == CPP && backslash)) directive = false;
+        openIndex = -1;
+    }
+
+    /** 扫描代码中的一个字符（不是标识符字符），返回最后处理的位置 */
+    private int code(char c, int i, int end, int runStart) {
+        char d = i + 1 < end ? code.charAt(i + 1) : 0;
+        switch (c) {
+            case '/':
+                if (d == '/') {
+                    state = LINE_COMMENT;
+                    return end;
+                }
+                if (d == '*') {
+                    int close = code.indexOf("*/", i + 2);
+                    return skipTo(BLOCK_COMMENT, close < 0 ? n + 1 : close + 2, end);
+                }
+                emit(PUNCT, i, i + 1);
+                return i;
+            case '\'':
+                // 字符字面量不跨行
+                emit(LITERAL, i, i + 1);
+                for (int j = i + 1; j < end; j++) {
+                    char q = code.charAt(j);
+                    if (q == '\\') j++;
+                    else if (q == '\'') return j;
+                }
+                return end;
+            case '"':
+                emit(LITERAL, i, i + 1);
+                if (dialect == CPP && runStart >= 0 && code.charAt(i - 1) == 'R' && isRawPrefix(runStart, i)) {
+                    int open = i + 1;
+                    int limit = Math.min(end, i + 18);   // 分隔符最多 16 个字符
+                    while (open < limit && code.charAt(open) != '(') open++;
+                    if (open < limit) {
+                        String terminator = ")" + code.substring(i + 1, open) + "\"";
+                        int close = code.indexOf(terminator, open + 1);
+                        return skipTo(RAW_STRING, close < 0 ? n + 1 : close + terminator.length(), end);
+                    }
+                }
+                if (dialect == CSHARP) {
+                    int quotes = 1;
+                    while (i + quotes < end && code.charAt(i + quotes) == '"') quotes++;
+                    if (quotes >= 3) {
+                        String terminator = code.substring(i, i + quotes);
+                        int close = code.indexOf(terminator, i + quotes);
+                        return skipTo(RAW_STRING, close < 0 ? n + 1 : close + quotes, end);
+                    }
+                    if (quotes == 2) return i + 1;   // ""
+                }
+                state = STRING;
+                interpolated = false;
+                return i;
+            case '@':
+            case '$':
+                if (dialect == CSHARP) {
+                    int j = i;
+                    boolean verbatim = false;
+                    boolean interp = false;
+                    while (j < end && (code.charAt(j) == '@' || code.charAt(j) == '$')) {
+                        if (code.charAt(j) == '@') verbatim = true;
+                        else interp = true;
+                        j++;
+                    }
+                    if (j < end && code.charAt(j) == '"') {
+                        if (j + 2 < end && code.charAt(j + 1) == '"' && code.charAt(j + 2) == '"') {
+                            return code('"', j, end, -1);
+                        }
+                        emit(LITERAL, i, j + 1);
+                        state = verbatim ? VERBATIM : STRING;
+                        interpolated = interp;
+                        return j;
+                    }
+                }
+                emit(PUNCT, i, i + 1);
+                return i;
+            case '{':
+                if (holes > 0) {
+                    holeDepths[holes - 1]++;
+                } else if (!directive) {
+                    emit(PUNCT, i, i + 1);
+                    int tag = NONE;
+                    if (i == openIndex) {
+                        tag = openIndexTag;
+                        openIndex = -1;
+                    } else if (pendingTag != NONE) {
+                        tag = pendingTag;
+                        pendingTag = NONE;
+                    }
+                    push(tag);
+                }
+                return i;
+            case '}':
+                if (holes > 0) {
+                    if (holeDepths[holes - 1] == 0) {
+                        state = holeStates[--holes];
+                        interpolated = true;
+                    } else {
+                        holeDepths[holes - 1]--;
+                    }
+                } else {
+                    emit(PUNCT, i, i + 1);
+                    if (!directive && depth > 0) {
+                        int tag = tags[--depth];
+                        if (tag != NONE) listener.closed(tag, line);
+                    }
+                }
+                return i;
+            case ';':
+                emit(PUNCT, i, i + 1);
+                if (pendingTag != NONE && holes == 0 && !directive) {
+                    listener.closed(pendingTag, line);
+                    pendingTag = NONE;
+                }
+                return i;
+            default:
+                emit(PUNCT, i, i + 1);
+                return i;
+        }
+    }
+
+    private void emit(int kind, int start, int end) {
+        if (tokens != null && holes == 0 && !directive) tokens.token(kind, start, end);
+    }
+
+    /** 进入块注释 / 原始字符串；结束符在本行时跳到其后，否则跳过本行其余部分 */
+    private int skipTo(int skipState, int after, int end) {
+        resume = after;
+        if (after <= end) return after - 1;
+        state = skipState;
+        return end;
+    }
+
+    private void openHole() {
+        if (holes == holeStates.length) {
+            holeStates = Arrays.copyOf(holeStates, holes * 2);
+            holeDepths = Arrays.copyOf(holeDepths, holes * 2);
+        }
+        holeStates[holes] = state;
+        holeDepths[holes] = 0;
+        holes++;
+        state = CODE;
+    }
+
+    private void push(int tag) {
+        if (depth == tags.length) tags = Arrays.copyOf(tags, depth * 2);
+        tags[depth++] = tag;
+    }
+
+    private void finish() {
+        if (pendingTag != NONE) {
+            listener.closed(pendingTag, line);
+            pendingTag = NONE;
+        }
+        while (depth > 0) {
+            int tag = tags[--depth];
+            if (tag != NONE) listener.closed(tag, line);
+        }
+    }
+
+    /** 回填 out 中 slot 处函数的结束行 */
+    static void closeFunction(List<FunctionStat> out, int slot, int end) {
+        FunctionStat open = out.get(slot);
+        out.set(slot, new FunctionStat(open.filePath, open.qualName, open.startLine,
+                Math.max(end, open.startLine), open.isMethod, open.isNested, open.isAsync));
+    }
+
+    private int skipSpaces(int i, int end) {
+        while (i < end && isSpace(code.charAt(i))) i++;
+        return i;
+    }
+
+    private boolean isStatementKeyword(int start, int end) {
+        for (String keyword : STATEMENT_KEYWORDS) {
+            if (keyword.length() == end - start && code.startsWith(keyword, start)) return true;
+        }
+        return false;
+    }
+
+    /** 正则的 \s */
+    private static boolean isSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+    /** 正则的 \w */
+    private static boolean isWord(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    /** 返回类型（含修饰符）的字符：C / C++ 为 [\w:<>,\s*&]，C# 为 [\w<>\[\],\s] */
+    private static boolean isTypeChar(char c, boolean csharp) {
+        if (isWord(c) || isSpace(c) || c == '<' || c == '>' || c == ',') return true;
+        return csharp ? c == '[' || c == ']' : c == ':' || c == '*' || c == '&';
+    }
+
+    /** 函数名的字符：C / C++ 为 [\w:~]，C# 为 \w */
+    private static boolean isNameChar(char c, boolean csharp) {
+        return isWord(c) || !csharp && (c == ':' || c == '~');
+    }
+
+    /** R、u8R、uR、UR、LR */
+    private boolean isRawPrefix(int runStart, int quote) {
+        int len = quote - runStart;
+        if (len == 1) return true;
+        char first = code.charAt(runStart);
+        if (len == 2) return first == 'u' || first == 'U' || first == 'L';
+        return len == 3 && first == 'u' && code.charAt(runStart + 1) == '8';
+    }
+
+    private static boolean isIdentPart(char c) {
+        return c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c > 127;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,524 @@
+package com.myapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.myapp.CodeStatsCore.FunctionStat;
+
+/**
+ * C# 声明识别：由 CFamilyLexer 提供词法单元，按大括号层维护一个状态机，不使用正则。
+ *
+ * 每一层记录当前语句（声明头）的少量状态：第一个词、类型 / 命名空间关键字及其名字、
+ * 第一个前面是名字的 (（函数名）、名字之前的返回类型个数、是否出现过 = / new / =>，以及括号深度。
+ * 遇到 {、=>、; 时据此判断：
+ *  - 命名空间（含文件范围的 namespace X;）、类 / 结构体 / 接口 / record：压入对应的层，名字进入限定名；
+ *  - 方法、构造器、析构器、运算符（类型体中）和局部函数（方法体、访问器、lambda、顶级语句中）：
+ *    输出 FunctionStat，结束行为方法体的 } 所在行，表达式体（=>）为结尾的 ; 所在行；
+ *  - 属性 / 索引器 / 事件：访问器列表一层，其中的 get / set 等方法体按代码处理，但不作为函数输出；
+ *  - 其它：语句块、lambda 块、初始化器、switch 表达式、枚举体等。
+ * 只有声明没有方法体的（接口 / 抽象方法、partial 声明、委托）不输出。
+ *
+ * isMethod 为位于某个类型之中；isNested 为位于另一个函数（或访问器）之中，或所在类型本身是嵌套类型。
+ * 每个词法单元的处理是常数时间，词只与固定的关键字表比较，不产生子串。
+ */
+final class CSharpScanner implements CFamilyLexer.Tokens {
+
+    // 层的类型
+    private static final int ROOT = 0;        // 文件顶层（可有顶级语句）
+    private static final int NAMESPACE = 1;
+    private static final int TYPE = 2;        // 类 / 结构体 / 接口 / record 的类型体
+    private static final int PROPERTY = 3;    // 属性 / 索引器 / 事件的访问器列表
+    private static final int FUNCTION = 4;    // 方法 / 构造器 / 局部函数的方法体
+    private static final int BLOCK = 5;       // 其它大括号
+
+    // 关键字（KEYWORDS 中的下标）
+    private static final String[] KEYWORDS = {
+            // 声明
+            "namespace", "class", "struct", "interface", "record", "enum", "delegate", "operator",
+            // 修饰符
+            "public", "private", "protected", "internal", "static", "virtual", "override", "abstract",
+            "sealed", "async", "extern", "unsafe", "new", "partial", "readonly", "volatile", "const",
+            "required", "file", "ref", "scoped",
+            // 不能开始函数声明、也不能作函数名的词
+            "if", "else", "for", "foreach", "while", "do", "switch", "using", "lock", "fixed", "catch",
+            "when", "try", "finally", "return", "throw", "yield", "await", "case", "default", "goto",
+    };
+    private static final int K_NAMESPACE = keyword("namespace");
+    private static final int K_CLASS = keyword("class");
+    private static final int K_STRUCT = keyword("struct");
+    private static final int K_ENUM = keyword("enum");
+    private static final int K_DELEGATE = keyword("delegate");
+    private static final int K_OPERATOR = keyword("operator");
+    private static final int FIRST_MODIFIER = keyword("public");
+    private static final int K_ASYNC = keyword("async");
+    private static final int K_NEW = keyword("new");
+    private static final int FIRST_CONTROL = keyword("if");
+    private static final int K_CASE = keyword("case");
+    private static final int K_DEFAULT = keyword("default");
+
+    // 声明头中上一个（括号外的）词法单元
+    private static final int P_NONE = 0;      // 语句开头，或只有修饰符 / 特性
+    private static final int P_WORD = 1;      // 标识符（含泛型参数表 <...> 之后）
+    private static final int P_TILDE = 2;
+    private static final int P_DOT = 3;
+    private static final int P_OTHER = 4;
+
+    /** 一层大括号；header 部分是该层中当前语句的状态（对象随深度复用） */
+    private static final class Frame {
+        int kind;
+        boolean inCode;     // 语句所在的层：可以声明局部函数
+        String qual;        // 限定名前缀（不含本层时为外层的）
+        String typeName;    // TYPE：类型名，用于识别构造器
+        int types;          // 外层（含本层）的类型数
+        int functions;      // 外层（含本层）的函数 / 访问器数
+        int slot;           // FUNCTION：在输出中的位置
+
+        // ---- 当前语句 ----
+        int count;          // 已有的词法单元数
+        int startLine;
+        int first;          // 第一个词的关键字下标，-1 为普通标识符，-2 为还没有
+        int paren;
+        int bracket;
+        int angle;          // 名字之前的泛型参数表深度
+        int prev;
+        boolean control;    // 出现过控制语句等关键字：不是函数声明
+        boolean dead;       // => 或 = 之后：剩下的是表达式
+        boolean assign;
+        boolean newSeen;
+        boolean isAsync;
+        int decl;           // 类型 / 命名空间关键字，-1 为没有
+        boolean declPending;
+        int declStart;
+        int declEnd;
+        int lastEnd;        // 上一个括号外词法单元的结尾
+        int wordStart;      // 名字候选：括号外、泛型参数表外的最后一个词
+        int wordEnd;
+        boolean tildeWord;
+        boolean pendingType; // 有一个还没计数的类型（词或元组）
+        int typeTokens;
+        int operatorEnd;    // operator 关键字的结尾，-1 为没有
+        boolean tuple;      // 名字之前的 ( 是元组类型
+        boolean named;      // 已遇到函数名之后的 (
+        int nameStart;
+        int nameEnd;
+        int nameTypes;
+        boolean nameTilde;
+        int exprSlot;       // 表达式体函数：等待 ; 的输出位置
+
+        void reset() {
+            count = 0;
+            first = -2;
+            paren = 0;
+            bracket = 0;
+            angle = 0;
+            prev = P_NONE;
+            control = false;
+            dead = false;
+            assign = false;
+            newSeen = false;
+            isAsync = false;
+            decl = -1;
+            declPending = false;
+            lastEnd = -1;
+            wordStart = -1;
+            tildeWord = false;
+            pendingType = false;
+            typeTokens = 0;
+            operatorEnd = -1;
+            tuple = false;
+            named = false;
+            nameTilde = false;
+            exprSlot = -1;
+        }
+    }
+
+    private final String code;
+    private final String filePath;
+    private final List<FunctionStat> out = new ArrayList<>();
+    private CFamilyLexer lexer;
+
+    private Frame[] frames = new Frame[16];
+    private int depth;
+    private int skipUntil;   // 已作为 => / == 处理的第二个字符
+    private int verbatimWord = -1;   // @ 之后的词（@class 等）的开头：不是关键字
+
+    private CSharpScanner(String code, String filePath) {
+        this.code = code;
+        this.filePath = filePath;
+    }
+
+    static List<FunctionStat> scan(String code, String filePath) {
+        CSharpScanner s = new CSharpScanner(code, filePath);
+        s.lexer = new CFamilyLexer(code, CFamilyLexer.CSHARP, (tag, line) -> { }, s);
+        s.push(ROOT, true, null);
+        while (s.lexer.nextLine()) {
+            // 逐行扫描，词法单元经 token() 回调
+        }
+        s.finish(s.lexer.line());
+        return s.out;
+    }
+
+    @Override
+    public void token(int kind, int start, int end) {
+        if (start < skipUntil) return;
+        Frame f = frames[depth - 1];
+        int line = lexer.line();
+        if (f.count++ == 0) f.startLine = line;
+
+        if (kind == CFamilyLexer.WORD) {
+            word(f, start, end);
+            return;
+        }
+        if (kind == CFamilyLexer.LITERAL) {
+            if (f.paren == 0 && f.bracket == 0) f.prev = P_OTHER;
+            return;
+        }
+
+        char c = code.charAt(start);
+        switch (c) {
+            case '{':
+                open(f, line);
+                return;
+            case '}':
+                close(line);
+                return;
+            case '(':
+                if (f.bracket > 0) return;
+                if (f.paren++ > 0) return;
+                if (!f.named && f.angle == 0) {
+                    if (f.operatorEnd >= 0) {
+                        // operator +(...)、implicit operator int(...)
+                        f.named = true;
+                        f.nameStart = f.operatorEnd;
+                        f.nameEnd = start;
+                        f.nameTypes = f.typeTokens + (f.pendingType ? 1 : 0);
+                    } else if (f.prev == P_WORD && f.wordStart >= 0) {
+                        f.named = true;
+                        f.nameStart = f.wordStart;
+                        f.nameEnd = f.wordEnd;
+                        f.nameTypes = f.typeTokens;
+                        f.nameTilde = f.tildeWord;
+                    } else {
+                        f.tuple = f.prev == P_NONE;
+                    }
+                }
+                return;
+            case ')':
+                if (f.bracket > 0 || f.paren == 0) return;
+                if (--f.paren == 0) {
+                    if (!f.named && f.tuple) {
+                        // 元组返回类型 (int, string) F(...)
+                        if (f.pendingType) f.typeTokens++;
+                        f.pendingType = true;
+                        f.wordStart = -1;
+                    }
+                    f.tuple = false;
+                    f.prev = P_OTHER;
+                    f.lastEnd = end;
+                }
+                return;
+            case '[':
+                if (f.paren == 0) f.bracket++;
+                return;
+            case ']':
+                if (f.paren == 0 && f.bracket > 0) {
+                    f.bracket--;
+                    // 语句开头的特性之后仍相当于开头
+                    if (f.bracket == 0) f.prev = f.wordStart < 0 && !f.pendingType ? P_NONE : P_OTHER;
+                }
+                return;
+            default:
+        }
+        if (f.paren > 0 || f.bracket > 0) return;
+        if (c != ';') f.lastEnd = end;
+
+        char d = end < code.length() ? code.charAt(end) : 0;
+        switch (c) {
+            case ';':
+                statementEnd(f, line);
+                return;
+            case '=':
+                if (d == '>') {
+                    skipUntil = end + 1;
+                    arrow(f, line);
+                } else if (d == '=') {
+                    skipUntil = end + 1;
+                } else if (start == 0 || "!<>=".indexOf(code.charAt(start - 1)) < 0) {
+                    if (!f.named) f.assign = true;
+                    f.dead = true;
+                }
+                f.prev = P_OTHER;
+                return;
+            case '<':
+                if (!f.named && (f.prev == P_WORD || f.angle > 0)) f.angle++;
+                else f.prev = P_OTHER;
+                return;
+            case '>':
+                if (f.angle > 0) {
+                    if (--f.angle == 0) f.prev = P_WORD;
+                } else {
+                    f.prev = P_OTHER;
+                }
+                return;
+            case ':':
+                if (f.first == K_CASE || f.first == K_DEFAULT) {
+                    // case / default 标签：之后是新的语句
+                    f.reset();
+                    return;
+                }
+                f.prev = P_OTHER;
+                return;
+            case '~':
+                f.prev = P_TILDE;
+                return;
+            case '@':
+                verbatimWord = end;
+                return;
+            case '.':
+                if (f.angle == 0) f.prev = P_DOT;
+                return;
+            case ',':
+                if (f.angle > 0) return;
+                f.prev = P_OTHER;
+                return;
+            case '?':
+            case '*':
+                // 可空 / 指针类型保持名字候选；条件运算符之后不会是声明
+                if (f.prev == P_WORD) return;
+                f.prev = P_OTHER;
+                return;
+            default:
+                f.prev = P_OTHER;
+        }
+    }
+
+    private void word(Frame f, int start, int end) {
+        if (f.paren > 0 || f.bracket > 0) return;
+        int kw = start == verbatimWord ? -1 : keyword(start, end);
+        if (f.first == -2) f.first = kw;
+        if (kw >= FIRST_CONTROL) f.control = true;
+        f.lastEnd = end;
+        if (f.dead || f.named) {
+            f.prev = P_WORD;
+            return;
+        }
+        if (f.angle > 0) {
+            f.prev = P_WORD;
+            return;
+        }
+
+        if (f.declPending) {
+            if (kw == K_CLASS || kw == K_STRUCT) return;   // record class / record struct
+            f.declPending = false;
+            f.declStart = start;
+            f.declEnd = end;
+            f.prev = P_WORD;
+            return;
+        }
+        if (f.decl >= 0) {
+            f.prev = P_WORD;
+            return;
+        }
+        if (kw == K_DELEGATE) {
+            // 委托声明或匿名方法：不是函数声明
+            f.dead = true;
+            return;
+        }
+        if (kw >= K_NAMESPACE && kw <= K_ENUM) {
+            f.decl = kw;
+            f.declPending = true;
+            f.prev = P_OTHER;
+            return;
+        }
+        if (kw == K_OPERATOR) {
+            f.operatorEnd = end;
+            f.prev = P_OTHER;
+            return;
+        }
+        if (f.operatorEnd >= 0) {
+            // implicit operator int(...)：类型名是运算符的一部分
+            f.prev = P_WORD;
+            f.wordStart = start;
+            f.wordEnd = end;
+            return;
+        }
+        if (kw >= FIRST_MODIFIER && kw < FIRST_CONTROL) {
+            if (kw == K_ASYNC) f.isAsync = true;
+            if (kw == K_NEW) f.newSeen = true;
+            return;
+        }
+
+        if (f.prev == P_DOT && f.wordStart >= 0) {
+            // 限定名 A.B 的后一段：仍是同一个类型 / 名字
+            f.wordEnd = end;
+            f.wordStart = start;
+        } else {
+            if (f.pendingType) f.typeTokens++;
+            f.pendingType = true;
+            f.tildeWord = f.prev == P_TILDE;
+            f.wordStart = start;
+            f.wordEnd = end;
+        }
+        f.prev = P_WORD;
+    }
+
+    /** { ：按当前语句判断这一层的类型 */
+    private void open(Frame f, int line) {
+        if (f.paren > 0 || f.bracket > 0 || f.dead || f.assign || f.newSeen && f.inCode) {
+            // 表达式中的大括号（lambda、初始化器、匿名对象、switch 表达式等）：语句在 } 之后继续
+            push(BLOCK, true, f.qual);
+            return;
+        }
+
+        if (f.decl >= 0 && !f.declPending && allowsTypes(f)) {
+            String name = declName(f);
+            if (f.decl == K_NAMESPACE) {
+                push(NAMESPACE, false, qualify(f.qual, name));
+            } else if (f.decl == K_ENUM) {
+                push(BLOCK, false, f.qual);
+            } else {
+                Frame t = push(TYPE, false, qualify(f.qual, name));
+                t.typeName = name;
+                t.types++;
+            }
+            f.reset();
+            return;
+        }
+
+        if (isFunction(f)) {
+            int slot = emit(f, line);
+            Frame g = push(FUNCTION, true, out.get(slot).qualName);
+            g.slot = slot;
+            g.functions++;
+            f.reset();
+            return;
+        }
+
+        if (f.kind == TYPE && f.decl < 0 && !f.named && f.wordStart >= 0) {
+            // 属性 / 索引器 / 事件
+            push(PROPERTY, false, qualify(f.qual, code.substring(f.wordStart, f.wordEnd)));
+        } else if (f.kind == PROPERTY) {
+            // get / set / init / add / remove 的方法体
+            Frame g = push(BLOCK, true, f.qual);
+            g.functions++;
+        } else {
+            push(BLOCK, f.inCode, f.qual);
+        }
+        f.reset();
+    }
+
+    private void close(int line) {
+        if (depth == 1) return;   // 多余的 }
+        Frame g = frames[--depth];
+        if (g.exprSlot >= 0) closeFunction(g.exprSlot, line);
+        if (g.kind == FUNCTION) closeFunction(g.slot, line);
+    }
+
+    /** =>：表达式体的函数，或 lambda / 表达式体属性 / switch 分支 */
+    private void arrow(Frame f, int line) {
+        if (!f.dead && !f.assign && isFunction(f)) {
+            f.exprSlot = emit(f, line);
+        }
+        f.dead = true;
+    }
+
+    private void statementEnd(Frame f, int line) {
+        if (f.exprSlot >= 0) closeFunction(f.exprSlot, line);
+        if (f.decl == K_NAMESPACE && !f.declPending && f.kind == ROOT && !f.dead) {
+            // 文件范围的命名空间：作用于文件的其余部分
+            f.qual = qualify(f.qual, declName(f));
+        }
+        f.reset();
+    }
+
+    private boolean isFunction(Frame f) {
+        if (!f.named || f.paren > 0 || f.decl >= 0 || f.control) return false;
+        int nameKw = keyword(f.nameStart, f.nameEnd);
+        if (nameKw >= FIRST_CONTROL) return false;
+        if (f.kind == TYPE) {
+            return f.nameTypes > 0 || f.nameTilde
+                    || f.typeName != null && code.startsWith(f.typeName, f.nameStart)
+                    && f.nameEnd - f.nameStart == f.typeName.length();
+        }
+        // 局部函数：必须有返回类型
+        return f.inCode && f.nameTypes > 0 && !f.newSeen;
+    }
+
+    /** 输出函数（结束行稍后回填），返回其位置 */
+    private int emit(Frame f, int line) {
+        String name;
+        if (f.operatorEnd >= 0) {
+            String op = code.substring(f.nameStart, f.nameEnd).strip();
+            name = (Character.isLetter(op.isEmpty() ? ' ' : op.charAt(0)) ? "operator " : "operator") + op;
+        } else {
+            name = (f.nameTilde ? "~" : "") + code.substring(f.nameStart, f.nameEnd);
+        }
+        boolean isNested = f.functions > 0 || f.types > 1;
+        out.add(new FunctionStat(filePath, qualify(f.qual, name), f.startLine, line,
+                f.types > 0, isNested, f.isAsync));
+        return out.size() - 1;
+    }
+
+    private void closeFunction(int slot, int line) {
+        CFamilyLexer.closeFunction(out, slot, line);
+    }
+
+    private void finish(int line) {
+        while (depth > 1) close(line);
+        Frame root = frames[0];
+        if (root.exprSlot >= 0) closeFunction(root.exprSlot, line);
+    }
+
+    private Frame push(int kind, boolean inCode, String qual) {
+        if (depth == frames.length) frames = Arrays.copyOf(frames, depth * 2);
+        Frame g = frames[depth];
+        if (g == null) g = frames[depth] = new Frame();
+        Frame parent = depth > 0 ? frames[depth - 1] : null;
+        depth++;
+        g.kind = kind;
+        g.inCode = inCode;
+        g.qual = qual;
+        g.typeName = null;
+        g.types = parent == null ? 0 : parent.types;
+        g.functions = parent == null ? 0 : parent.functions;
+        g.slot = -1;
+        g.reset();
+        return g;
+    }
+
+    private static boolean allowsTypes(Frame f) {
+        return f.kind == ROOT || f.kind == NAMESPACE || f.kind == TYPE;
+    }
+
+    /** 命名空间为 A.B.C 整体（去掉空白），类型为关键字之后的第一个词 */
+    private String declName(Frame f) {
+        if (f.decl != K_NAMESPACE) return code.substring(f.declStart, f.declEnd);
+        StringBuilder sb = new StringBuilder();
+        for (int i = f.declStart; i < f.lastEnd; i++) {
+            char c = code.charAt(i);
+            if (c > ' ') sb.append(c);
+        }
+        return sb.toString();
+    }
+
+    private static String qualify(String qual, String name) {
+        return qual == null ? name : qual + "." + name;
+    }
+
+    private static int keyword(String word) {
+        return Arrays.asList(KEYWORDS).indexOf(word);
+    }
+
+    /** 关键字下标，不是关键字时为 -1 */
+    private int keyword(int start, int end) {
+        int len = end - start;
+        char c = code.charAt(start);
+        if (c < 'a' || c > 'z' || len < 2 || len > 9) return -1;
+        for (int k = 0; k < KEYWORDS.length; k++) {
+            String w = KEYWORDS[k];
+            if (w.length() == len && w.charAt(0) == c && code.startsWith(w, start)) return k;
+        }
+        return -1;
+    }
+}
@@ -0,0 +1,505 @@
+package com.myapp;
+
+import com.google.gson.stream.JsonWriter;
+import com.myapp.CodeStatsCore.*;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.*;
+
+/**
+ * 命令行入口（无界面）：直接调用 CodeStatsService，把结果以 JSON 或 CSV 写到标准输出或文件。
+ * 只依赖统计核心和 Gson，不加载 Swing / AWT / POI，适合在 CI 中批量运行。
+ *
+ *   java -cp target/classes:... com.myapp.CodeStatsCli [选项] 路径...
+ *   java -cp target/classes:... com.myapp.CodeStatsCli --repo 仓库 --rev v1.0 [仓库内路径...]
+ *   java -cp target/classes:... com.myapp.CodeStatsCli --repo 仓库 --diff main --rev feature
+ *   java -cp target/classes:... com.myapp.CodeStatsCli --repo 仓库 --history 1000 --format csv
+ *
+ * 结束时在标准错误输出启动耗时、分析耗时和峰值常驻内存（--quiet 关闭）。
+ */
+public class CodeStatsCli {
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "用法: CodeStatsCli [选项] 路径...",
+            "      CodeStatsCli [选项] --repo 仓库 [--rev 修订] [仓库内路径...]",
+            "      CodeStatsCli [选项] --repo 仓库 --diff 基准修订 [--rev 修订]",
+            "      CodeStatsCli [选项] --repo 仓库 --history N [--rev 修订]",
+            "  --lang LIST         语言，逗号分隔：java,python,c,cpp,csharp 或 all（默认 all）",
+            "  --mode MODE         metrics | functions | both（默认 both）",
+            "  --format FORMAT     json | csv（默认 json）",
+            "  --output FILE       输出文件（默认标准输出）",
+            "  --functions         同时输出函数明细（CSV 时只输出明细）",
+            "  --top K             流式汇总，函数明细只保留最长的 K 个",
+            "  --parallelism N     分析线程数，0 为 CPU 核数（默认 0）",
+            "  --pipeline          使用读取 / 解析流水线",
+            "  --fast-java         Java 函数统计用词法扫描代替完整解析（没有把握的文件自动退回）",
+            "  --include GLOB      只分析匹配的文件（.gitignore 语法，可重复）",
+            "  --exclude GLOB      排除匹配的文件 / 目录（可重复）",
+            "  --no-ignore         不读取 .gitignore，也不跳过 .git 目录",
+            "  --repo DIR          直接读取 git 仓库对象库中的文件（不检出）",
+            "  --rev REV           仓库模式的修订：分支、标签、提交号，可带 ~N / ^N（默认 HEAD）",
+            "  --diff BASE         仓库模式：比较 BASE 与 --rev，只解析变化的文件，输出 before / after / delta",
+            "  --history N         仓库模式：--rev 及之前的 N 个提交（0 为全部）的代码量和函数长度时间序列",
+            "  --cache DIR         增量分析缓存目录：未变化的文件（仓库模式为文件对象）复用上次运行的结果",
+            "  --quiet             不输出耗时和内存信息");
+
+    // --cache 的缓存条目数上限
+    private static final int CACHE_MAX_ENTRIES = 500_000;
+
+    // 输出与 GUI 导出相同的语言顺序
+    private static final Language[] LANGUAGE_ORDER = {
+            Language.C, Language.CPP, Language.JAVA, Language.PYTHON, Language.CSHARP
+    };
+
+    /** 解析后的命令行参数 */
+    static class Options {
+        Set<Language> languages = EnumSet.allOf(Language.class);
+        int mode = CodeStatsService.MODE_BOTH;
+        boolean csv;
+        String output;
+        boolean functions;
+        int topK;                 // > 0 时使用流式汇总
+        int parallelism;
+        boolean pipeline;
+        boolean fastJava;
+        List<String> includes = new ArrayList<>();
+        List<String> excludes = new ArrayList<>();
+        boolean ignoreFiles = true;
+        String repository;
+        String revision;
+        String diffBase;
+        int history = -1;         // >= 0 时输出历史序列
+        String cacheDir;
+        boolean quiet;
+        List<String> paths = new ArrayList<>();
+    }
+
+    public static void main(String[] args) {
+        long mainNanos = System.nanoTime();
+        System.setProperty("java.awt.headless", "true");
+        Options opts;
+        try {
+            opts = parse(args);
+        } catch (IllegalArgumentException e) {
+            System.err.println(e.getMessage());
+            System.err.println(USAGE);
+            System.exit(2);
+            return;
+        }
+
+        try {
+            long analyzeNanos = System.nanoTime();
+            Map<Language, AnalyzeResult> results = null;
+            GitHistory.DiffResult diff = null;
+            List<GitHistory.HistoryPoint> points = null;
+            String head = opts.revision != null ? opts.revision : "HEAD";
+            // 缓存在分析结束后写回
+            try (AnalysisCache cache = opts.cacheDir != null
+                    ? AnalysisCache.open(Paths.get(opts.cacheDir), CACHE_MAX_ENTRIES) : null) {
+                if (opts.diffBase != null) {
+                    try (GitHistory history = GitHistory.open(Paths.get(opts.repository), opts.parallelism, cache)) {
+                        diff = history.diff(opts.diffBase, head, opts.languages);
+                    }
+                } else if (opts.history >= 0) {
+                    try (GitHistory history = GitHistory.open(Paths.get(opts.repository), opts.parallelism, cache)) {
+                        points = history.history(head, opts.history, opts.languages);
+                    }
+                } else {
+                    CodeStatsService.AnalyzeRequest req = toRequest(opts);
+                    req.cache = cache;
+                    results = new CodeStatsService().analyzeAll(req);
+                }
+            }
+            analyzeNanos = System.nanoTime() - analyzeNanos;
+
+            long writeNanos = System.nanoTime();
+            try (Writer out = openOutput(opts.output)) {
+                if (points != null) {
+                    if (opts.csv) writeHistoryCsv(points, out);
+                    else writeHistoryJson(points, opts, out);
+                } else if (diff != null) {
+                    if (opts.csv) writeDiffCsv(diff, opts, out);
+                    else writeDiffJson(diff, opts, out);
+                } else if (opts.csv) {
+                    writeCsv(results, opts, out);
+                } else {
+                    writeJson(results, opts, out);
+                }
+            }
+            writeNanos = System.nanoTime() - writeNanos;
+
+            if (!opts.quiet) reportResources(mainNanos, analyzeNanos, writeNanos);
+        } catch (IOException | RuntimeException e) {
+            System.err.println("分析失败: " + e);
+            System.exit(1);
+        }
+    }
+
+    static Options parse(String[] args) {
+        Options o = new Options();
+        for (int i = 0; i < args.length; i++) {
+            String a = args[i];
+            switch (a) {
+                case "--lang" -> o.languages = parseLanguages(value(args, ++i, a));
+                case "--mode" -> o.mode = switch (value(args, ++i, a)) {
+                    case "metrics" -> CodeStatsService.MODE_CODE_METRICS;
+                    case "functions" -> CodeStatsService.MODE_FUNCTION_LENGTH;
+                    case "both" -> CodeStatsService.MODE_BOTH;
+                    default -> throw new IllegalArgumentException("未知的模式: " + args[i]);
+                };
+                case "--format" -> o.csv = switch (value(args, ++i, a)) {
+                    case "json" -> false;
+                    case "csv" -> true;
+                    default -> throw new IllegalArgumentException("未知的输出格式: " + args[i]);
+                };
+                case "--output", "-o" -> o.output = value(args, ++i, a);
+                case "--functions" -> o.functions = true;
+                case "--top" -> o.topK = intValue(args, ++i, a);
+                case "--parallelism" -> o.parallelism = intValue(args, ++i, a);
+                case "--pipeline" -> o.pipeline = true;
+                case "--fast-java" -> o.fastJava = true;
+                case "--include" -> o.includes.add(value(args, ++i, a));
+                case "--exclude" -> o.excludes.add(value(args, ++i, a));
+                case "--no-ignore" -> o.ignoreFiles = false;
+                case "--repo" -> o.repository = value(args, ++i, a);
+                case "--rev" -> o.revision = value(args, ++i, a);
+                case "--diff" -> o.diffBase = value(args, ++i, a);
+                case "--history" -> o.history = intValue(args, ++i, a);
+                case "--cache" -> o.cacheDir = value(args, ++i, a);
+                case "--quiet", "-q" -> o.quiet = true;
+                case "--help", "-h" -> throw new IllegalArgumentException("");
+                default -> {
+                    if (a.startsWith("-")) throw new IllegalArgumentException("未知的选项: " + a);
+                    o.paths.add(a);
+                }
+            }
+        }
+        if (o.paths.isEmpty() && o.repository == null) throw new IllegalArgumentException("缺少要分析的路径");
+        if (o.revision != null && o.repository == null) throw new IllegalArgumentException("--rev 需要 --repo");
+        if (o.diffBase != null && o.history >= 0) throw new IllegalArgumentException("--diff 和 --history 不能同时使用");
+        if (o.diffBase != null || o.history >= 0) {
+            String option = o.diffBase != null ? "--diff" : "--history";
+            if (o.repository == null) throw new IllegalArgumentException(option + " 需要 --repo");
+            if (!o.paths.isEmpty() || !o.includes.isEmpty() || !o.excludes.isEmpty() || o.topK > 0)
+                throw new IllegalArgumentException(option + " 不支持路径、--include / --exclude 和 --top");
+        }
+        if (o.functions && o.mode == CodeStatsService.MODE_CODE_METRICS)
+            throw new IllegalArgumentException("--functions 需要 --mode functions 或 both");
+        return o;
+    }
+
+    private static String value(String[] args, int i, String option) {
+        if (i >= args.length) throw new IllegalArgumentException(option + " 缺少参数");
+        return args[i];
+    }
+
+    private static int intValue(String[] args, int i, String option) {
+        try {
+            return Integer.parseInt(value(args, i, option));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(option + " 需要整数: " + args[i]);
+        }
+    }
+
+    private static Set<Language> parseLanguages(String list) {
+        Set<Language> langs = EnumSet.noneOf(Language.class);
+        for (String name : list.split(",")) {
+            switch (name.trim().toLowerCase(Locale.ROOT)) {
+                case "all" -> langs.addAll(EnumSet.allOf(Language.class));
+                case "java" -> langs.add(Language.JAVA);
+                case "python", "py" -> langs.add(Language.PYTHON);
+                case "c" -> langs.add(Language.C);
+                case "cpp", "c++" -> langs.add(Language.CPP);
+                case "csharp", "c#", "cs" -> langs.add(Language.CSHARP);
+                default -> throw new IllegalArgumentException("不支持的语言: " + name);
+            }
+        }
+        return langs;
+    }
+
+    static CodeStatsService.AnalyzeRequest toRequest(Options o) {
+        CodeStatsService.AnalyzeRequest req = new CodeStatsService.AnalyzeRequest();
+        req.languages = o.languages;
+        req.paths = o.paths;
+        req.mode = o.mode;
+        req.parallelism = o.parallelism;
+        req.pipeline = o.pipeline;
+        req.fastJava = o.fastJava;
+        req.includes = o.includes;
+        req.excludes = o.excludes;
+        req.ignoreFiles = o.ignoreFiles;
+        req.repository = o.repository;
+        req.revision = o.revision;
+        if (o.topK > 0) {
+            req.streaming = true;
+            req.topK = o.topK;
+        } else {
+            req.columnar = true; // 明细用列式表保存，大仓库时内存占用更小
+        }
+        return req;
+    }
+
+    private static Writer openOutput(String output) throws IOException {
+        OutputStream os = output == null
+                ? new FilterOutputStream(System.out) {
+                    @Override
+                    public void close() throws IOException {
+                        flush(); // 不关闭标准输出
+                    }
+                }
+                : Files.newOutputStream(Paths.get(output));
+        return new BufferedWriter(new OutputStreamWriter(os, StandardCharsets.UTF_8), 1 << 16);
+    }
+
+    /** JSON：各语言的代码量、函数长度汇总，可选函数明细；字段名与 GUI 的 JSON 导出一致 */
+    static void writeJson(Map<Language, AnalyzeResult> results, Options opts, Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setIndent("  ");
+        json.beginObject();
+        if (opts.repository != null) {
+            json.name("repository").value(opts.repository);
+            json.name("revision").value(opts.revision != null ? opts.revision : "HEAD");
+        }
+        json.name("paths").beginArray();
+        for (String p : opts.paths) json.value(p);
+        json.endArray();
+        json.name("languages").beginObject();
+        for (Language lang : LANGUAGE_ORDER) {
+            AnalyzeResult r = results.get(lang);
+            if (r == null) continue;
+            json.name(lang.toString());
+            writeResult(json, r, opts.functions);
+        }
+        json.endObject();
+        json.endObject();
+        json.flush();
+        out.write(System.lineSeparator());
+    }
+
+    /** 一种语言的结果：代码量、函数长度汇总，withFunctions 时附带函数明细 */
+    private static void writeResult(JsonWriter json, AnalyzeResult r, boolean withFunctions) throws IOException {
+        json.beginObject();
+        if (r.codeMetrics != null) {
+            json.name("fileCount").value(r.codeMetrics.fileCount);
+            json.name("codeLines").value(r.codeMetrics.codeLines);
+            json.name("blankLines").value(r.codeMetrics.blankLines);
+            json.name("commentLines").value(r.codeMetrics.commentLines);
+            json.name("totalLines").value(r.codeMetrics.totalLines);
+        }
+        if (r.summary != null) {
+            json.name("functionStats").beginObject();
+            json.name("count").value(r.summary.count);
+            json.name("max").value(r.summary.max);
+            json.name("min").value(r.summary.min);
+            json.name("mean").value(r.summary.mean);
+            json.name("median").value(r.summary.median);
+            json.name("p90").value(r.summary.p90);
+            json.name("p95").value(r.summary.p95);
+            json.name("p99").value(r.summary.p99);
+            json.endObject();
+        }
+        if (withFunctions && r.summary != null) {
+            json.name("functions").beginArray();
+            FunctionTable table = r.functionTable();
+            for (int i = 0; i < table.size(); i++) {
+                json.beginObject();
+                json.name("filePath").value(table.filePath(i));
+                json.name("qualName").value(table.qualName(i));
+                json.name("startLine").value(table.startLine(i));
+                json.name("endLine").value(table.endLine(i));
+                json.name("length").value(table.length(i));
+                json.name("isMethod").value(table.isMethod(i));
+                json.name("isNested").value(table.isNested(i));
+                json.name("isAsync").value(table.isAsync(i));
+                json.endObject();
+            }
+            json.endArray();
+        }
+        json.endObject();
+    }
+
+    /** --diff 的 JSON：各语言的 before / after / delta，以及变化的文件列表；--functions 时 delta 附带变化文件中的函数 */
+    static void writeDiffJson(GitHistory.DiffResult diff, Options opts, Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("repository").value(opts.repository);
+        json.name("base").value(diff.base);
+        json.name("head").value(diff.head);
+        json.name("filesParsed").value(diff.filesParsed);
+        json.name("languages").beginObject();
+        for (Language lang : LANGUAGE_ORDER) {
+            if (!diff.after.containsKey(lang)) continue;
+            json.name(lang.toString()).beginObject();
+            json.name("before");
+            writeResult(json, diff.before.get(lang), false);
+            json.name("after");
+            writeResult(json, diff.after.get(lang), false);
+            json.name("delta");
+            writeResult(json, diff.delta.get(lang), opts.functions);
+            json.endObject();
+        }
+        json.endObject();
+        json.name("changes").beginArray();
+        for (GitHistory.FileChange c : diff.changes) {
+            json.beginObject();
+            json.name("path").value(c.path);
+            json.name("language").value(c.language.toString());
+            json.name("status").value(changeKind(c.kind));
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        out.write(System.lineSeparator());
+    }
+
+    /** --diff 的 CSV：每种语言三行（before / after / delta），列同普通 CSV；delta 行的函数统计只含变化文件 */
+    static void writeDiffCsv(GitHistory.DiffResult diff, Options opts, Writer w) {
+        PrintWriter out = new PrintWriter(w);
+        out.println("语言,版本,源文件数,代码行数,空行数,注释行数,函数个数,最大值,最小值,均值,中位数,P90,P95,P99");
+        for (Language lang : LANGUAGE_ORDER) {
+            if (!diff.after.containsKey(lang)) continue;
+            String[] names = {"before", "after", "delta"};
+            AnalyzeResult[] rows = {diff.before.get(lang), diff.after.get(lang), diff.delta.get(lang)};
+            for (int i = 0; i < rows.length; i++) {
+                CodeMetrics m = rows[i].codeMetrics;
+                Summary s = rows[i].summary;
+                out.printf("%s,%s,%d,%d,%d,%d,%d,%d,%d,%.2f,%.2f,%d,%d,%d%n", lang, names[i],
+                        m.fileCount, m.codeLines, m.blankLines, m.commentLines,
+                        s.count, s.max, s.min, s.mean, s.median, s.p90, s.p95, s.p99);
+            }
+        }
+        out.flush();
+    }
+
+    /** --history 的 JSON：按时间从早到晚的提交数组，每个提交含各语言的代码量和函数长度汇总 */
+    static void writeHistoryJson(List<GitHistory.HistoryPoint> points, Options opts, Writer out) throws IOException {
+        JsonWriter json = new JsonWriter(out);
+        json.setIndent("  ");
+        json.beginObject();
+        json.name("repository").value(opts.repository);
+        json.name("commits").beginArray();
+        for (GitHistory.HistoryPoint p : points) {
+            json.beginObject();
+            json.name("commit").value(p.commit);
+            json.name("author").value(p.author);
+            json.name("commitTime").value(p.commitTime);
+            json.name("subject").value(p.subject);
+            json.name("languages").beginObject();
+            for (Language lang : LANGUAGE_ORDER) {
+                AnalyzeResult r = p.results.get(lang);
+                if (r == null) continue;
+                json.name(lang.toString());
+                writeResult(json, r, false);
+            }
+            json.endObject();
+            json.endObject();
+        }
+        json.endArray();
+        json.endObject();
+        json.flush();
+        out.write(System.lineSeparator());
+    }
+
+    /** --history 的 CSV：每个提交每种语言一行，时间为 ISO-8601（UTC） */
+    static void writeHistoryCsv(List<GitHistory.HistoryPoint> points, Writer w) {
+        PrintWriter out = new PrintWriter(w);
+        out.println("提交,时间,作者,语言,源文件数,代码行数,空行数,注释行数,函数个数,最大值,最小值,均值,中位数,P90,P95,P99");
+        for (GitHistory.HistoryPoint p : points) {
+            String time = Instant.ofEpochSecond(p.commitTime).toString();
+            for (Language lang : LANGUAGE_ORDER) {
+                AnalyzeResult r = p.results.get(lang);
+                if (r == null) continue;
+                CodeMetrics m = r.codeMetrics;
+                Summary s = r.summary;
+                out.printf("%s,%s,%s,%s,%d,%d,%d,%d,%d,%d,%d,%.2f,%.2f,%d,%d,%d%n", p.commit, time, csv(p.author), lang,
+                        m.fileCount, m.codeLines, m.blankLines, m.commentLines,
+                        s.count, s.max, s.min, s.mean, s.median, s.p90, s.p95, s.p99);
+            }
+        }
+        out.flush();
+    }
+
+    private static String changeKind(int kind) {
+        return switch (kind) {
+            case GitHistory.ADDED -> "added";
+            case GitHistory.DELETED -> "deleted";
+            default -> "modified";
+        };
+    }
+
+    /** CSV：默认每种语言一行（列与 GUI 的 CSV 导出一致，另加百分位数）；--functions 时每个函数一行 */
+    static void writeCsv(Map<Language, AnalyzeResult> results, Options opts, Writer w) {
+        PrintWriter out = new PrintWriter(w);
+        if (opts.functions) {
+            out.println("语言,文件路径,函数名,起始行,结束行,函数长度,是否为方法,是否为嵌套,是否为异步");
+            for (Language lang : LANGUAGE_ORDER) {
+                AnalyzeResult r = results.get(lang);
+                if (r == null || r.summary == null) continue;
+                FunctionTable table = r.functionTable();
+                for (int i = 0; i < table.size(); i++) {
+                    out.printf("%s,%s,%s,%d,%d,%d,%s,%s,%s%n", lang, csv(table.filePath(i)), csv(table.qualName(i)),
+                            table.startLine(i), table.endLine(i), table.length(i),
+                            table.isMethod(i), table.isNested(i), table.isAsync(i));
+                }
+            }
+        } else {
+            out.println("语言,源文件数,代码行数,空行数,注释行数,函数个数,最大值,最小值,均值,中位数,P90,P95,P99");
+            for (Language lang : LANGUAGE_ORDER) {
+                AnalyzeResult r = results.get(lang);
+                if (r == null) continue;
+                CodeMetrics m = r.codeMetrics;
+                Summary s = r.summary;
+                out.printf("%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s,%s%n", lang,
+                        m != null ? m.fileCount : "/", m != null ? m.codeLines : "/",
+                        m != null ? m.blankLines : "/", m != null ? m.commentLines : "/",
+                        s != null ? s.count : "/", s != null ? s.max : "/", s != null ? s.min : "/",
+                        s != null ? String.format("%.2f", s.mean) : "/",
+                        s != null ? String.format("%.2f", s.median) : "/",
+                        s != null ? s.p90 : "/", s != null ? s.p95 : "/", s != null ? s.p99 : "/");
+            }
+        }
+        out.flush();
+    }
+
+    /** 含逗号、引号或换行符（\n、\r）的字段加引号 */
+    private static String csv(String value) {
+        if (value == null) return "";
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0
+                && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    /** 标准错误输出：JVM 启动到进入 main 的耗时、分析和输出耗时、峰值常驻内存 */
+    private static void reportResources(long mainNanos, long analyzeNanos, long writeNanos) {
+        String startup = ProcessHandle.current().info().startInstant()
+                .map(start -> (Instant.now().toEpochMilli() - start.toEpochMilli())
+                        - (System.nanoTime() - mainNanos) / 1_000_000 + " ms")
+                .orElse("n/a");
+        long peakKb = peakRssKb();
+        System.err.printf("startup=%s analyze=%d ms write=%d ms peakRss=%s%n", startup,
+                analyzeNanos / 1_000_000, writeNanos / 1_000_000,
+                peakKb < 0 ? "n/a" : (peakKb / 1024) + " MB");
+    }
+
+    /** 峰值常驻内存（/proc/self/status 的 VmHWM，单位 KB）；非 Linux 返回 -1 */
+    static long peakRssKb() {
+        Path status = Paths.get("/proc/self/status");
+        if (!Files.isReadable(status)) return -1;
+        try {
+            for (String line : Files.readAllLines(status)) {
+                if (line.startsWith("VmHWM:")) {
+                    return Long.parseLong(line.substring(6).replace("kB", "").trim());
+                }
+            }
+        } catch (IOException | NumberFormatException ignored) {}
+        return -1;
+    }
+}
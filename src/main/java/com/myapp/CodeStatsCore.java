@@ -1,7 +1,6 @@
 package com.myapp;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /** 
  * 所有的数据模型和统计工具
@@ -35,51 +34,343 @@ public class CodeStatsCore {
         }
     }
 
-    /** 汇总（给前端用的四个数 + count） */
+    /**
+     * 列式函数明细：每个字段一列（int[] / byte[]），文件路径和函数名存入去重字典，每行只保存字典下标。
+     * 与 List<FunctionStat> 相比没有每个函数一个对象的开销，相同的路径、函数名只保存一份。
+     * 通过下标访问各字段（filePath(i)、length(i) ...），遍历时不必创建 FunctionStat。
+     * 非线程安全。
+     */
+    public static class FunctionTable {
+        private static final int FLAG_METHOD = 1;
+        private static final int FLAG_NESTED = 2;
+        private static final int FLAG_ASYNC = 4;
+
+        private final Dictionary files = new Dictionary();
+        private final Dictionary names = new Dictionary();
+        private int[] fileIds = new int[16];
+        private int[] nameIds = new int[16];
+        private int[] startLines = new int[16];
+        private int[] endLines = new int[16];
+        private int[] lengths = new int[16];
+        private byte[] flags = new byte[16];
+        private int size;
+
+        public static FunctionTable of(List<FunctionStat> functions) {
+            FunctionTable t = new FunctionTable();
+            if (functions != null) t.addAll(functions);
+            return t;
+        }
+
+        public void add(String filePath, String qualName, int startLine, int endLine,
+                        boolean isMethod, boolean isNested, boolean isAsync) {
+            int f = (isMethod ? FLAG_METHOD : 0) | (isNested ? FLAG_NESTED : 0) | (isAsync ? FLAG_ASYNC : 0);
+            addRow(files.intern(filePath), names.intern(qualName), startLine, endLine,
+                    Math.max(0, endLine - startLine + 1), (byte) f);
+        }
+
+        public void add(FunctionStat f) {
+            addRow(files.intern(f.filePath), names.intern(f.qualName), f.startLine, f.endLine, f.length,
+                    (byte) ((f.isMethod ? FLAG_METHOD : 0) | (f.isNested ? FLAG_NESTED : 0) | (f.isAsync ? FLAG_ASYNC : 0)));
+        }
+
+        public void addAll(List<FunctionStat> functions) {
+            for (FunctionStat f : functions) add(f);
+        }
+
+        /** 把 other 的所有行追加到本表之后（字典重新映射，不逐行查字典） */
+        public void append(FunctionTable other) {
+            int[] fileMap = files.internAll(other.files);
+            int[] nameMap = names.internAll(other.names);
+            ensureCapacity(size + other.size);
+            for (int i = 0; i < other.size; i++) {
+                fileIds[size] = fileMap[other.fileIds[i]];
+                nameIds[size] = nameMap[other.nameIds[i]];
+                startLines[size] = other.startLines[i];
+                endLines[size] = other.endLines[i];
+                lengths[size] = other.lengths[i];
+                flags[size] = other.flags[i];
+                size++;
+            }
+        }
+
+        public int size() { return size; }
+        public String filePath(int i) { return files.get(fileIds[checkIndex(i)]); }
+        public String qualName(int i) { return names.get(nameIds[checkIndex(i)]); }
+        public int startLine(int i) { return startLines[checkIndex(i)]; }
+        public int endLine(int i) { return endLines[checkIndex(i)]; }
+        public int length(int i) { return lengths[checkIndex(i)]; }
+        public boolean isMethod(int i) { return (flags[checkIndex(i)] & FLAG_METHOD) != 0; }
+        public boolean isNested(int i) { return (flags[checkIndex(i)] & FLAG_NESTED) != 0; }
+        public boolean isAsync(int i) { return (flags[checkIndex(i)] & FLAG_ASYNC) != 0; }
+
+        /** 文件路径在字典中的下标：同一文件的行下标相同，可用于分组而不比较字符串 */
+        public int fileId(int i) { return fileIds[checkIndex(i)]; }
+        public int fileCount() { return files.size(); }
+        public String fileAt(int fileId) { return files.get(fileId); }
+
+        /** 按需创建第 i 行的 FunctionStat（兼容旧接口，大量遍历时应直接用访问方法） */
+        public FunctionStat get(int i) {
+            return new FunctionStat(filePath(i), qualName(i), startLine(i), endLine(i),
+                    isMethod(i), isNested(i), isAsync(i));
+        }
+
+        /** 按 LONGEST_FIRST 的顺序（长度降序，再按文件、起始行）就地排序，相同键保持原有顺序 */
+        public void sortLongestFirst() {
+            // 先给文件路径排名，行之间比较时只比较 int
+            Integer[] byPath = new Integer[files.size()];
+            for (int id = 0; id < byPath.length; id++) byPath[id] = id;
+            Arrays.sort(byPath, Comparator.comparing(files::get, Comparator.nullsFirst(Comparator.<String>naturalOrder())));
+            int[] fileRank = new int[byPath.length];
+            for (int r = 0; r < byPath.length; r++) fileRank[byPath[r]] = r;
+
+            int[] order = new int[size];
+            for (int i = 0; i < size; i++) order[i] = i;
+            mergeSort(order, new int[size], 0, size, fileRank);
+            permute(order);
+        }
+
+        /** 全部函数长度的汇总 */
+        public Summary summary() {
+            Summary.Builder b = new Summary.Builder();
+            for (int i = 0; i < size; i++) b.add(lengths[i]);
+            return b.build();
+        }
+
+        /** 稳定的归并排序（与 List.sort 一样相同键不改变先后顺序） */
+        private void mergeSort(int[] a, int[] tmp, int from, int to, int[] fileRank) {
+            if (to - from < 2) return;
+            int mid = (from + to) >>> 1;
+            mergeSort(a, tmp, from, mid, fileRank);
+            mergeSort(a, tmp, mid, to, fileRank);
+            if (compareRows(a[mid - 1], a[mid], fileRank) <= 0) return;
+            System.arraycopy(a, from, tmp, from, to - from);
+            int i = from, j = mid, k = from;
+            while (i < mid && j < to) {
+                a[k++] = compareRows(tmp[j], tmp[i], fileRank) < 0 ? tmp[j++] : tmp[i++];
+            }
+            while (i < mid) a[k++] = tmp[i++];
+            while (j < to) a[k++] = tmp[j++];
+        }
+
+        private int compareRows(int x, int y, int[] fileRank) {
+            if (lengths[x] != lengths[y]) return lengths[x] > lengths[y] ? -1 : 1;
+            int c = Integer.compare(fileRank[fileIds[x]], fileRank[fileIds[y]]);
+            return c != 0 ? c : Integer.compare(startLines[x], startLines[y]);
+        }
+
+        private void permute(int[] order) {
+            fileIds = gather(fileIds, order);
+            nameIds = gather(nameIds, order);
+            startLines = gather(startLines, order);
+            endLines = gather(endLines, order);
+            lengths = gather(lengths, order);
+            byte[] f = new byte[Math.max(16, size)];
+            for (int i = 0; i < size; i++) f[i] = flags[order[i]];
+            flags = f;
+        }
+
+        private static int[] gather(int[] column, int[] order) {
+            int[] out = new int[Math.max(16, order.length)];
+            for (int i = 0; i < order.length; i++) out[i] = column[order[i]];
+            return out;
+        }
+
+        private void addRow(int fileId, int nameId, int startLine, int endLine, int length, byte f) {
+            ensureCapacity(size + 1);
+            fileIds[size] = fileId;
+            nameIds[size] = nameId;
+            startLines[size] = startLine;
+            endLines[size] = endLine;
+            lengths[size] = length;
+            flags[size] = f;
+            size++;
+        }
+
+        private void ensureCapacity(int needed) {
+            if (needed <= lengths.length) return;
+            int cap = Math.max(needed, lengths.length * 2);
+            fileIds = Arrays.copyOf(fileIds, cap);
+            nameIds = Arrays.copyOf(nameIds, cap);
+            startLines = Arrays.copyOf(startLines, cap);
+            endLines = Arrays.copyOf(endLines, cap);
+            lengths = Arrays.copyOf(lengths, cap);
+            flags = Arrays.copyOf(flags, cap);
+        }
+
+        private int checkIndex(int i) {
+            return Objects.checkIndex(i, size);
+        }
+
+        /** 字符串字典：相同字符串只保存一份，返回稠密的下标（允许 null） */
+        private static class Dictionary {
+            private final Map<String, Integer> ids = new HashMap<>();
+            private final List<String> values = new ArrayList<>();
+
+            int intern(String s) {
+                Integer id = ids.get(s);
+                if (id == null) {
+                    id = values.size();
+                    ids.put(s, id);
+                    values.add(s);
+                }
+                return id;
+            }
+
+            /** 把 other 的所有条目并入本字典，返回 other 下标 -> 本字典下标 */
+            int[] internAll(Dictionary other) {
+                int[] map = new int[other.values.size()];
+                for (int i = 0; i < map.length; i++) map[i] = intern(other.values.get(i));
+                return map;
+            }
+
+            String get(int id) { return values.get(id); }
+            int size() { return values.size(); }
+        }
+    }
+
+    /** 汇总（给前端用的四个数 + count，以及 p90/p95/p99） */
     public static class Summary {
         public int count;
         public double mean;
         public int min;
         public int max;
         public double median;
+        public int p90;           // 百分位数（最近秩法：排序后第 ceil(p*count) 个）
+        public int p95;
+        public int p99;
 
         public static Summary of(List<Integer> lengths) {
-            Summary s = new Summary();
-            if (lengths == null || lengths.isEmpty()) {
-                s.count = 0; s.mean = 0; s.min = 0; s.max = 0; s.median = 0;
-                return s;
+            Builder b = new Builder();
+            if (lengths != null) {
+                for (Integer len : lengths) b.add(len);
             }
-            
-            // 过滤掉长度为0的函数
-            List<Integer> validLengths = lengths.stream()
-                .filter(len -> len > 0)
-                .collect(ArrayList::new, ArrayList::add, ArrayList::addAll);
-                
-            if (validLengths.isEmpty()) {
-                s.count = 0; s.mean = 0; s.min = 0; s.max = 0; s.median = 0;
+            return b.build();
+        }
+
+        public static Summary of(int[] lengths) {
+            Builder b = new Builder();
+            for (int len : lengths) b.add(len);
+            return b.build();
+        }
+
+        /**
+         * 基于计数直方图的汇总构造器：长度 < DENSE_LIMIT 的计入 int[] 计数（数组随最大长度增长），
+         * 更长的放入溢出数组；不装箱、不排序整个序列，build() 为线性时间。
+         * 支持增量 add / remove / merge，可以边处理文件边更新。长度为 0 的函数不计入（与原实现一致）。
+         */
+        public static class Builder {
+            private static final int DENSE_LIMIT = 1 << 16;
+
+            private int[] counts = new int[64];
+            private int[] overflow = new int[0];
+            private int overflowSize;
+            private int count;
+            private long sum;
+
+            public Builder add(int length) {
+                if (length <= 0) return this;
+                if (length < DENSE_LIMIT) {
+                    if (length >= counts.length) {
+                        counts = Arrays.copyOf(counts, Math.min(DENSE_LIMIT, Math.max(length + 1, counts.length * 2)));
+                    }
+                    counts[length]++;
+                } else {
+                    if (overflowSize == overflow.length) {
+                        overflow = Arrays.copyOf(overflow, Math.max(8, overflowSize * 2));
+                    }
+                    overflow[overflowSize++] = length;
+                }
+                count++;
+                sum += length;
+                return this;
+            }
+
+            /** 撤销一次 add（例如文件被修改后移除旧的函数）；长度不存在时忽略 */
+            public Builder remove(int length) {
+                if (length <= 0) return this;
+                if (length < DENSE_LIMIT) {
+                    if (length >= counts.length || counts[length] == 0) return this;
+                    counts[length]--;
+                } else {
+                    int i = 0;
+                    while (i < overflowSize && overflow[i] != length) i++;
+                    if (i == overflowSize) return this;
+                    overflow[i] = overflow[--overflowSize];
+                }
+                count--;
+                sum -= length;
+                return this;
+            }
+
+            public Builder merge(Builder other) {
+                if (other.counts.length > counts.length) counts = Arrays.copyOf(counts, other.counts.length);
+                for (int len = 0; len < other.counts.length; len++) counts[len] += other.counts[len];
+                for (int i = 0; i < other.overflowSize; i++) {
+                    if (overflowSize == overflow.length) {
+                        overflow = Arrays.copyOf(overflow, Math.max(8, overflowSize * 2));
+                    }
+                    overflow[overflowSize++] = other.overflow[i];
+                }
+                count += other.count;
+                sum += other.sum;
+                return this;
+            }
+
+            public int count() {
+                return count;
+            }
+
+            public Summary build() {
+                Summary s = new Summary();
+                if (count == 0) return s;
+                s.count = count;
+                s.mean = (double) sum / count;
+
+                // 一次遍历取出所需的各个秩（0-based，升序）
+                int[] ranks = {
+                        0,
+                        (count - 1) / 2,
+                        count / 2,
+                        nearestRank(90),
+                        nearestRank(95),
+                        nearestRank(99),
+                        count - 1
+                };
+                int[] values = valuesAt(ranks);
+                s.min = values[0];
+                s.median = count % 2 == 0 ? (values[1] + values[2]) / 2.0 : values[2];
+                s.p90 = values[3];
+                s.p95 = values[4];
+                s.p99 = values[5];
+                s.max = values[6];
                 return s;
             }
-            
-            List<Integer> arr = new ArrayList<>(validLengths);
-            Collections.sort(arr);
-            s.count = arr.size();
-            s.min = arr.get(0);
-            s.max = arr.get(arr.size() - 1);
-            
-            // 正确计算均值
-            s.mean = arr.stream().mapToInt(Integer::intValue).average().orElse(0);
-            
-            // 正确计算中位数
-            int size = arr.size();
-            if (size % 2 == 0) {
-                // 偶数个元素，取中间两个数的平均值
-                s.median = (arr.get(size/2 - 1) + arr.get(size/2)) / 2.0;
-            } else {
-                // 奇数个元素，取中间的数
-                s.median = arr.get(size/2);
-            }
-            
-            return s;
+
+            /** 第 percent 百分位数的 0-based 秩：ceil(percent * count / 100) - 1，用整数运算避免浮点误差 */
+            private int nearestRank(int percent) {
+                return (int) Math.max(0, ((long) count * percent + 99) / 100 - 1);
+            }
+
+            /** ranks 须为升序 */
+            private int[] valuesAt(int[] ranks) {
+                int[] values = new int[ranks.length];
+                int r = 0;
+                long seen = 0;
+                for (int len = 1; len < counts.length && r < ranks.length; len++) {
+                    seen += counts[len];
+                    while (r < ranks.length && ranks[r] < seen) values[r++] = len;
+                }
+                if (r < ranks.length) {
+                    // 剩下的秩落在溢出部分，只对溢出数组排序
+                    int[] big = Arrays.copyOf(overflow, overflowSize);
+                    Arrays.sort(big);
+                    while (r < ranks.length) {
+                        values[r] = big[(int) (ranks[r] - seen)];
+                        r++;
+                    }
+                }
+                return values;
+            }
         }
     }
 
@@ -106,6 +397,15 @@ public class CodeStatsCore {
             this.blankLines += other.blankLines;
             this.totalLines += other.totalLines;
         }
+
+        /** 撤销一次 merge（例如文件被修改或删除后去掉旧的统计） */
+        public void subtract(CodeMetrics other) {
+            this.fileCount -= other.fileCount;
+            this.codeLines -= other.codeLines;
+            this.commentLines -= other.commentLines;
+            this.blankLines -= other.blankLines;
+            this.totalLines -= other.totalLines;
+        }
     }
 
     /** 统一返回体 */
@@ -114,34 +414,158 @@ public class CodeStatsCore {
         public Map<String, Object> byFile;     // file -> { summary, functions }
         public List<FunctionStat> functions;   // 全局函数明细（已按长度降序）
         public CodeMetrics codeMetrics;        // 代码量统计
+        public Map<String, List<String>> duplicates; // 内容重复的文件：首个文件 -> 各个副本（仅 DEDUP_REPORT）
+        public FunctionTable table;            // 列式函数明细（仅列式模式，此时 functions 为 null）
+
+        /** 函数明细的列式视图：列式模式直接返回 table，否则由 functions 转换；没有明细时返回空表 */
+        public FunctionTable functionTable() {
+            if (table != null) return table;
+            return FunctionTable.of(functions);
+        }
+    }
+
+    /** 全局函数明细的排序：按长度降序，再按文件、起始行 */
+    static final Comparator<FunctionStat> LONGEST_FIRST = Comparator.<FunctionStat>comparingInt(f -> -f.length)
+            .thenComparing((FunctionStat f) -> f.filePath)
+            .thenComparingInt(f -> f.startLine);
+
+    /**
+     * 流式汇总：不保留全部函数明细，只保留可合并的长度直方图、最长的 K 个函数和按文件的汇总，
+     * 占用内存与函数总数无关（每个文件保留一个长度直方图，与文件数成正比）
+     */
+    public static class StreamingAggregate {
+        // 堆内的比较在 LONGEST_FIRST 之后再比较函数名和结束行，保证取前 K 个的结果确定
+        private static final Comparator<FunctionStat> HEAP_ORDER = LONGEST_FIRST
+                .thenComparing((FunctionStat f) -> f.qualName)
+                .thenComparingInt(f -> f.endLine);
+
+        private final int topK;
+        private final Summary.Builder histogram = new Summary.Builder();
+        private final PriorityQueue<FunctionStat> top;   // 堆顶是当前保留的最短的函数
+        // 同一路径可能多次出现（例如多段未命名的内存代码），保留直方图使其中位数和百分位数仍是精确值
+        private final Map<String, Summary.Builder> byFile = new LinkedHashMap<>();
+
+        public StreamingAggregate(int topK) {
+            this.topK = Math.max(0, topK);
+            this.top = new PriorityQueue<>(HEAP_ORDER.reversed());
+        }
+
+        /** 加入一批函数（同一文件的函数应连续出现） */
+        public void addFunctions(List<FunctionStat> functions) {
+            int i = 0;
+            while (i < functions.size()) {
+                String path = functions.get(i).filePath;
+                Summary.Builder fileHistogram = byFile.computeIfAbsent(path, p -> new Summary.Builder());
+                for (; i < functions.size() && Objects.equals(functions.get(i).filePath, path); i++) {
+                    FunctionStat f = functions.get(i);
+                    histogram.add(f.length);
+                    fileHistogram.add(f.length);
+                    offer(f);
+                }
+            }
+        }
+
+        /** 把 other 合并到本汇总之后（保持文件顺序） */
+        public void merge(StreamingAggregate other) {
+            histogram.merge(other.histogram);
+            for (FunctionStat f : other.top) offer(f);
+            for (Map.Entry<String, Summary.Builder> e : other.byFile.entrySet()) {
+                byFile.computeIfAbsent(e.getKey(), p -> new Summary.Builder()).merge(e.getValue());
+            }
+        }
+
+        public Summary summary() {
+            return histogram.build();
+        }
+
+        /** 最长的 K 个函数，按 LONGEST_FIRST 排序 */
+        public List<FunctionStat> topFunctions() {
+            List<FunctionStat> list = new ArrayList<>(top);
+            list.sort(HEAP_ORDER);
+            return list;
+        }
+
+        /** file -> { summary }（与 buildResult 的 byFile 相同，但不含函数明细） */
+        public Map<String, Object> byFile() {
+            Map<String, Object> out = new LinkedHashMap<>();
+            for (Map.Entry<String, Summary.Builder> e : byFile.entrySet()) {
+                Map<String, Object> one = new LinkedHashMap<>();
+                one.put("summary", e.getValue().build());
+                out.put(e.getKey(), one);
+            }
+            return out;
+        }
+
+        private void offer(FunctionStat f) {
+            if (topK == 0) return;
+            if (top.size() < topK) {
+                top.add(f);
+            } else if (HEAP_ORDER.compare(f, top.peek()) < 0) {
+                top.poll();
+                top.add(f);
+            }
+        }
+    }
+
+    /**
+     * 由列式函数明细构造返回：table 就地按长度降序排序后作为明细，
+     * byFile 只含各文件的 summary（不为每个文件生成函数列表）
+     */
+    public static AnalyzeResult buildResult(FunctionTable table) {
+        AnalyzeResult r = new AnalyzeResult();
+        Summary.Builder all = new Summary.Builder();
+        Summary.Builder[] perFile = new Summary.Builder[table.fileCount()];
+        for (int i = 0; i < table.size(); i++) {
+            int len = table.length(i);
+            all.add(len);
+            int fileId = table.fileId(i);
+            if (perFile[fileId] == null) perFile[fileId] = new Summary.Builder();
+            perFile[fileId].add(len);
+        }
+        r.summary = all.build();
+
+        // 字典下标按首次出现的顺序分配，与按列表分组时的文件顺序一致
+        Map<String, Object> byFile = new LinkedHashMap<>();
+        for (int fileId = 0; fileId < perFile.length; fileId++) {
+            if (perFile[fileId] == null) continue;
+            Map<String, Object> fileResult = new LinkedHashMap<>();
+            fileResult.put("summary", perFile[fileId].build());
+            byFile.put(table.fileAt(fileId), fileResult);
+        }
+        r.byFile = byFile;
+
+        table.sortLongestFirst();
+        r.table = table;
+        return r;
     }
 
     /** 由函数列表构造返回 */
     public static AnalyzeResult buildResult(List<FunctionStat> functions) {
         AnalyzeResult r = new AnalyzeResult();
-        List<Integer> lengths = functions.stream().map(f -> f.length).collect(Collectors.toList());
-        r.summary = Summary.of(lengths);
-
-        Map<String, List<FunctionStat>> grouped = functions.stream()
-                .collect(Collectors.groupingBy(f -> f.filePath, LinkedHashMap::new, Collectors.toList()));
+        Summary.Builder all = new Summary.Builder();
+        Map<String, List<FunctionStat>> grouped = new LinkedHashMap<>();
+        for (FunctionStat f : functions) {
+            all.add(f.length);
+            grouped.computeIfAbsent(f.filePath, k -> new ArrayList<>()).add(f);
+        }
+        r.summary = all.build();
 
         Map<String, Object> byFile = new LinkedHashMap<>();
         for (Map.Entry<String, List<FunctionStat>> e : grouped.entrySet()) {
-            List<Integer> lens = e.getValue().stream().map(f -> f.length).collect(Collectors.toList());
-            Map<String, Object> one = new LinkedHashMap<>();
-            one.put("summary", Summary.of(lens));
-            List<FunctionStat> sorted = new ArrayList<>(e.getValue());
+            Summary.Builder one = new Summary.Builder();
+            for (FunctionStat f : e.getValue()) one.add(f.length);
+            Map<String, Object> fileResult = new LinkedHashMap<>();
+            fileResult.put("summary", one.build());
+            List<FunctionStat> sorted = e.getValue();
             sorted.sort(Comparator.<FunctionStat>comparingInt(f -> -f.length)
                     .thenComparingInt(f -> f.startLine));
-            one.put("functions", sorted);
-            byFile.put(e.getKey(), one);
+            fileResult.put("functions", sorted);
+            byFile.put(e.getKey(), fileResult);
         }
         r.byFile = byFile;
 
         r.functions = new ArrayList<>(functions);
-        r.functions.sort(Comparator.<FunctionStat>comparingInt(f -> -f.length)
-                .thenComparing((FunctionStat f) -> f.filePath)
-                .thenComparingInt(f -> f.startLine));
+        r.functions.sort(LONGEST_FIRST);
         return r;
     }
 }
\ No newline at end of file
@@ -5,7 +5,7 @@ import java.awt.*;
 import java.io.File;
 import java.util.List;
 import java.util.Map;
-import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.ArrayList;
 import java.util.concurrent.ExecutionException;
 
@@ -94,62 +94,63 @@ public class CodeStatsHandler {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogTitle("选择包含所有语言文件的目录");
         fileChooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+        JCheckBox ignoreBox = createIgnoreFilesBox();
+        fileChooser.setAccessory(ignoreBox);
         
         int result = fileChooser.showOpenDialog(gui);
         if (result == JFileChooser.APPROVE_OPTION) {
             File selectedDirectory = fileChooser.getSelectedFile();
-            performAllLanguageCodeAnalysis(selectedDirectory, mode);
+            performAllLanguageCodeAnalysis(selectedDirectory, mode, ignoreBox.isSelected());
         }
     }
     
     /**
      * 执行所有语言的代码分析
      */
-    private void performAllLanguageCodeAnalysis(File directory, int mode) {
+    private void performAllLanguageCodeAnalysis(File directory, int mode, boolean ignoreFiles) {
         // 创建进度对话框
-        JDialog progressDialog = new JDialog(gui, "分析中", true);
-        JProgressBar progressBar = new JProgressBar();
-        progressBar.setIndeterminate(true);
-        progressDialog.add(new JLabel("正在分析所有语言的代码，请稍候..."), BorderLayout.NORTH);
-        progressDialog.add(progressBar, BorderLayout.CENTER);
-        progressDialog.setSize(300, 100);
-        progressDialog.setLocationRelativeTo(gui);
+        CodeStatsService.CancellationToken cancel = new CodeStatsService.CancellationToken();
+        ProgressDialog progressDialog = new ProgressDialog("正在分析所有语言的代码，请稍候...", cancel);
         
         // 在后台线程执行分析
-        SwingWorker<Map<CodeStatsCore.Language, CodeStatsCore.AnalyzeResult>, Void> worker = 
-            new SwingWorker<Map<CodeStatsCore.Language, CodeStatsCore.AnalyzeResult>, Void>() {
+        SwingWorker<Map<CodeStatsCore.Language, CodeStatsCore.AnalyzeResult>, CodeStatsService.Progress> worker = 
+            new SwingWorker<Map<CodeStatsCore.Language, CodeStatsCore.AnalyzeResult>, CodeStatsService.Progress>() {
             
             @Override
             protected Map<CodeStatsCore.Language, CodeStatsCore.AnalyzeResult> doInBackground() throws Exception {
                 CodeStatsService service = new CodeStatsService();
-                Map<CodeStatsCore.Language, CodeStatsCore.AnalyzeResult> results = new LinkedHashMap<>();
                 
-                // 按指定顺序定义所有要分析的语言
-                CodeStatsCore.Language[] languages = {
+                // 按指定顺序定义所有要分析的语言，只遍历一次目录
+                CodeStatsService.AnalyzeRequest request = new CodeStatsService.AnalyzeRequest();
+                request.languages = new LinkedHashSet<>(List.of(
                     CodeStatsCore.Language.C,
                     CodeStatsCore.Language.CPP,
                     CodeStatsCore.Language.JAVA,
                     CodeStatsCore.Language.PYTHON,
                     CodeStatsCore.Language.CSHARP
-                };
+                ));
+                request.paths = List.of(directory.getAbsolutePath());
+                request.mode = mode;
+                request.parallelism = 0; // 使用全部 CPU 核
+                request.columnar = true;  // 函数明细用列式表保存，减少大项目的内存占用
+                request.ignoreFiles = ignoreFiles; // 勾选时跳过 .git 和 .gitignore 忽略的目录（node_modules、target 等）
+                request.progress = this::publish;
+                request.cancel = cancel;
                 
-                // 对每种语言执行分析
-                for (CodeStatsCore.Language language : languages) {
-                    CodeStatsService.AnalyzeRequest request = new CodeStatsService.AnalyzeRequest();
-                    request.language = language;
-                    request.paths = List.of(directory.getAbsolutePath());
-                    request.mode = mode;
-                    
-                    CodeStatsCore.AnalyzeResult result = service.analyze(request);
-                    results.put(language, result);
-                }
+                Map<CodeStatsCore.Language, CodeStatsCore.AnalyzeResult> results = service.analyzeAll(request);
                 
                 return results;
             }
             
+            @Override
+            protected void process(List<CodeStatsService.Progress> chunks) {
+                progressDialog.update(chunks.get(chunks.size() - 1));
+            }
+            
             @Override
             protected void done() {
                 progressDialog.dispose();
+                if (cancel.isCancelled()) return; // 用户已取消，不再提示
                 try {
                     Map<CodeStatsCore.Language, CodeStatsCore.AnalyzeResult> results = get();
                     showAllLanguageCodeMetricsResult(results, directory, mode);
@@ -328,6 +329,13 @@ public class CodeStatsHandler {
         }
     }
     
+    /** 文件选择对话框旁的选项：是否遵循 .gitignore，默认不勾选（统计所选目录下的全部文件） */
+    private JCheckBox createIgnoreFilesBox() {
+        JCheckBox box = new JCheckBox("跳过 .gitignore 忽略的文件");
+        box.setToolTipText("跳过 .git 目录以及 .gitignore、.git/info/exclude 中列出的文件和目录");
+        return box;
+    }
+    
     /**
      * 显示文件选择对话框
      */
@@ -342,11 +350,13 @@ public class CodeStatsHandler {
         if (filter != null) {
             fileChooser.setFileFilter(filter);
         }
+        JCheckBox ignoreBox = createIgnoreFilesBox();
+        fileChooser.setAccessory(ignoreBox);
         
         int result = fileChooser.showOpenDialog(gui);
         if (result == JFileChooser.APPROVE_OPTION) {
             File selectedFile = fileChooser.getSelectedFile();
-            performCodeAnalysis(language, selectedFile, mode);
+            performCodeAnalysis(language, selectedFile, mode, ignoreBox.isSelected());
         }
     }
     
@@ -425,18 +435,13 @@ public class CodeStatsHandler {
     /**
      * 根据模式显示不同的统计结果分析处
      */
-    private void performCodeAnalysis(CodeStatsCore.Language language, File file, int mode) {
+    private void performCodeAnalysis(CodeStatsCore.Language language, File file, int mode, boolean ignoreFiles) {
         // 创建进度对话框
-        JDialog progressDialog = new JDialog(gui, "分析中", true);
-        JProgressBar progressBar = new JProgressBar();
-        progressBar.setIndeterminate(true);
-        progressDialog.add(new JLabel("正在分析代码，请稍候..."), BorderLayout.NORTH);
-        progressDialog.add(progressBar, BorderLayout.CENTER);
-        progressDialog.setSize(300, 100);
-        progressDialog.setLocationRelativeTo(gui);
+        CodeStatsService.CancellationToken cancel = new CodeStatsService.CancellationToken();
+        ProgressDialog progressDialog = new ProgressDialog("正在分析代码，请稍候...", cancel);
 
-        SwingWorker<CodeStatsCore.AnalyzeResult, Void> worker = 
-            new SwingWorker<CodeStatsCore.AnalyzeResult, Void>() {
+        SwingWorker<CodeStatsCore.AnalyzeResult, CodeStatsService.Progress> worker = 
+            new SwingWorker<CodeStatsCore.AnalyzeResult, CodeStatsService.Progress>() {
             
             @Override
             protected CodeStatsCore.AnalyzeResult doInBackground() throws Exception {
@@ -445,13 +450,24 @@ public class CodeStatsHandler {
                 request.language = language;
                 request.paths = List.of(file.getAbsolutePath());
                 request.mode = mode;
+                request.parallelism = 0; // 使用全部 CPU 核
+                request.columnar = true;  // 函数明细用列式表保存，减少大项目的内存占用
+                request.ignoreFiles = ignoreFiles; // 勾选时跳过 .git 和 .gitignore 忽略的目录（node_modules、target 等）
+                request.progress = this::publish;
+                request.cancel = cancel;
                 
                 return service.analyze(request);
             }
             
+            @Override
+            protected void process(List<CodeStatsService.Progress> chunks) {
+                progressDialog.update(chunks.get(chunks.size() - 1));
+            }
+            
             @Override
             protected void done() {
                 progressDialog.dispose();
+                if (cancel.isCancelled()) return; // 用户已取消，不再提示
                 try {
                     CodeStatsCore.AnalyzeResult res = get();
                     
@@ -546,9 +562,10 @@ public class CodeStatsHandler {
         JTabbedPane chartTabbedPane = new JTabbedPane();
         
         // 收集所有函数长度
-        List<Integer> lengths = new ArrayList<>();
-        for (CodeStatsCore.FunctionStat func : result.functions) {
-            lengths.add(func.length);
+        CodeStatsCore.FunctionTable table = result.functionTable();
+        List<Integer> lengths = new ArrayList<>(table.size());
+        for (int i = 0; i < table.size(); i++) {
+            lengths.add(table.length(i));
         }
         
         // 柱状图
@@ -640,4 +657,62 @@ public class CodeStatsHandler {
         
         resultDialog.setVisible(true);
     }
+
+    /**
+     * 分析进度对话框：目录遍历期间进度条为不确定状态，之后按 已完成/总文件数 显示，
+     * 下方显示已读入的数据量和每秒文件数；点击“取消”或关闭窗口时通过 token 中止分析
+     */
+    private class ProgressDialog extends JDialog {
+        private static final long serialVersionUID = 1L;
+
+        private final JProgressBar progressBar = new JProgressBar();
+        private final JLabel statusLabel = new JLabel("正在查找文件...");
+        private final CodeStatsService.CancellationToken cancel;
+
+        ProgressDialog(String title, CodeStatsService.CancellationToken cancel) {
+            super(gui, "分析中", true);
+            this.cancel = cancel;
+            setLayout(new BorderLayout(5, 5));
+            progressBar.setIndeterminate(true);
+            progressBar.setStringPainted(true);
+            progressBar.setString("");
+
+            JButton cancelButton = new JButton("取消");
+            cancelButton.addActionListener(e -> {
+                cancel.cancel();
+                cancelButton.setEnabled(false);
+                statusLabel.setText("正在取消...");
+            });
+            setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE);
+            addWindowListener(new java.awt.event.WindowAdapter() {
+                @Override
+                public void windowClosing(java.awt.event.WindowEvent e) {
+                    cancelButton.doClick();
+                }
+            });
+
+            JPanel south = new JPanel(new BorderLayout());
+            south.add(statusLabel, BorderLayout.CENTER);
+            south.add(cancelButton, BorderLayout.EAST);
+            add(new JLabel(title), BorderLayout.NORTH);
+            add(progressBar, BorderLayout.CENTER);
+            add(south, BorderLayout.SOUTH);
+            ((JComponent) getContentPane()).setBorder(BorderFactory.createEmptyBorder(10, 10, 10, 10));
+            setSize(420, 140);
+            setLocationRelativeTo(gui);
+        }
+
+        void update(CodeStatsService.Progress p) {
+            if (cancel.isCancelled()) return;
+            if (p.discoveryDone) {
+                progressBar.setIndeterminate(false);
+                progressBar.setMaximum(Math.max(1, p.filesDiscovered));
+                progressBar.setValue(p.filesDone);
+                progressBar.setString(p.filesDone + " / " + p.filesDiscovered);
+            } else {
+                progressBar.setString("已发现 " + p.filesDiscovered + " 个文件");
+            }
+            statusLabel.setText(String.format("%.1f MB，%.0f 个文件/秒", p.bytesProcessed / 1e6, p.filesPerSecond()));
+        }
+    }
 }
\ No newline at end of file
@@ -2,9 +2,27 @@ package com.myapp;
 
 import com.myapp.CodeStatsCore.*;
 import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.CharacterCodingException;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.util.*;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
 
 /** 
  * 代码统计服务类（三种）
@@ -16,6 +34,27 @@ public class CodeStatsService {
     public static final int MODE_FUNCTION_LENGTH = 2;   // 函数长度统计模式
     public static final int MODE_BOTH = 3;              // 两种都统计模式
 
+    // 重复文件处理常量
+    public static final int DEDUP_OFF = 0;      // 不识别重复文件
+    public static final int DEDUP_REUSE = 1;    // 内容相同的文件只解析一次，但仍分别计数（流式汇总时不生效）
+    public static final int DEDUP_REPORT = 2;   // 内容相同的文件只统计第一个，其余列入 duplicates
+
+    // 并行模式下每个工作线程平均分到的叶子任务数，便于 work-stealing 均衡负载
+    private static final int LEAF_SPLIT_FACTOR = 8;
+    // 流水线模式默认值：读取线程数、在途字节预算
+    private static final int DEFAULT_IO_THREADS = 8;
+    private static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024;
+    // 流水线模式：已提交但未合并的文件数上限 = 该倍数 × (读取线程数 + 解析线程数)
+    private static final int PIPELINE_WINDOW_FACTOR = 4;
+    // 流式汇总默认保留的最长函数个数
+    private static final int DEFAULT_TOP_K = 100;
+    // 超过该大小的文件在统计代码量时使用内存映射读取
+    private static final long MMAP_THRESHOLD_BYTES = 1024 * 1024;
+    // 监视模式：最后一个变更事件之后等待多久再重新分析（合并一连串的保存 / checkout 事件）
+    private static final long DEFAULT_WATCH_DEBOUNCE_MILLIS = 200;
+    // 进度回调的最小间隔（最后一次完成时总会回调）
+    private static final long PROGRESS_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
     private final Map<Language, CodeAnalyzer> analyzers = Map.of(
             Language.JAVA, new JavaAnalyzer(),
             Language.PYTHON, new PythonAnalyzer(),
@@ -23,6 +62,17 @@ public class CodeStatsService {
             Language.CPP, new CppAnalyzer(),
             Language.CSHARP, new CSharpAnalyzer()
     );
+    private final CodeAnalyzer fastJava = new FastJavaAnalyzer();
+
+    /** 某种语言的分析器（历史分析按文件对象名缓存结果时使用） */
+    CodeAnalyzer analyzer(Language language) {
+        return analyzers.get(language);
+    }
+
+    /** 本次请求使用的分析器：fastJava 时 Java 用快速扫描 */
+    private CodeAnalyzer analyzer(Language language, RunContext ctx) {
+        return language == Language.JAVA && ctx.req.fastJava ? fastJava : analyzers.get(language);
+    }
 
     /** 前端若直接传代码（不是磁盘文件），用这个结构 */
     public static class InMemoryFile {
@@ -32,10 +82,188 @@ public class CodeStatsService {
 
     /** 统一请求体：二选一或同时传 */
     public static class AnalyzeRequest {
-        public Language language;          // 必填：JAVA / PYTHON / C / CPP
+        public Language language;          // 单语言分析时必填：JAVA / PYTHON / C / CPP
+        public Set<Language> languages;    // 多语言分析（analyzeAll）时使用，为空则取 language
         public List<InMemoryFile> files;   // 可选：内存代码
         public List<String> paths;         // 可选：文件或目录路径
         public int mode = MODE_FUNCTION_LENGTH; // 统计模式，默认为函数长度统计
+        public int parallelism = 1;        // 并行度：1 为单线程，<=0 为 CPU 核数，结果与单线程完全一致
+        public boolean pipeline;           // 流水线模式：读取线程池 + 分析线程池（分析线程数 = parallelism）
+        public int ioThreads = DEFAULT_IO_THREADS;               // 流水线模式的读取线程数
+        public long maxInFlightBytes = DEFAULT_MAX_IN_FLIGHT_BYTES; // 已读入但未分析完的字节上限
+        public PipelineStats pipelineStats; // 可选：传入后可在其他线程观察各阶段队列深度
+        public AnalysisCache cache;        // 可选：增量分析缓存，未变化的文件直接复用上次结果
+        public int dedup = DEDUP_OFF;      // 重复文件处理方式：DEDUP_OFF / DEDUP_REUSE / DEDUP_REPORT
+        public boolean streaming;          // 流式汇总：不保留函数明细，functions 只返回最长的 topK 个
+        public int topK = DEFAULT_TOP_K;   // 流式汇总保留的最长函数个数
+        public boolean columnar;           // 列式明细：函数明细放在 AnalyzeResult.table，functions 为 null（流式模式优先）
+        public long watchDebounceMillis = DEFAULT_WATCH_DEBOUNCE_MILLIS; // 监视模式的事件合并间隔
+        public ProgressListener progress;  // 可选：进度回调（在分析线程上调用）
+        public CancellationToken cancel;   // 可选：取消后 analyze 抛出 CancellationException
+        public List<String> includes;      // 可选：目录下只分析匹配的文件（.gitignore 语法，相对于该目录）
+        public List<String> excludes;      // 可选：排除的文件 / 目录（同上），被排除的目录不会被遍历
+        public boolean ignoreFiles;        // 遵循 .gitignore 和 .git/info/exclude，并跳过 .git 目录
+        public String repository;          // 可选：本地 git 仓库，指定后从对象库读取 revision 的文件（不检出），
+                                           //       paths 此时为仓库内的路径（为空则分析整个仓库）
+        public String revision;            // 仓库模式下的修订：分支、标签、提交号，可带 ~N / ^N，默认 HEAD
+        public boolean fastJava;           // Java 函数统计用词法扫描代替 JavaParser（没有把握的文件自动退回）
+    }
+
+    /**
+     * 进度回调：在遍历目录和分析文件的线程上调用（可能是多个线程，但不会并发调用），
+     * 最多每 100ms 一次，全部文件完成时再调用一次。实现应尽快返回，界面更新请转交 UI 线程
+     */
+    public interface ProgressListener {
+        void onProgress(Progress progress);
+    }
+
+    /** 某一时刻的进度快照 */
+    public static class Progress {
+        public int filesDiscovered;        // 已发现的待分析文件数，discoveryDone 之后即为总数
+        public boolean discoveryDone;      // 目录遍历是否已结束
+        public int filesDone;              // 已分析完（含读取失败、缓存命中）的文件数
+        public long bytesProcessed;        // 已读入的源码字节数（内存代码按字符数计）
+        public long elapsedNanos;          // 从开始分析到现在的耗时
+
+        public double filesPerSecond() {
+            return elapsedNanos <= 0 ? 0 : filesDone * 1e9 / elapsedNanos;
+        }
+
+        public double megabytesPerSecond() {
+            return elapsedNanos <= 0 ? 0 : bytesProcessed * 1e3 / elapsedNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%d/%d files, %.1f MB, %.0f files/s",
+                    filesDone, filesDiscovered, bytesProcessed / 1e6, filesPerSecond());
+        }
+    }
+
+    /** 取消标记：任意线程调用 cancel() 后，分析在处理下一个文件前停止并抛出 CancellationException */
+    public static class CancellationToken {
+        private volatile boolean cancelled;
+
+        public void cancel() { cancelled = true; }
+
+        public boolean isCancelled() { return cancelled; }
+
+        public void throwIfCancelled() {
+            if (cancelled) throw new CancellationException("分析已取消");
+        }
+    }
+
+    /** 流水线各阶段的实时状态，用于判断瓶颈在磁盘还是在解析 */
+    public static class PipelineStats {
+        private final AtomicInteger submitted = new AtomicInteger();
+        private final AtomicInteger readStarted = new AtomicInteger();
+        private final AtomicInteger readDone = new AtomicInteger();
+        private final AtomicInteger parseStarted = new AtomicInteger();
+        private final AtomicInteger parseDone = new AtomicInteger();
+        private final AtomicLong inFlightBytes = new AtomicLong();
+
+        /** 等待读取的文件数 */
+        public int readQueueDepth() { return submitted.get() - readStarted.get(); }
+        /** 已读入、等待分析的文件数 */
+        public int parseQueueDepth() { return readDone.get() - parseStarted.get(); }
+        /** 当前占用的字节预算 */
+        public long inFlightBytes() { return inFlightBytes.get(); }
+        public int filesRead() { return readDone.get(); }
+        public int filesParsed() { return parseDone.get(); }
+
+        @Override
+        public String toString() {
+            return String.format("read queue=%d, parse queue=%d, in-flight=%dKB, read=%d, parsed=%d",
+                    readQueueDepth(), parseQueueDepth(), inFlightBytes() / 1024, filesRead(), filesParsed());
+        }
+    }
+
+    /** 待分析的单个文件：磁盘文件、内存代码或 git 对象 + 判定的语言 */
+    private static class SourceFile {
+        final String displayPath;  // 写入 FunctionStat.filePath 的路径
+        final Path file;           // 磁盘文件，其他来源时为 null
+        final String code;         // 内存代码，其他来源时为 null
+        final GitRepository repo;  // git 对象所在仓库，其他来源时为 null
+        final GitRepository.ObjectId blob;
+        final Language language;
+
+        SourceFile(Path file, Language language) {
+            this(file.toString(), file, null, null, null, language);
+        }
+
+        SourceFile(String displayPath, String code, Language language) {
+            this(displayPath, null, code, null, null, language);
+        }
+
+        SourceFile(String displayPath, GitRepository repo, GitRepository.ObjectId blob, Language language) {
+            this(displayPath, null, null, repo, blob, language);
+        }
+
+        private SourceFile(String displayPath, Path file, String code, GitRepository repo,
+                           GitRepository.ObjectId blob, Language language) {
+            this.displayPath = displayPath;
+            this.file = file;
+            this.code = code;
+            this.repo = repo;
+            this.blob = blob;
+            this.language = language;
+        }
+    }
+
+    /**
+     * 单个文件或单种语言的累加结果；流式模式下不保留函数明细，改为并入 aggregate，
+     * 列式模式下函数明细并入 table
+     */
+    private static class Accumulator {
+        final CodeMetrics metrics = new CodeMetrics();
+        final List<FunctionStat> functions = new ArrayList<>();
+        final StreamingAggregate aggregate;
+        final FunctionTable table;
+        // 以下只用于单个文件的结果
+        ContentHash hash;          // 内容指纹（启用去重时），未知为 null
+        SourceFile duplicateOf;    // DEDUP_REPORT：内容相同、更靠前的文件；此时本结果为空，未解析
+
+        Accumulator() {
+            this(null, null);
+        }
+
+        Accumulator(StreamingAggregate aggregate, FunctionTable table) {
+            this.aggregate = aggregate;
+            this.table = table;
+        }
+
+        /** 把 other 追加到本累加器之后（保持文件顺序） */
+        void merge(Accumulator other) {
+            metrics.merge(other.metrics);
+            if (aggregate != null) {
+                if (other.aggregate != null) {
+                    aggregate.merge(other.aggregate);
+                } else {
+                    aggregate.addFunctions(other.functions);
+                }
+            } else if (table != null) {
+                if (other.table != null) {
+                    table.append(other.table);
+                } else {
+                    table.addAll(other.functions);
+                }
+            } else {
+                functions.addAll(other.functions);
+            }
+        }
+    }
+
+    /** 某个内容指纹的登记：文件在 sources 中的下标、文件本身，DEDUP_REUSE 时还有其结果 */
+    private static class ContentClaim {
+        final int index;
+        final SourceFile source;
+        final Accumulator result;
+
+        ContentClaim(int index, SourceFile source, Accumulator result) {
+            this.index = index;
+            this.source = source;
+            this.result = result;
+        }
     }
 
     /** 如果前端输入“代码量”，识别并使用 */
@@ -52,140 +280,745 @@ public class CodeStatsService {
     public AnalyzeResult analyze(AnalyzeRequest req) {
         if (req == null || req.language == null)
             throw new IllegalArgumentException("language 不能为空");
+        if (analyzers.get(req.language) == null)
+            throw new IllegalArgumentException("不支持的语言: " + req.language);
 
-        CodeAnalyzer analyzer = analyzers.get(req.language);
-        if (analyzer == null)
+        return analyzeLanguages(req, EnumSet.of(req.language)).get(req.language);
+    }
+
+    /**
+     * 监视模式：先完整分析一次 req.paths，之后监视这些目录，合并变更事件后只重新分析变化的文件，
+     * 并就地更新 AnalysisWatcher.result()。onUpdate（可为 null）在每批变更应用后于监视线程上调用。
+     * 不再需要时调用 close() 停止监视
+     */
+    public AnalysisWatcher watch(AnalyzeRequest req, Consumer<AnalyzeResult> onUpdate) throws IOException {
+        if (req == null || req.language == null)
+            throw new IllegalArgumentException("language 不能为空");
+        if (analyzers.get(req.language) == null)
             throw new IllegalArgumentException("不支持的语言: " + req.language);
+        if (req.repository != null)
+            throw new IllegalArgumentException("仓库模式不支持监视");
+        return AnalysisWatcher.start(this, req, onUpdate);
+    }
 
-        // 根据模式选择不同的分析方法
-        switch (req.mode) {
-            case MODE_CODE_METRICS:
-                return analyzeCodeMetrics(req, analyzer);
-            case MODE_FUNCTION_LENGTH:
-                return analyzeFunctionLength(req, analyzer);
-            case MODE_BOTH:
-                return analyzeBoth(req, analyzer);
-            default:
-                return analyzeFunctionLength(req, analyzer);
+    /**
+     * 多语言入口：只遍历一次目录，按扩展名把每个文件分派给对应的 CodeAnalyzer，
+     * 返回 语言 -> 结果（顺序与 req.languages 一致）
+     */
+    public Map<Language, AnalyzeResult> analyzeAll(AnalyzeRequest req) {
+        if (req == null)
+            throw new IllegalArgumentException("请求不能为空");
+        Set<Language> langs = req.languages;
+        if (langs == null || langs.isEmpty()) {
+            if (req.language == null)
+                throw new IllegalArgumentException("languages 不能为空");
+            langs = EnumSet.of(req.language);
         }
+        for (Language lang : langs) {
+            if (analyzers.get(lang) == null)
+                throw new IllegalArgumentException("不支持的语言: " + lang);
+        }
+        return analyzeLanguages(req, langs);
     }
-    
-    /** 代码量统计*/
-    private AnalyzeResult analyzeCodeMetrics(AnalyzeRequest req, CodeAnalyzer analyzer) {
-        CodeMetrics totalMetrics = new CodeMetrics();
-        
-        if (req.files != null) {
+
+    /** 一次分析运行的上下文：由请求推导出的开关和共享资源 */
+    private static class RunContext {
+        final AnalyzeRequest req;
+        final boolean wantMetrics;
+        final boolean wantFunctions;
+        final boolean wantHash;
+        // DEDUP_REUSE 且非流式：复用结果需保留每种内容的单文件结果，流式汇总时为保持内存有界不保留
+        final boolean reuseResults;
+        // DEDUP_REUSE：每种语言 内容指纹 -> 第一个该内容文件及其结果
+        // DEDUP_REPORT：每种语言 内容指纹 -> 已解析该内容的最靠前文件（不带结果）
+        final Map<Language, Map<ContentHash, ContentClaim>> claims = new EnumMap<>(Language.class);
+        // DEDUP_REPORT：按文件顺序合并时记录，只由合并线程访问
+        final Map<Language, Map<ContentHash, SourceFile>> firstSeen = new EnumMap<>(Language.class);
+        final Map<SourceFile, SourceFile> duplicateOf = new HashMap<>();
+        final Map<Language, Map<String, List<String>>> duplicates = new EnumMap<>(Language.class);
+        final PathFilter filter;           // 目录遍历的过滤规则，没有时为 null
+        // 进度计数
+        final long startNanos = System.nanoTime();
+        final AtomicInteger filesDiscovered = new AtomicInteger();
+        final AtomicInteger filesDone = new AtomicInteger();
+        final AtomicLong bytesProcessed = new AtomicLong();
+        final AtomicLong nextReportNanos = new AtomicLong(startNanos);
+        volatile boolean discoveryDone;
+
+        RunContext(AnalyzeRequest req) {
+            this.req = req;
+            this.wantMetrics = req.mode == MODE_CODE_METRICS || req.mode == MODE_BOTH;
+            this.wantFunctions = req.mode != MODE_CODE_METRICS;
+            this.reuseResults = req.dedup == DEDUP_REUSE && !req.streaming;
+            this.wantHash = req.dedup == DEDUP_REPORT || reuseResults;
+            this.filter = PathFilter.of(req);
+            if (wantHash) {
+                for (Language lang : Language.values()) claims.put(lang, new ConcurrentHashMap<>());
+            }
+        }
+
+        /** 语言级累加器（流式模式下只保留汇总，列式模式下明细存入 FunctionTable） */
+        Accumulator newAccumulator() {
+            if (req.streaming) return new Accumulator(new StreamingAggregate(req.topK), null);
+            if (req.columnar) return new Accumulator(null, new FunctionTable());
+            return new Accumulator();
+        }
+
+        void checkCancelled() {
+            if (req.cancel != null) req.cancel.throwIfCancelled();
+        }
+
+        void fileDiscovered() {
+            filesDiscovered.incrementAndGet();
+            reportProgress(false);
+        }
+
+        void discoveryDone() {
+            discoveryDone = true;
+            reportProgress(filesDiscovered.get() == 0);
+        }
+
+        void fileDone(long bytes) {
+            if (bytes > 0) bytesProcessed.addAndGet(bytes);
+            boolean last = filesDone.incrementAndGet() == filesDiscovered.get() && discoveryDone;
+            reportProgress(last);
+        }
+
+        /** 距上次回调超过间隔（或 force）时回调一次；用 synchronized 保证监听器不被并发调用 */
+        void reportProgress(boolean force) {
+            ProgressListener listener = req.progress;
+            if (listener == null) return;
+            long now = System.nanoTime();
+            long next = nextReportNanos.get();
+            if (!force && (now - next < 0 || !nextReportNanos.compareAndSet(next, now + PROGRESS_INTERVAL_NANOS))) {
+                return;
+            }
+            synchronized (this) {
+                Progress p = new Progress();
+                p.filesDiscovered = filesDiscovered.get();
+                p.discoveryDone = discoveryDone;
+                p.filesDone = filesDone.get();
+                p.bytesProcessed = bytesProcessed.get();
+                p.elapsedNanos = System.nanoTime() - startNanos;
+                listener.onProgress(p);
+            }
+        }
+    }
+
+    private Map<Language, AnalyzeResult> analyzeLanguages(AnalyzeRequest req, Set<Language> langs) {
+        if (req.repository == null) return analyzeLanguages(req, langs, null);
+        try (GitRepository repo = GitRepository.open(Paths.get(req.repository))) {
+            return analyzeLanguages(req, langs, repo);
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取仓库失败: " + req.repository, e);
+        }
+    }
+
+    private Map<Language, AnalyzeResult> analyzeLanguages(AnalyzeRequest req, Set<Language> langs,
+                                                          GitRepository repo) {
+        RunContext ctx = new RunContext(req);
+
+        List<SourceFile> sources = new ArrayList<>();
+        // 内存代码：没有扩展名可判定，只归到单语言请求的 language 上
+        if (req.files != null && req.language != null && langs.contains(req.language)) {
             for (InMemoryFile f : req.files) {
                 if (f == null || f.code == null) continue;
                 String path = (f.path == null || f.path.isBlank()) ? "<memory>" : f.path;
-                CodeMetrics metrics = analyzer.analyzeCodeMetrics(f.code, path);
-                totalMetrics.merge(metrics);
+                sources.add(new SourceFile(path, f.code, req.language));
+                ctx.fileDiscovered();
             }
         }
-        if (req.paths != null) {
-            for (String p : req.paths) {
-                if (p == null || p.isBlank()) continue;
-                Path path = Paths.get(p);
-                if (Files.isDirectory(path)) {
-                    try {
-                        Files.walk(path)
-                                .filter(fp -> matchExt(fp, req.language))
-                                .forEach(fp -> {
-                                    CodeMetrics metrics = readAndAnalyzeMetrics(analyzer, fp);
-                                    totalMetrics.merge(metrics);
-                                });
-                    } catch (IOException ignored) {}
-                } else if (Files.isRegularFile(path) && matchExt(path, req.language)) {
-                    CodeMetrics metrics = readAndAnalyzeMetrics(analyzer, path);
-                    totalMetrics.merge(metrics);
+        sources.addAll(repo != null ? collectGitFiles(repo, req, langs, ctx) : collectFiles(req.paths, langs, ctx));
+        ctx.discoveryDone();
+
+        int parallelism = req.parallelism <= 0
+                ? Runtime.getRuntime().availableProcessors() : req.parallelism;
+        Map<Language, Accumulator> acc;
+        if (req.pipeline) {
+            acc = analyzePipelined(sources, ctx, parallelism);
+        } else if (parallelism == 1 || sources.size() < 2) {
+            acc = analyzeRange(sources, 0, sources.size(), ctx);
+        } else if (req.dedup == DEDUP_REPORT) {
+            // 重复文件在按文件顺序合并时判定，需要逐个文件有序合并的流水线路径
+            acc = analyzePipelined(sources, ctx, parallelism);
+        } else {
+            ForkJoinPool pool = new ForkJoinPool(parallelism);
+            try {
+                int leafSize = Math.max(1, sources.size() / (parallelism * LEAF_SPLIT_FACTOR));
+                acc = pool.invoke(new AnalyzeTask(sources, 0, sources.size(), leafSize, ctx));
+            } finally {
+                pool.shutdown();
+            }
+        }
+
+        Map<Language, AnalyzeResult> results = new LinkedHashMap<>();
+        for (Language lang : langs) {
+            AnalyzeResult result = toResult(acc.getOrDefault(lang, ctx.newAccumulator()), req.mode);
+            if (req.dedup == DEDUP_REPORT) {
+                result.duplicates = ctx.duplicates.getOrDefault(lang, new LinkedHashMap<>());
+            }
+            results.put(lang, result);
+        }
+        return results;
+    }
+
+    /** 顺序分析 sources[from, to)，每种语言一个累加器 */
+    private Map<Language, Accumulator> analyzeRange(List<SourceFile> sources, int from, int to,
+                                                    RunContext ctx) {
+        Map<Language, Accumulator> acc = new EnumMap<>(Language.class);
+        for (int i = from; i < to; i++) {
+            SourceFile sf = sources.get(i);
+            mergeFile(acc, sf, processFile(sf, i, ctx), ctx);
+        }
+        return acc;
+    }
+
+    /**
+     * 按文件顺序把单个文件的结果并入 acc。DEDUP_REPORT 在这里判重：与更靠前的文件内容指纹
+     * （128 位哈希 + 长度）相同的文件不计入，记入 duplicates
+     */
+    private void mergeFile(Map<Language, Accumulator> acc, SourceFile sf, Accumulator one, RunContext ctx) {
+        if (one == null) return;
+        if (ctx.req.dedup == DEDUP_REPORT) {
+            SourceFile original = one.duplicateOf;
+            if (original == null && one.hash != null) {
+                SourceFile first = ctx.firstSeen.computeIfAbsent(sf.language, l -> new HashMap<>())
+                        .putIfAbsent(one.hash, sf);
+                // 并行时靠后的副本可能先被解析，此时在这里判重
+                if (first != null) original = first;
+            }
+            if (original != null) {
+                original = ctx.duplicateOf.getOrDefault(original, original);
+                ctx.duplicateOf.put(sf, original);
+                ctx.duplicates.computeIfAbsent(sf.language, l -> new LinkedHashMap<>())
+                        .computeIfAbsent(original.displayPath, o -> new ArrayList<>()).add(sf.displayPath);
+                return;
+            }
+        }
+        acc.computeIfAbsent(sf.language, l -> ctx.newAccumulator()).merge(one);
+    }
+
+    /**
+     * 流水线模式：读取阶段在 I/O 线程池上执行，受 maxInFlightBytes 字节预算约束（预算用尽时读取线程阻塞），
+     * 解析阶段在 parallelism 个 CPU 线程上执行；按文件顺序合并，结果与顺序路径一致。
+     * 只提交合并位置之后一个窗口内的文件，已分析完、等待合并的单个文件结果（含函数明细）不超过窗口大小
+     */
+    private Map<Language, Accumulator> analyzePipelined(List<SourceFile> sources, RunContext ctx,
+                                                        int parallelism) {
+        AnalyzeRequest req = ctx.req;
+        PipelineStats stats = req.pipelineStats != null ? req.pipelineStats : new PipelineStats();
+        int budgetBytes = (int) Math.max(1, Math.min(Integer.MAX_VALUE, req.maxInFlightBytes));
+        Semaphore budget = new Semaphore(budgetBytes);
+        ExecutorService readers = Executors.newFixedThreadPool(Math.max(1, req.ioThreads));
+        ExecutorService parsers = Executors.newFixedThreadPool(parallelism);
+        int window = PIPELINE_WINDOW_FACTOR * (Math.max(1, req.ioThreads) + parallelism);
+        try {
+            // 按提交顺序排队：队首为下一个要合并的文件，合并一个就提交下一个
+            Deque<CompletableFuture<Accumulator>> pending = new ArrayDeque<>(window);
+            int submitted = 0;
+            for (; submitted < Math.min(window, sources.size()); submitted++) {
+                pending.add(submitStages(sources, submitted, readers, parsers, budget, budgetBytes, stats, ctx));
+            }
+
+            Map<Language, Accumulator> acc = new EnumMap<>(Language.class);
+            for (int i = 0; i < sources.size(); i++) {
+                Accumulator one;
+                try {
+                    one = pending.poll().join();
+                } catch (CompletionException e) {
+                    if (e.getCause() instanceof RuntimeException re) throw re;
+                    if (e.getCause() instanceof Error err) throw err;
+                    throw e;
+                }
+                if (submitted < sources.size()) {
+                    pending.add(submitStages(sources, submitted++, readers, parsers, budget, budgetBytes, stats, ctx));
                 }
+                mergeFile(acc, sources.get(i), one, ctx);
             }
+            return acc;
+        } finally {
+            readers.shutdownNow();
+            parsers.shutdownNow();
         }
-        
-        AnalyzeResult result = new AnalyzeResult();
-        result.codeMetrics = totalMetrics;
-        return result;
     }
-    
-    /** 函数长度统计 */
-    private AnalyzeResult analyzeFunctionLength(AnalyzeRequest req, CodeAnalyzer analyzer) {
-        List<FunctionStat> all = new ArrayList<>();
 
-        if (req.files != null) {
-            for (InMemoryFile f : req.files) {
-                if (f == null || f.code == null) continue;
-                String path = (f.path == null || f.path.isBlank()) ? "<memory>" : f.path;
-                all.addAll(analyzer.analyze(f.code, path));
+    private CompletableFuture<Accumulator> submitStages(List<SourceFile> sources, int index, ExecutorService readers,
+                                                        ExecutorService parsers, Semaphore budget, int budgetBytes,
+                                                        PipelineStats stats, RunContext ctx) {
+        SourceFile sf = sources.get(index);
+        stats.submitted.incrementAndGet();
+        return CompletableFuture
+                .supplyAsync(() -> readStage(sf, budget, budgetBytes, stats, ctx), readers)
+                .thenApplyAsync(read -> parseStage(sf, index, read, budget, stats, ctx), parsers);
+    }
+
+    /** 读取阶段产物：源码 + 占用的字节预算；命中缓存时直接携带结果 */
+    private static class ReadSource {
+        final SourceContent content;
+        final int permits;
+        final CacheKey cacheKey;
+        final Accumulator cached;
+
+        ReadSource(SourceContent content, int permits, CacheKey cacheKey, Accumulator cached) {
+            this.content = content;
+            this.permits = permits;
+            this.cacheKey = cacheKey;
+            this.cached = cached;
+        }
+    }
+
+    private ReadSource readStage(SourceFile sf, Semaphore budget, int budgetBytes, PipelineStats stats,
+                                 RunContext ctx) {
+        stats.readStarted.incrementAndGet();
+        try {
+            ctx.checkCancelled();
+            CacheKey key = cacheKey(sf, ctx);
+            Accumulator cached = lookupCache(sf, key, ctx);
+            if (cached != null) return new ReadSource(null, 0, key, cached);
+
+            long size;
+            if (sf.code != null) {
+                size = sf.code.length();
+            } else if (sf.blob != null) {
+                try {
+                    size = sf.repo.objectSize(sf.blob);
+                } catch (IOException e) {
+                    return new ReadSource(null, 0, null, null);
+                }
+            } else if (key != null) {
+                size = key.size;
+            } else {
+                try {
+                    size = Files.size(sf.file);
+                } catch (IOException e) {
+                    return new ReadSource(null, 0, null, null);
+                }
+            }
+            int permits = (int) Math.max(1, Math.min(size, budgetBytes));
+            try {
+                budget.acquire(permits);
+            } catch (InterruptedException e) {
+                // 分析已中止（线程池被关闭）
+                Thread.currentThread().interrupt();
+                return new ReadSource(null, 0, null, null);
+            }
+            stats.inFlightBytes.addAndGet(permits);
+            SourceContent content = readSource(sf, ctx.wantMetrics || ctx.wantHash);
+            if (content == null) {
+                budget.release(permits);
+                stats.inFlightBytes.addAndGet(-permits);
+                return new ReadSource(null, 0, null, null);
+            }
+            return new ReadSource(content, permits, key, null);
+        } finally {
+            stats.readDone.incrementAndGet();
+        }
+    }
+
+    private Accumulator parseStage(SourceFile sf, int index, ReadSource read, Semaphore budget, PipelineStats stats,
+                                   RunContext ctx) {
+        stats.parseStarted.incrementAndGet();
+        try {
+            if (read.cached != null) return read.cached;
+            if (read.content == null) return null;
+            ctx.checkCancelled();
+            return analyzeContent(sf, index, read.content, read.cacheKey, ctx);
+        } finally {
+            ctx.fileDone(read.content != null ? read.content.size() : 0);
+            if (read.permits > 0) {
+                budget.release(read.permits);
+                stats.inFlightBytes.addAndGet(-read.permits);
             }
+            stats.parseDone.incrementAndGet();
         }
+    }
+
+    /**
+     * 并行分析任务：把文件区间二分给工作线程（work-stealing），
+     * 每个叶子任务有自己的累加器，合并时始终“左半 + 右半”，因此结果与顺序路径完全一致
+     */
+    private class AnalyzeTask extends RecursiveTask<Map<Language, Accumulator>> {
+        private static final long serialVersionUID = 1L;
+
+        private final List<SourceFile> sources;
+        private final int from;
+        private final int to;
+        private final int leafSize;
+        private final RunContext ctx;
+
+        AnalyzeTask(List<SourceFile> sources, int from, int to, int leafSize, RunContext ctx) {
+            this.sources = sources;
+            this.from = from;
+            this.to = to;
+            this.leafSize = leafSize;
+            this.ctx = ctx;
+        }
+
+        @Override
+        protected Map<Language, Accumulator> compute() {
+            if (to - from <= leafSize) {
+                return analyzeRange(sources, from, to, ctx);
+            }
+            int mid = (from + to) >>> 1;
+            AnalyzeTask left = new AnalyzeTask(sources, from, mid, leafSize, ctx);
+            AnalyzeTask right = new AnalyzeTask(sources, mid, to, leafSize, ctx);
+            left.fork();
+            Map<Language, Accumulator> rightAcc = right.compute();
+            Map<Language, Accumulator> leftAcc = left.join();
+            for (Map.Entry<Language, Accumulator> e : rightAcc.entrySet()) {
+                Accumulator l = leftAcc.get(e.getKey());
+                if (l == null) leftAcc.put(e.getKey(), e.getValue());
+                else l.merge(e.getValue());
+            }
+            return leftAcc;
+        }
+    }
+
+    /** 按模式把累加结果转换为返回体（与原先三种模式的字段保持一致） */
+    private AnalyzeResult toResult(Accumulator a, int mode) {
+        if (mode == MODE_CODE_METRICS) {
+            AnalyzeResult result = new AnalyzeResult();
+            result.codeMetrics = a.metrics;
+            return result;
+        }
+        AnalyzeResult functionLengthResult;
+        if (a.aggregate != null) {
+            functionLengthResult = new AnalyzeResult();
+            functionLengthResult.summary = a.aggregate.summary();
+            functionLengthResult.byFile = a.aggregate.byFile();
+            functionLengthResult.functions = a.aggregate.topFunctions();
+        } else if (a.table != null) {
+            functionLengthResult = CodeStatsCore.buildResult(a.table);
+        } else {
+            functionLengthResult = CodeStatsCore.buildResult(a.functions);
+        }
+        if (mode == MODE_BOTH) {
+            AnalyzeResult result = new AnalyzeResult();
+            result.codeMetrics = a.metrics;
+            result.summary = functionLengthResult.summary;
+            result.functions = functionLengthResult.functions;
+            result.table = functionLengthResult.table;
+            return result;
+        }
+        return functionLengthResult;
+    }
+
+    /**
+     * 遍历路径，收集所有扩展名属于 langs 的文件（每个目录只遍历一次）。
+     * 直接指定的文件不做过滤；被排除的目录返回 SKIP_SUBTREE，不再列出其内容
+     */
+    private List<SourceFile> collectFiles(List<String> paths, Set<Language> langs, RunContext ctx) {
+        List<SourceFile> out = new ArrayList<>();
+        if (paths == null) return out;
+        for (String p : paths) {
+            if (p == null || p.isBlank()) continue;
+            Path path = Paths.get(p);
+            if (Files.isDirectory(path)) {
+                PathFilter filter = ctx.filter;
+                try {
+                    Files.walkFileTree(path, new SimpleFileVisitor<>() {
+                        @Override
+                        public FileVisitResult preVisitDirectory(Path dir, BasicFileAttributes attrs) {
+                            ctx.checkCancelled();
+                            if (filter != null && filter.excluded(path, dir, true)) return FileVisitResult.SKIP_SUBTREE;
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                            Language lang = languageOf(file);
+                            if (lang == null || !langs.contains(lang)) return FileVisitResult.CONTINUE;
+                            if (filter != null && (filter.excluded(path, file, false) || !filter.included(path, file))) {
+                                return FileVisitResult.CONTINUE;
+                            }
+                            out.add(new SourceFile(file, lang));
+                            ctx.fileDiscovered();
+                            return FileVisitResult.CONTINUE;
+                        }
+
+                        @Override
+                        public FileVisitResult visitFileFailed(Path file, IOException exc) {
+                            return FileVisitResult.CONTINUE; // 跳过无法读取的文件和目录
+                        }
+                    });
+                } catch (IOException ignored) {}
+            } else if (Files.isRegularFile(path)) {
+                Language lang = languageOf(path);
+                if (lang != null && langs.contains(lang)) {
+                    out.add(new SourceFile(path, lang));
+                    ctx.fileDiscovered();
+                }
+            }
+        }
+        return out;
+    }
+
+    /**
+     * 仓库模式：按树的顺序收集 revision 中扩展名属于 langs 的文件（只读对象库，不访问工作区）。
+     * req.paths 为仓库内的文件或目录（以 / 分隔，相对仓库根目录），为空时取整个仓库；
+     * includes / excludes 相对仓库根目录，ignoreFiles 不适用（已提交的文件即为要统计的文件）
+     */
+    private List<SourceFile> collectGitFiles(GitRepository repo, AnalyzeRequest req, Set<Language> langs,
+                                             RunContext ctx) {
+        List<String> prefixes = new ArrayList<>();
         if (req.paths != null) {
             for (String p : req.paths) {
                 if (p == null || p.isBlank()) continue;
-                Path path = Paths.get(p);
-                if (Files.isDirectory(path)) {
-                    try {
-                        Files.walk(path)
-                                .filter(fp -> matchExt(fp, req.language))
-                                .forEach(fp -> all.addAll(readAndAnalyze(analyzer, fp)));
-                    } catch (IOException ignored) {}
-                } else if (Files.isRegularFile(path) && matchExt(path, req.language)) {
-                    all.addAll(readAndAnalyze(analyzer, path));
-                }
+                String prefix = p.replace('\\', '/');
+                while (prefix.startsWith("./")) prefix = prefix.substring(2);
+                while (prefix.endsWith("/")) prefix = prefix.substring(0, prefix.length() - 1);
+                prefixes.add(prefix);
             }
         }
+        // 树中的路径名按字符串处理，不转换为 Path（非 ASCII 或含 : * ? 等字符的名字在某些平台上不是合法的 Path）
+        PathFilter filter = PathFilter.of(req.includes, req.excludes, false);
+        List<SourceFile> out = new ArrayList<>();
+        try {
+            GitRepository.ObjectId tree = repo.readCommit(repo.resolve(req.revision)).tree;
+            repo.walkTree(tree, new GitRepository.TreeVisitor() {
+                @Override
+                public boolean enterDirectory(String path) {
+                    ctx.checkCancelled();
+                    if (!prefixes.isEmpty() && !underAny(path, prefixes, true)) return false;
+                    return filter == null || !filter.excluded(path, true);
+                }
 
-        return CodeStatsCore.buildResult(all);
+                @Override
+                public void visitFile(String path, GitRepository.TreeEntry entry) {
+                    Language lang = languageOf(path);
+                    if (lang == null || !langs.contains(lang)) return;
+                    if (!prefixes.isEmpty() && !underAny(path, prefixes, false)) return;
+                    if (filter != null && (filter.excluded(path, false) || !filter.included(path))) return;
+                    out.add(new SourceFile(path, repo, entry.id, lang));
+                    ctx.fileDiscovered();
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException("读取仓库失败: " + req.repository, e);
+        }
+        return out;
     }
-    
-    /** 都统计 */
-    private AnalyzeResult analyzeBoth(AnalyzeRequest req, CodeAnalyzer analyzer) {
-        // 先执行代码量
-        AnalyzeResult codeMetricsResult = analyzeCodeMetrics(req, analyzer);
-        
-        // 再执行函数长度
-        AnalyzeResult functionLengthResult = analyzeFunctionLength(req, analyzer);
-        
-        // 合并结果
-        AnalyzeResult result = new AnalyzeResult();
-        result.codeMetrics = codeMetricsResult.codeMetrics;
-        result.summary = functionLengthResult.summary;
-        result.functions = functionLengthResult.functions;
-        
-        return result;
-    }
-
-    /** 判断文件扩展名是否匹配语言类型 */
-    private boolean matchExt(Path path, Language lang) {
-        String name = path.getFileName().toString().toLowerCase(Locale.ROOT);
-        return switch (lang) {
-            case JAVA -> name.endsWith(".java");
-            case PYTHON -> name.endsWith(".py");
-            case C -> name.endsWith(".c") || name.endsWith(".h");
-            case CPP -> name.endsWith(".cpp") || name.endsWith(".cc") || 
-                       name.endsWith(".cxx") || name.endsWith(".hpp") || 
-                       name.endsWith(".hh") || name.endsWith(".hxx");
-            case CSHARP -> name.endsWith(".cs");
+
+    /** path 是否为某个前缀本身或在其下；directory 为 true 时，前缀在 path 之下也算（需要继续进入） */
+    private static boolean underAny(String path, List<String> prefixes, boolean directory) {
+        for (String prefix : prefixes) {
+            if (prefix.isEmpty() || path.equals(prefix) || path.startsWith(prefix + "/")) return true;
+            if (directory && prefix.startsWith(path + "/")) return true;
+        }
+        return false;
+    }
+
+    /** 根据文件扩展名判定语言，不支持的扩展名返回 null */
+    static Language languageOf(Path path) {
+        Path fileName = path.getFileName();
+        return fileName == null ? null : languageOf(fileName.toString());
+    }
+
+    /** 同上，path 为以 / 分隔的路径字符串（例如 git 树中的路径），只看最后一段的扩展名 */
+    static Language languageOf(String path) {
+        String name = path.substring(path.lastIndexOf('/') + 1).toLowerCase(Locale.ROOT);
+        int dot = name.lastIndexOf('.');
+        if (dot < 0) return null;
+        return switch (name.substring(dot + 1)) {
+            case "java" -> Language.JAVA;
+            case "py" -> Language.PYTHON;
+            case "c", "h" -> Language.C;
+            case "cpp", "cc", "cxx", "hpp", "hh", "hxx" -> Language.CPP;
+            case "cs" -> Language.CSHARP;
+            default -> null;
         };
     }
 
-    /** 读取文件并分析函数 */
-    private List<FunctionStat> readAndAnalyze(CodeAnalyzer analyzer, Path fp) {
+    /** 分析单个文件（优先使用缓存），返回该文件的结果；读取失败的文件返回 null */
+    private Accumulator processFile(SourceFile sf, int index, RunContext ctx) {
+        ctx.checkCancelled();
+        long bytes = 0;
+        try {
+            CacheKey key = cacheKey(sf, ctx);
+            Accumulator cached = lookupCache(sf, key, ctx);
+            if (cached != null) return cached;
+            SourceContent content = readSource(sf, ctx.wantMetrics || ctx.wantHash);
+            if (content == null) return null;
+            bytes = content.size();
+            return analyzeContent(sf, index, content, key, ctx);
+        } finally {
+            ctx.fileDone(bytes);
+        }
+    }
+
+    /**
+     * 分析已读入的源码，分析后写入缓存；index 为文件在 sources 中的下标。
+     * DEDUP_REUSE：与已解析的文件内容指纹（128 位哈希 + 长度）相同时复用其结果，不再读取比较；
+     * DEDUP_REPORT：与登记的更靠前文件内容相同时不解析，返回只带 duplicateOf 的空结果
+     */
+    private Accumulator analyzeContent(SourceFile sf, int index, SourceContent content, CacheKey key,
+                                       RunContext ctx) {
+        ContentHash hash = null;
+        Map<ContentHash, ContentClaim> claims = null;
+        Accumulator one = null;
+        if (ctx.wantHash) {
+            hash = ContentHash.of(contentBytes(content));
+            claims = ctx.claims.get(sf.language);
+            if (ctx.reuseResults) {
+                ContentClaim template = claims.get(hash);
+                if (template != null) {
+                    one = restamp(template.result, sf.displayPath, ctx);
+                }
+            } else {
+                // 同一内容只由下标最小的文件解析；靠后的文件先到时也会解析，合并时再判重
+                ContentClaim mine = new ContentClaim(index, sf, null);
+                ContentClaim owner = claims.merge(hash, mine, (a, b) -> a.index <= b.index ? a : b);
+                if (owner != mine) {
+                    Accumulator duplicate = new Accumulator();
+                    duplicate.hash = hash;
+                    duplicate.duplicateOf = owner.source;
+                    return duplicate;
+                }
+            }
+        }
+        if (one == null) {
+            one = analyzeSource(sf, content, ctx);
+            if (one != null && ctx.reuseResults) {
+                claims.putIfAbsent(hash, new ContentClaim(index, sf, one));
+            }
+        }
+        if (one != null) one.hash = hash;
+        storeCache(key, one, hash, ctx);
+        return one;
+    }
+
+    /** 计算指纹所用的字节；内存代码按 UTF-8 编码 */
+    private static ByteBuffer contentBytes(SourceContent content) {
+        return content.bytes != null ? content.bytes : ByteBuffer.wrap(content.code.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /** 复制一份结果，函数的 filePath 换成 displayPath（displayPath 为 null 时用于写入缓存） */
+    private static Accumulator restamp(Accumulator src, String displayPath, RunContext ctx) {
+        Accumulator one = new Accumulator();
+        if (ctx.wantMetrics) one.metrics.merge(src.metrics);
+        if (ctx.wantFunctions) {
+            for (FunctionStat f : src.functions) {
+                one.functions.add(new FunctionStat(displayPath, f.qualName, f.startLine, f.endLine,
+                        f.isMethod, f.isNested, f.isAsync));
+            }
+        }
+        return one;
+    }
+
+    /** 缓存键：绝对路径 + 文件指纹 + 分析器版本 */
+    private static class CacheKey {
+        final String path;
+        final long size;
+        final long mtime;
+        final int analyzerVersion;
+
+        CacheKey(String path, long size, long mtime, int analyzerVersion) {
+            this.path = path;
+            this.size = size;
+            this.mtime = mtime;
+            this.analyzerVersion = analyzerVersion;
+        }
+    }
+
+    /** 未启用缓存或内存代码时返回 null */
+    private CacheKey cacheKey(SourceFile sf, RunContext ctx) {
+        if (ctx.req.cache == null || sf.file == null) return null;
         try {
-            String code = Files.readString(fp, StandardCharsets.UTF_8);
-            return analyzer.analyze(code, fp.toString());
+            BasicFileAttributes attrs = Files.readAttributes(sf.file, BasicFileAttributes.class);
+            return new CacheKey(sf.file.toAbsolutePath().toString(), attrs.size(),
+                    attrs.lastModifiedTime().to(TimeUnit.NANOSECONDS),
+                    analyzer(sf.language, ctx).version());
         } catch (IOException e) {
-            return List.of();
+            return null;
         }
     }
-    
-    /** 读取文件并分析代码量 */
-    private CodeMetrics readAndAnalyzeMetrics(CodeAnalyzer analyzer, Path fp) {
+
+    /** 缓存命中时按当前路径重新填写 filePath，返回该文件的结果 */
+    private Accumulator lookupCache(SourceFile sf, CacheKey key, RunContext ctx) {
+        if (key == null) return null;
+        AnalysisCache.Entry e = ctx.req.cache.get(key.path, key.size, key.mtime, key.analyzerVersion,
+                ctx.wantMetrics, ctx.wantFunctions);
+        // DEDUP_REPORT 合并时按指纹判重，没有指纹的旧条目按未命中处理
+        if (e == null || (ctx.req.dedup == DEDUP_REPORT && e.hash == null)) return null;
+        Accumulator one = new Accumulator();
+        if (ctx.wantMetrics) one.metrics.merge(e.metrics);
+        if (ctx.wantFunctions) one.functions.addAll(e.functions);
+        one = restamp(one, sf.displayPath, ctx);
+        one.hash = e.hash;
+        return one;
+    }
+
+    private void storeCache(CacheKey key, Accumulator one, ContentHash hash, RunContext ctx) {
+        if (key == null || one == null) return;
+        Accumulator stored = restamp(one, null, ctx);
+        ctx.req.cache.put(key.path, key.size, key.mtime, key.analyzerVersion,
+                ctx.wantMetrics ? stored.metrics : null, ctx.wantFunctions ? stored.functions : null, hash);
+    }
+
+    /** 读入的源码：需要统计代码量时保留原始字节，只统计函数时直接解码为文本 */
+    private static class SourceContent {
+        final ByteBuffer bytes;
+        private String code;
+
+        SourceContent(ByteBuffer bytes, String code) {
+            this.bytes = bytes;
+            this.code = code;
+        }
+
+        /** 解码后的文本；与 Files.readString 一样遇到非法 UTF-8 时抛出异常 */
+        String text() throws CharacterCodingException {
+            if (code == null) code = StandardCharsets.UTF_8.newDecoder().decode(bytes.duplicate()).toString();
+            return code;
+        }
+
+        /** 读入的大小：字节数，内存代码按字符数计 */
+        long size() {
+            return bytes != null ? bytes.remaining() : code.length();
+        }
+    }
+
+    /**
+     * 取得源码，读取失败返回 null。
+     * 统计代码量时读原始字节（大文件用内存映射），由行分类器直接处理，不解码为 String
+     */
+    private SourceContent readSource(SourceFile sf, boolean wantBytes) {
+        if (sf.code != null) return new SourceContent(null, sf.code);
         try {
-            String code = Files.readString(fp, StandardCharsets.UTF_8);
-            return analyzer.analyzeCodeMetrics(code, fp.toString());
+            if (sf.blob != null) return new SourceContent(ByteBuffer.wrap(sf.repo.readBlob(sf.blob)), null);
+            if (!wantBytes) return new SourceContent(null, Files.readString(sf.file, StandardCharsets.UTF_8));
+            try (FileChannel ch = FileChannel.open(sf.file, StandardOpenOption.READ)) {
+                long size = ch.size();
+                if (size >= MMAP_THRESHOLD_BYTES && size <= Integer.MAX_VALUE) {
+                    return new SourceContent(ch.map(FileChannel.MapMode.READ_ONLY, 0, size), null);
+                }
+            }
+            return new SourceContent(ByteBuffer.wrap(Files.readAllBytes(sf.file)), null);
         } catch (IOException e) {
-            return new CodeMetrics();
+            return null;
+        }
+    }
+
+    /** 分析已读入的源码；不是合法 UTF-8 时返回 null（与 Files.readString 读取失败时一样跳过该文件） */
+    private Accumulator analyzeSource(SourceFile sf, SourceContent content, RunContext ctx) {
+        CodeAnalyzer analyzer = analyzer(sf.language, ctx);
+        Accumulator one = new Accumulator();
+        if (ctx.wantMetrics) {
+            CodeMetrics metrics = content.bytes != null
+                    ? analyzer.analyzeCodeMetrics(content.bytes.duplicate(), sf.displayPath)
+                    : analyzer.analyzeCodeMetrics(content.code, sf.displayPath);
+            if (metrics == null) return null;
+            one.metrics.merge(metrics);
+        }
+        if (ctx.wantFunctions) {
+            String code;
+            try {
+                code = content.text();
+            } catch (CharacterCodingException e) {
+                return null;
+            }
+            one.functions.addAll(analyzer.analyze(code, sf.displayPath));
         }
+        return one;
     }
 
 }
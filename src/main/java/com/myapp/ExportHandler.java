@@ -281,6 +281,9 @@ public class ExportHandler {
                     functionStats.put("min", result.summary.min);
                     functionStats.put("mean", result.summary.mean);
                     functionStats.put("median", result.summary.median);
+                    functionStats.put("p90", result.summary.p90);
+                    functionStats.put("p95", result.summary.p95);
+                    functionStats.put("p99", result.summary.p99);
                     languageData.put("functionStats", functionStats);
                     
                     // 累计总计
@@ -546,17 +549,18 @@ public class ExportHandler {
             // 写入头部
             writer.println("文件路径,函数名,起始行,结束行,函数长度,是否为方法,是否为嵌套,是否为异步");
             
-            // 写入数据
-            for (CodeStatsCore.FunctionStat func : result.functions) {
+            // 写入数据（按列读取，不为每个函数创建对象）
+            CodeStatsCore.FunctionTable table = result.functionTable();
+            for (int i = 0; i < table.size(); i++) {
                 writer.printf("%s,%s,%d,%d,%d,%s,%s,%s%n",
-                    func.filePath,
-                    func.qualName,
-                    func.startLine,
-                    func.endLine,
-                    func.length,
-                    func.isMethod,
-                    func.isNested,
-                    func.isAsync);
+                    table.filePath(i),
+                    table.qualName(i),
+                    table.startLine(i),
+                    table.endLine(i),
+                    table.length(i),
+                    table.isMethod(i),
+                    table.isNested(i),
+                    table.isAsync(i));
             }
         }
     }
@@ -580,16 +584,17 @@ public class ExportHandler {
             
             // 添加函数列表
             List<Map<String, Object>> functions = new ArrayList<>();
-            for (CodeStatsCore.FunctionStat func : result.functions) {
+            CodeStatsCore.FunctionTable table = result.functionTable();
+            for (int i = 0; i < table.size(); i++) {
                 Map<String, Object> funcMap = new LinkedHashMap<>();
-                funcMap.put("filePath", func.filePath);
-                funcMap.put("qualName", func.qualName);
-                funcMap.put("startLine", func.startLine);
-                funcMap.put("endLine", func.endLine);
-                funcMap.put("length", func.length);
-                funcMap.put("isMethod", func.isMethod);
-                funcMap.put("isNested", func.isNested);
-                funcMap.put("isAsync", func.isAsync);
+                funcMap.put("filePath", table.filePath(i));
+                funcMap.put("qualName", table.qualName(i));
+                funcMap.put("startLine", table.startLine(i));
+                funcMap.put("endLine", table.endLine(i));
+                funcMap.put("length", table.length(i));
+                funcMap.put("isMethod", table.isMethod(i));
+                funcMap.put("isNested", table.isNested(i));
+                funcMap.put("isAsync", table.isAsync(i));
                 functions.add(funcMap);
             }
             json.put("functions", functions);
@@ -617,16 +622,17 @@ public class ExportHandler {
         
         // 填充数据
         int rowNum = 1;
-        for (CodeStatsCore.FunctionStat func : result.functions) {
+        CodeStatsCore.FunctionTable table = result.functionTable();
+        for (int i = 0; i < table.size(); i++) {
             Row row = sheet.createRow(rowNum++);
-            row.createCell(0).setCellValue(func.filePath);
-            row.createCell(1).setCellValue(func.qualName);
-            row.createCell(2).setCellValue(func.startLine);
-            row.createCell(3).setCellValue(func.endLine);
-            row.createCell(4).setCellValue(func.length);
-            row.createCell(5).setCellValue(func.isMethod);
-            row.createCell(6).setCellValue(func.isNested);
-            row.createCell(7).setCellValue(func.isAsync);
+            row.createCell(0).setCellValue(table.filePath(i));
+            row.createCell(1).setCellValue(table.qualName(i));
+            row.createCell(2).setCellValue(table.startLine(i));
+            row.createCell(3).setCellValue(table.endLine(i));
+            row.createCell(4).setCellValue(table.length(i));
+            row.createCell(5).setCellValue(table.isMethod(i));
+            row.createCell(6).setCellValue(table.isNested(i));
+            row.createCell(7).setCellValue(table.isAsync(i));
         }
         
         // 自动调整列宽
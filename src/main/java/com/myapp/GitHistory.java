@@ -0,0 +1,581 @@
+package com.myapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+import com.myapp.CodeStatsCore.AnalyzeResult;
+import com.myapp.CodeStatsCore.CodeMetrics;
+import com.myapp.CodeStatsCore.FunctionStat;
+import com.myapp.CodeStatsCore.Language;
+import com.myapp.CodeStatsCore.Summary;
+
+/**
+ * 基于 git 对象库的历史分析：单个文件的结果按 文件对象名（blob id）缓存，内容相同的文件在任何提交、
+ * 任何路径下都只解析一次；每个提交的汇总（各语言的 CodeMetrics + 函数长度直方图）也会缓存。
+ * 给定 AnalysisCache 时，单个文件的结果还按 对象名 + 分析器版本 持久化，之后的运行（例如每个合并请求
+ * 一次的 diff）不再读取和解析基准提交中未变化的文件。
+ *
+ * diff() 按对象名比较两棵树（相同的子树直接跳过），只解析新增 / 修改的文件，
+ * 在基准提交的汇总上减去旧文件、加上新文件得到新提交的汇总，开销与差异大小成正比。
+ *
+ * history() 沿提交图取最近的若干个提交，各提交与第一个父提交的树比较并行进行，
+ * 所有变化文件中缓存没有的一起并行解析，再按父提交在前的顺序逐个累加出每个提交的汇总。
+ *
+ * 总是同时统计代码量和函数长度。与 CodeStatsService 不同，无法解析的文件（例如语法错误的 Java 文件）
+ * 不会中止分析：仍计入代码量，函数记为 0 个，个数见 failedFiles()。
+ */
+public class GitHistory implements Closeable {
+
+    // 文件变化类型
+    public static final int ADDED = 1;
+    public static final int MODIFIED = 2;
+    public static final int DELETED = 3;
+
+    // 缓存的提交汇总个数上限
+    private static final int MAX_SNAPSHOTS = 64;
+
+    private final GitRepository repo;
+    private final boolean ownsRepository;
+    private final CodeStatsService service = new CodeStatsService();
+    private final int parallelism;
+    private final AnalysisCache cache;     // 可选：持久化的单个文件结果，没有时为 null
+    // 语言 -> 对象名 -> 单个文件的结果
+    private final Map<Language, Map<GitRepository.ObjectId, BlobResult>> blobs = new EnumMap<>(Language.class);
+    // 提交 + 语言集合 -> 汇总，按访问顺序淘汰
+    private final Map<String, Snapshot> snapshots = new LinkedHashMap<>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Snapshot> eldest) {
+            return size() > MAX_SNAPSHOTS;
+        }
+    };
+    private final AtomicInteger parsed = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+
+    /** 一个文件变化 */
+    public static class FileChange {
+        public String path;
+        public Language language;
+        public int kind;                          // ADDED / MODIFIED / DELETED
+        public GitRepository.ObjectId oldBlob;    // 新增时为 null
+        public GitRepository.ObjectId newBlob;    // 删除时为 null
+    }
+
+    /** 两个提交之间的差异：每种语言的 before / after / delta */
+    public static class DiffResult {
+        public String base;                                  // 基准提交
+        public String head;                                  // 目标提交
+        public Map<Language, AnalyzeResult> before;          // codeMetrics + summary
+        public Map<Language, AnalyzeResult> after;           // codeMetrics + summary
+        /** codeMetrics 为 after - before（可为负）；functions / summary 为新增和修改文件在 after 中的函数 */
+        public Map<Language, AnalyzeResult> delta;
+        public List<FileChange> changes;                     // 按路径排序
+        public int filesParsed;                              // 本次实际解析的文件数（其余命中缓存）
+    }
+
+    /** 历史序列中的一个提交 */
+    public static class HistoryPoint {
+        public String commit;                                // 提交号
+        public String author;
+        public long commitTime;                              // Unix 秒
+        public String subject;
+        public Map<Language, AnalyzeResult> results;         // codeMetrics + summary
+    }
+
+    /** 单个文件对象的结果（与路径无关）；functions 的 filePath 为 null */
+    private static final class BlobResult {
+        static final BlobResult SKIPPED = new BlobResult(null, new FunctionStat[0]);
+
+        final CodeMetrics metrics;       // 不是合法 UTF-8 时为 null（与磁盘分析一样不计入）
+        final FunctionStat[] functions;
+
+        BlobResult(CodeMetrics metrics, FunctionStat[] functions) {
+            this.metrics = metrics;
+            this.functions = functions;
+        }
+    }
+
+    /** 一个提交的汇总：各语言的代码量 + 函数长度直方图 */
+    private static final class Snapshot {
+        final Map<Language, CodeMetrics> metrics = new EnumMap<>(Language.class);
+        final Map<Language, Summary.Builder> lengths = new EnumMap<>(Language.class);
+
+        Snapshot(Set<Language> languages) {
+            for (Language lang : languages) {
+                metrics.put(lang, new CodeMetrics());
+                lengths.put(lang, new Summary.Builder());
+            }
+        }
+
+        Snapshot copy() {
+            Snapshot s = new Snapshot(metrics.keySet());
+            for (Language lang : metrics.keySet()) {
+                s.metrics.get(lang).merge(metrics.get(lang));
+                s.lengths.get(lang).merge(lengths.get(lang));
+            }
+            return s;
+        }
+
+        void add(Language lang, BlobResult r) {
+            if (r.metrics == null) return;
+            metrics.get(lang).merge(r.metrics);
+            Summary.Builder b = lengths.get(lang);
+            for (FunctionStat f : r.functions) b.add(f.length);
+        }
+
+        void remove(Language lang, BlobResult r) {
+            if (r.metrics == null) return;
+            metrics.get(lang).subtract(r.metrics);
+            Summary.Builder b = lengths.get(lang);
+            for (FunctionStat f : r.functions) b.remove(f.length);
+        }
+
+        AnalyzeResult result(Language lang) {
+            AnalyzeResult r = new AnalyzeResult();
+            r.codeMetrics = new CodeMetrics();
+            r.codeMetrics.merge(metrics.get(lang));
+            r.summary = lengths.get(lang).build();
+            return r;
+        }
+    }
+
+    /** 待分析的文件：语言 + 对象名 */
+    private static final class BlobRef {
+        final Language language;
+        final GitRepository.ObjectId id;
+
+        BlobRef(Language language, GitRepository.ObjectId id) {
+            this.language = language;
+            this.id = id;
+        }
+    }
+
+    private GitHistory(GitRepository repo, boolean ownsRepository, int parallelism, AnalysisCache cache) {
+        this.repo = repo;
+        this.ownsRepository = ownsRepository;
+        this.parallelism = parallelism <= 0 ? Runtime.getRuntime().availableProcessors() : parallelism;
+        this.cache = cache;
+        for (Language lang : Language.values()) blobs.put(lang, new ConcurrentHashMap<>());
+    }
+
+    /** 打开仓库；parallelism 为解析文件的线程数，<=0 为 CPU 核数 */
+    public static GitHistory open(Path repository, int parallelism) throws IOException {
+        return open(repository, parallelism, null);
+    }
+
+    /** 同上，单个文件的结果同时读写 cache（可为 null；close() 不关闭它） */
+    public static GitHistory open(Path repository, int parallelism, AnalysisCache cache) throws IOException {
+        return new GitHistory(GitRepository.open(repository), true, parallelism, cache);
+    }
+
+    /** 使用已打开的仓库（close() 不关闭它） */
+    public static GitHistory of(GitRepository repo, int parallelism) {
+        return new GitHistory(repo, false, parallelism, null);
+    }
+
+    public GitRepository repository() {
+        return repo;
+    }
+
+    /** 累计解析过的文件数（不含缓存命中） */
+    public int filesParsed() {
+        return parsed.get();
+    }
+
+    /** 累计解析失败（只计入代码量）的文件数 */
+    public int failedFiles() {
+        return failed.get();
+    }
+
+    @Override
+    public void close() {
+        for (Map<GitRepository.ObjectId, BlobResult> m : blobs.values()) m.clear();
+        synchronized (snapshots) {
+            snapshots.clear();
+        }
+        if (ownsRepository) repo.close();
+    }
+
+    // ---------- 单个提交 ----------
+
+    /** 某个修订的各语言汇总（codeMetrics + summary，不含函数明细） */
+    public Map<Language, AnalyzeResult> analyze(String revision, Set<Language> languages) throws IOException {
+        Set<Language> langs = languageSet(languages);
+        Snapshot s = snapshot(repo.readCommit(repo.resolve(revision)), langs);
+        Map<Language, AnalyzeResult> out = new LinkedHashMap<>();
+        for (Language lang : langs) out.put(lang, s.result(lang));
+        return out;
+    }
+
+    /** 取得提交的汇总：先查缓存，否则遍历整棵树（文件结果按对象名复用） */
+    private Snapshot snapshot(GitRepository.Commit commit, Set<Language> langs) throws IOException {
+        String key = snapshotKey(commit.id, langs);
+        synchronized (snapshots) {
+            Snapshot cached = snapshots.get(key);
+            if (cached != null) return cached;
+        }
+        List<BlobRef> files = new ArrayList<>();
+        repo.walkTree(commit.tree, (path, entry) -> {
+            Language lang = CodeStatsService.languageOf(path);
+            if (lang != null && langs.contains(lang)) files.add(new BlobRef(lang, entry.id));
+        });
+        BlobResult[] results = results(files);
+        Snapshot s = new Snapshot(langs);
+        for (int i = 0; i < files.size(); i++) s.add(files.get(i).language, results[i]);
+        cacheSnapshot(key, s);
+        return s;
+    }
+
+    private void cacheSnapshot(String key, Snapshot s) {
+        synchronized (snapshots) {
+            snapshots.put(key, s);
+        }
+    }
+
+    private static String snapshotKey(GitRepository.ObjectId commit, Set<Language> langs) {
+        return commit.hex() + langs;
+    }
+
+    private static Set<Language> languageSet(Set<Language> languages) {
+        return languages == null || languages.isEmpty() ? EnumSet.allOf(Language.class) : EnumSet.copyOf(languages);
+    }
+
+    // ---------- 两个提交之间的差异 ----------
+
+    /**
+     * 比较 base 和 head 两个修订：只解析新增 / 修改的文件（以及缓存中没有的旧版本），
+     * 在 base 的汇总上减去旧文件、加上新文件得到 head 的汇总
+     */
+    public DiffResult diff(String base, String head, Set<Language> languages) throws IOException {
+        Set<Language> langs = languageSet(languages);
+        GitRepository.Commit baseCommit = repo.readCommit(repo.resolve(base));
+        GitRepository.Commit headCommit = repo.readCommit(repo.resolve(head));
+        int parsedBefore = parsed.get();
+
+        List<FileChange> changes = new ArrayList<>();
+        diffTrees(baseCommit.tree, headCommit.tree, "", langs, changes);
+        changes.sort((a, b) -> a.path.compareTo(b.path));
+
+        // 旧版本和新版本一起解析（通常旧版本在计算 base 汇总时已经缓存）
+        List<BlobRef> refs = new ArrayList<>();
+        for (FileChange c : changes) {
+            if (c.oldBlob != null) refs.add(new BlobRef(c.language, c.oldBlob));
+            if (c.newBlob != null) refs.add(new BlobRef(c.language, c.newBlob));
+        }
+        Snapshot before = snapshot(baseCommit, langs);
+        BlobResult[] results = results(refs);
+
+        Snapshot after = before.copy();
+        Map<Language, List<FunctionStat>> changedFunctions = new EnumMap<>(Language.class);
+        for (Language lang : langs) changedFunctions.put(lang, new ArrayList<>());
+        int r = 0;
+        for (FileChange c : changes) {
+            if (c.oldBlob != null) after.remove(c.language, results[r++]);
+            if (c.newBlob != null) {
+                BlobResult now = results[r++];
+                after.add(c.language, now);
+                for (FunctionStat f : now.functions) {
+                    changedFunctions.get(c.language).add(new FunctionStat(c.path, f.qualName, f.startLine,
+                            f.endLine, f.isMethod, f.isNested, f.isAsync));
+                }
+            }
+        }
+        cacheSnapshot(snapshotKey(headCommit.id, langs), after);
+
+        DiffResult out = new DiffResult();
+        out.base = baseCommit.id.hex();
+        out.head = headCommit.id.hex();
+        out.before = new LinkedHashMap<>();
+        out.after = new LinkedHashMap<>();
+        out.delta = new LinkedHashMap<>();
+        for (Language lang : langs) {
+            AnalyzeResult b = before.result(lang);
+            AnalyzeResult a = after.result(lang);
+            AnalyzeResult d = CodeStatsCore.buildResult(changedFunctions.get(lang));
+            d.codeMetrics = new CodeMetrics();
+            d.codeMetrics.merge(a.codeMetrics);
+            d.codeMetrics.subtract(b.codeMetrics);
+            out.before.put(lang, b);
+            out.after.put(lang, a);
+            out.delta.put(lang, d);
+        }
+        out.changes = changes;
+        out.filesParsed = parsed.get() - parsedBefore;
+        return out;
+    }
+
+    /** 递归比较两棵树（对象名相同的子树直接跳过），把涉及 langs 的文件变化加入 out */
+    private void diffTrees(GitRepository.ObjectId oldTree, GitRepository.ObjectId newTree, String prefix,
+                           Set<Language> langs, List<FileChange> out) throws IOException {
+        if (oldTree != null && oldTree.equals(newTree)) return;
+        Map<String, GitRepository.TreeEntry> olds = new LinkedHashMap<>();
+        if (oldTree != null) {
+            for (GitRepository.TreeEntry e : repo.readTree(oldTree)) olds.put(e.name, e);
+        }
+        List<GitRepository.TreeEntry> news = newTree != null ? repo.readTree(newTree) : List.of();
+        for (GitRepository.TreeEntry n : news) {
+            GitRepository.TreeEntry o = olds.remove(n.name);
+            String path = prefix + n.name;
+            if (n.isTree()) {
+                if (o != null && o.isFile()) addChange(path, o.id, null, langs, out);
+                diffTrees(o != null && o.isTree() ? o.id : null, n.id, path + "/", langs, out);
+            } else if (n.isFile()) {
+                if (o != null && o.isTree()) diffTrees(o.id, null, path + "/", langs, out);
+                GitRepository.ObjectId old = o != null && o.isFile() ? o.id : null;
+                if (!n.id.equals(old)) addChange(path, old, n.id, langs, out);
+            } else if (o != null) {
+                // 变成了符号链接 / 子模块：按删除处理
+                if (o.isTree()) diffTrees(o.id, null, path + "/", langs, out);
+                else if (o.isFile()) addChange(path, o.id, null, langs, out);
+            }
+        }
+        for (GitRepository.TreeEntry o : olds.values()) {
+            String path = prefix + o.name;
+            if (o.isTree()) diffTrees(o.id, null, path + "/", langs, out);
+            else if (o.isFile()) addChange(path, o.id, null, langs, out);
+        }
+    }
+
+    private static void addChange(String path, GitRepository.ObjectId oldBlob, GitRepository.ObjectId newBlob,
+                                  Set<Language> langs, List<FileChange> out) {
+        Language lang = CodeStatsService.languageOf(path);
+        if (lang == null || !langs.contains(lang)) return;
+        FileChange c = new FileChange();
+        c.path = path;
+        c.language = lang;
+        c.oldBlob = oldBlob;
+        c.newBlob = newBlob;
+        c.kind = oldBlob == null ? ADDED : newBlob == null ? DELETED : MODIFIED;
+        out.add(c);
+    }
+
+    // ---------- 历史 ----------
+
+    /**
+     * 从 head 沿提交图（包括合并进来的分支，与 git log 相同）取最近的 maxCommits 个提交，
+     * 返回按时间从早到晚排列的各提交汇总。maxCommits <= 0 时不限个数
+     */
+    public List<HistoryPoint> history(String head, int maxCommits, Set<Language> languages) throws IOException {
+        Set<Language> langs = languageSet(languages);
+        List<GitRepository.Commit> commits = commitsSince(repo.resolve(head), maxCommits);
+
+        // 父提交在前：每个提交以第一个父提交为基准（合并提交的其它父提交带来的变化也体现在与第一个父提交的差异中）
+        Map<GitRepository.ObjectId, GitRepository.Commit> byId = new HashMap<>();
+        for (GitRepository.Commit c : commits) byId.put(c.id, c);
+        List<GitRepository.Commit> order = new ArrayList<>(commits.size());
+        Set<GitRepository.ObjectId> placed = new HashSet<>();
+        for (int i = commits.size() - 1; i >= 0; i--) {
+            List<GitRepository.Commit> chain = new ArrayList<>();
+            for (GitRepository.Commit c = commits.get(i); c != null && !placed.contains(c.id);
+                 c = c.parents.isEmpty() ? null : byId.get(c.parents.get(0))) {
+                chain.add(c);
+                placed.add(c.id);
+            }
+            for (int k = chain.size() - 1; k >= 0; k--) order.add(chain.get(k));
+        }
+
+        // 与第一个父提交的树比较（并行）；父提交不在范围内的提交之后遍历整棵树
+        List<List<FileChange>> changes = new ArrayList<>(Collections.nCopies(order.size(), null));
+        parallelFor(order.size(), i -> {
+            GitRepository.Commit c = order.get(i);
+            GitRepository.Commit parent = c.parents.isEmpty() ? null : byId.get(c.parents.get(0));
+            if (parent == null) return;
+            List<FileChange> list = new ArrayList<>();
+            try {
+                diffTrees(parent.tree, c.tree, "", langs, list);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            changes.set(i, list);
+        });
+
+        // 所有变化文件一起解析（并行，缓存中已有的跳过）
+        List<BlobRef> refs = new ArrayList<>();
+        for (List<FileChange> list : changes) {
+            if (list == null) continue;
+            for (FileChange fc : list) {
+                if (fc.oldBlob != null) refs.add(new BlobRef(fc.language, fc.oldBlob));
+                if (fc.newBlob != null) refs.add(new BlobRef(fc.language, fc.newBlob));
+            }
+        }
+        BlobResult[] results = results(refs);
+
+        // 按顺序累加；父提交的汇总在其所有子提交处理完后释放
+        Map<GitRepository.ObjectId, Integer> pendingChildren = new HashMap<>();
+        for (GitRepository.Commit c : order) {
+            if (!c.parents.isEmpty() && byId.containsKey(c.parents.get(0))) {
+                pendingChildren.merge(c.parents.get(0), 1, Integer::sum);
+            }
+        }
+        Map<GitRepository.ObjectId, Snapshot> live = new HashMap<>();
+        Map<GitRepository.ObjectId, HistoryPoint> points = new HashMap<>();
+        int r = 0;
+        for (int i = 0; i < order.size(); i++) {
+            GitRepository.Commit c = order.get(i);
+            Snapshot s;
+            if (changes.get(i) == null) {
+                s = snapshot(c, langs);
+            } else {
+                GitRepository.ObjectId parentId = c.parents.get(0);
+                s = live.get(parentId).copy();
+                for (FileChange fc : changes.get(i)) {
+                    if (fc.oldBlob != null) s.remove(fc.language, results[r++]);
+                    if (fc.newBlob != null) s.add(fc.language, results[r++]);
+                }
+                if (pendingChildren.merge(parentId, -1, Integer::sum) == 0) live.remove(parentId);
+            }
+            if (pendingChildren.containsKey(c.id)) live.put(c.id, s);
+            points.put(c.id, point(c, s, langs));
+            // 留给之后以 head 为基准的 diff()
+            if (c == commits.get(0)) cacheSnapshot(snapshotKey(c.id, langs), s);
+        }
+
+        // 输出按提交时间从早到晚
+        List<HistoryPoint> out = new ArrayList<>(commits.size());
+        for (int i = commits.size() - 1; i >= 0; i--) out.add(points.get(commits.get(i).id));
+        return out;
+    }
+
+    /** 与 git log 相同的顺序：从 head 出发沿所有父提交，按提交时间从新到旧取 limit 个 */
+    private List<GitRepository.Commit> commitsSince(GitRepository.ObjectId head, int limit) throws IOException {
+        PriorityQueue<GitRepository.Commit> queue = new PriorityQueue<>(
+                (a, b) -> Long.compare(b.commitTime, a.commitTime));
+        Set<GitRepository.ObjectId> seen = new HashSet<>();
+        queue.add(repo.readCommit(head));
+        seen.add(head);
+        List<GitRepository.Commit> out = new ArrayList<>();
+        while (!queue.isEmpty() && (limit <= 0 || out.size() < limit)) {
+            GitRepository.Commit c = queue.poll();
+            out.add(c);
+            for (GitRepository.ObjectId p : c.parents) {
+                if (seen.add(p)) queue.add(repo.readCommit(p));
+            }
+        }
+        return out;
+    }
+
+    private static HistoryPoint point(GitRepository.Commit c, Snapshot s, Set<Language> langs) {
+        HistoryPoint p = new HistoryPoint();
+        p.commit = c.id.hex();
+        p.author = c.author;
+        p.commitTime = c.commitTime;
+        p.subject = c.subject;
+        p.results = new LinkedHashMap<>();
+        for (Language lang : langs) p.results.put(lang, s.result(lang));
+        return p;
+    }
+
+    // ---------- 单个文件 ----------
+
+    /** 取得一批文件的结果：缓存中没有的按 parallelism 并行解析 */
+    private BlobResult[] results(List<BlobRef> refs) {
+        BlobResult[] out = new BlobResult[refs.size()];
+        List<Integer> missing = new ArrayList<>();
+        for (int i = 0; i < out.length; i++) {
+            BlobRef ref = refs.get(i);
+            out[i] = blobs.get(ref.language).get(ref.id);
+            if (out[i] == null) missing.add(i);
+        }
+        parallelFor(missing.size(), k -> {
+            int i = missing.get(k);
+            out[i] = result(refs.get(i));
+        });
+        return out;
+    }
+
+    /** 以 parallelism 个线程对 0..n-1 执行 body */
+    private void parallelFor(int n, IntConsumer body) {
+        if (parallelism == 1 || n < 2) {
+            for (int i = 0; i < n; i++) body.accept(i);
+            return;
+        }
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            pool.submit(() -> IntStream.range(0, n).parallel().forEach(body)).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private BlobResult result(BlobRef ref) {
+        Map<GitRepository.ObjectId, BlobResult> memory = blobs.get(ref.language);
+        BlobResult r = memory.get(ref.id);
+        if (r != null) return r;
+        r = loadPersisted(ref);
+        if (r == null) {
+            try {
+                r = parse(ref.language, repo.readBlob(ref.id));
+            } catch (IOException e) {
+                throw new UncheckedIOException("读取文件对象失败: " + ref.id, e);
+            }
+            storePersisted(ref, r);
+        }
+        BlobResult prev = memory.putIfAbsent(ref.id, r);
+        return prev != null ? prev : r;
+    }
+
+    /**
+     * 持久化缓存中的键：对象名已唯一确定内容，大小和修改时间固定为 0，
+     * 分析器版本变化时条目失效
+     */
+    private static String persistedKey(BlobRef ref) {
+        return "git:" + ref.language + ":" + ref.id.hex();
+    }
+
+    private BlobResult loadPersisted(BlobRef ref) {
+        if (cache == null) return null;
+        AnalysisCache.Entry e = cache.get(persistedKey(ref), 0, 0, service.analyzer(ref.language).version(),
+                true, true);
+        return e == null ? null : new BlobResult(e.metrics, e.functions.toArray(new FunctionStat[0]));
+    }
+
+    /** 不是合法 UTF-8 的文件（没有代码量）不保存，下次重新判断 */
+    private void storePersisted(BlobRef ref, BlobResult r) {
+        if (cache == null || r.metrics == null) return;
+        cache.put(persistedKey(ref), 0, 0, service.analyzer(ref.language).version(),
+                r.metrics, Arrays.asList(r.functions), null);
+    }
+
+    /** 与 CodeStatsService 对单个文件的处理相同：字节上统计代码量，解码为文本后分析函数 */
+    private BlobResult parse(Language lang, byte[] content) {
+        parsed.incrementAndGet();
+        CodeAnalyzer analyzer = service.analyzer(lang);
+        CodeMetrics metrics = analyzer.analyzeCodeMetrics(ByteBuffer.wrap(content), null);
+        if (metrics == null) return BlobResult.SKIPPED;
+        String code;
+        try {
+            code = StandardCharsets.UTF_8.newDecoder().decode(ByteBuffer.wrap(content)).toString();
+        } catch (CharacterCodingException e) {
+            return BlobResult.SKIPPED;
+        }
+        List<FunctionStat> functions;
+        try {
+            functions = analyzer.analyze(code, null);
+        } catch (RuntimeException e) {
+            failed.incrementAndGet();
+            functions = Collections.emptyList();
+        }
+        return new BlobResult(metrics, functions.toArray(new FunctionStat[0]));
+    }
+}
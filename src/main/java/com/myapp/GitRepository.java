@@ -0,0 +1,868 @@
+package com.myapp;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * 只读访问本地 git 仓库的对象库：不检出、不写磁盘，直接从 .git 读取提交、树和文件内容。
+ *
+ * 支持松散对象、packfile（idx v1 / v2，OFS_DELTA / REF_DELTA 增量）、loose refs、packed-refs、
+ * 符号引用（HEAD）、附注标签的剥离以及 rev~N / rev^N 形式的修订号；不支持 SHA-256 仓库和 alternates。
+ * packfile 以内存映射方式读取，增量链上的基对象放入一个有字节上限的 LRU 缓存。
+ *
+ * 各方法可以在多个线程上同时调用。
+ */
+public class GitRepository implements Closeable {
+
+    // 对象类型（与 packfile 中的编号一致）
+    public static final int OBJ_COMMIT = 1;
+    public static final int OBJ_TREE = 2;
+    public static final int OBJ_BLOB = 3;
+    public static final int OBJ_TAG = 4;
+    private static final int OBJ_OFS_DELTA = 6;
+    private static final int OBJ_REF_DELTA = 7;
+
+    // 树条目的文件类型（mode 的高位）
+    private static final int MODE_TYPE_MASK = 0170000;
+    private static final int MODE_TREE = 0040000;
+    private static final int MODE_FILE = 0100000;
+
+    // 增量基对象缓存的字节上限
+    private static final long BASE_CACHE_BYTES = 32L * 1024 * 1024;
+    // 超过该大小的 packfile 不整体映射，每个线程映射一个窗口并在后续读取中复用
+    private static final long MAX_MAPPED_PACK = Integer.MAX_VALUE;
+    private static final long PACK_WINDOW_BYTES = 8L * 1024 * 1024;
+    // pack 对象头（类型和大小 + 增量基对象的偏移或名字）的最大字节数，窗口至少要覆盖这么多
+    private static final int PACK_HEADER_MAX = 32;
+
+    private static final ThreadLocal<Inflater> INFLATER = ThreadLocal.withInitial(Inflater::new);
+
+    private final Path gitDir;     // HEAD 所在目录
+    private final Path commonDir;  // objects、refs 所在目录（工作树时与 gitDir 不同）
+    private final Path objectsDir;
+    private volatile List<Pack> packs;
+    // 增量基对象缓存：(pack 编号 << 40 | 偏移) -> 对象，按访问顺序淘汰
+    private final Map<Long, RawObject> baseCache = new LinkedHashMap<>(256, 0.75f, true);
+    private long baseCacheBytes;
+
+    /** 20 字节的对象名（SHA-1） */
+    public static final class ObjectId implements Comparable<ObjectId> {
+        private final byte[] raw;
+
+        private ObjectId(byte[] raw) {
+            this.raw = raw;
+        }
+
+        static ObjectId fromRaw(byte[] buf, int off) {
+            return new ObjectId(Arrays.copyOfRange(buf, off, off + 20));
+        }
+
+        /** 由 40 位十六进制字符串创建 */
+        public static ObjectId fromHex(String hex) {
+            if (hex == null || hex.length() != 40) throw new IllegalArgumentException("不是完整的对象名: " + hex);
+            byte[] raw = new byte[20];
+            for (int i = 0; i < 20; i++) {
+                int hi = Character.digit(hex.charAt(2 * i), 16);
+                int lo = Character.digit(hex.charAt(2 * i + 1), 16);
+                if (hi < 0 || lo < 0) throw new IllegalArgumentException("不是完整的对象名: " + hex);
+                raw[i] = (byte) (hi << 4 | lo);
+            }
+            return new ObjectId(raw);
+        }
+
+        public String hex() {
+            StringBuilder sb = new StringBuilder(40);
+            for (byte b : raw) sb.append(Character.forDigit((b >> 4) & 15, 16)).append(Character.forDigit(b & 15, 16));
+            return sb.toString();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof ObjectId other && Arrays.equals(raw, other.raw);
+        }
+
+        @Override
+        public int hashCode() {
+            return (raw[0] & 0xFF) << 24 | (raw[1] & 0xFF) << 16 | (raw[2] & 0xFF) << 8 | (raw[3] & 0xFF);
+        }
+
+        @Override
+        public int compareTo(ObjectId o) {
+            return Arrays.compareUnsigned(raw, o.raw);
+        }
+
+        @Override
+        public String toString() {
+            return hex();
+        }
+    }
+
+    /** 解压后的对象：类型 + 内容 */
+    public static final class RawObject {
+        public final int type;
+        public final byte[] data;
+
+        RawObject(int type, byte[] data) {
+            this.type = type;
+            this.data = data;
+        }
+    }
+
+    /** 提交对象中用到的字段 */
+    public static final class Commit {
+        public final ObjectId id;
+        public final ObjectId tree;
+        public final List<ObjectId> parents;
+        public final String author;       // 作者名（不含邮箱）
+        public final long commitTime;     // 提交时间（committer，Unix 秒）
+        public final String subject;      // 提交说明的第一行
+
+        Commit(ObjectId id, ObjectId tree, List<ObjectId> parents, String author, long commitTime, String subject) {
+            this.id = id;
+            this.tree = tree;
+            this.parents = parents;
+            this.author = author;
+            this.commitTime = commitTime;
+            this.subject = subject;
+        }
+    }
+
+    /** 树的一个条目 */
+    public static final class TreeEntry {
+        public final int mode;
+        public final String name;
+        public final ObjectId id;
+
+        TreeEntry(int mode, String name, ObjectId id) {
+            this.mode = mode;
+            this.name = name;
+            this.id = id;
+        }
+
+        public boolean isTree() { return (mode & MODE_TYPE_MASK) == MODE_TREE; }
+
+        /** 普通文件（不含符号链接和子模块） */
+        public boolean isFile() { return (mode & MODE_TYPE_MASK) == MODE_FILE; }
+    }
+
+    /** 遍历树时的回调；path 为相对仓库根目录、以 / 分隔的路径 */
+    public interface TreeVisitor {
+        /** 返回 false 时跳过该目录 */
+        default boolean enterDirectory(String path) { return true; }
+
+        void visitFile(String path, TreeEntry entry);
+    }
+
+    private GitRepository(Path gitDir, Path commonDir) {
+        this.gitDir = gitDir;
+        this.commonDir = commonDir;
+        this.objectsDir = commonDir.resolve("objects");
+    }
+
+    /**
+     * 打开仓库：path 可以是工作区（或其子目录）、.git 目录或裸仓库。
+     * 找不到仓库时抛出 IllegalArgumentException
+     */
+    public static GitRepository open(Path path) throws IOException {
+        Path gitDir = null;
+        for (Path d = path.toAbsolutePath().normalize(); d != null && gitDir == null; d = d.getParent()) {
+            Path dotGit = d.resolve(".git");
+            if (Files.isDirectory(dotGit)) {
+                gitDir = dotGit;
+            } else if (Files.isRegularFile(dotGit)) {
+                // 工作树 / 子模块：.git 文件内容为 "gitdir: <路径>"
+                String line = Files.readString(dotGit, StandardCharsets.UTF_8).trim();
+                if (line.startsWith("gitdir:")) gitDir = d.resolve(line.substring(7).trim()).normalize();
+            } else if (Files.isRegularFile(d.resolve("HEAD")) && Files.isDirectory(d.resolve("objects"))) {
+                gitDir = d; // 裸仓库或 .git 目录本身
+            }
+        }
+        if (gitDir == null) throw new IllegalArgumentException("不是 git 仓库: " + path);
+        Path commonDir = gitDir;
+        Path commonFile = gitDir.resolve("commondir");
+        if (Files.isRegularFile(commonFile)) {
+            commonDir = gitDir.resolve(Files.readString(commonFile, StandardCharsets.UTF_8).trim()).normalize();
+        }
+        String config = Files.isRegularFile(commonDir.resolve("config"))
+                ? Files.readString(commonDir.resolve("config"), StandardCharsets.UTF_8).toLowerCase(Locale.ROOT) : "";
+        if (config.contains("objectformat") && config.contains("sha256"))
+            throw new IllegalArgumentException("不支持 SHA-256 仓库: " + gitDir);
+        GitRepository repo = new GitRepository(gitDir, commonDir);
+        repo.packs = repo.scanPacks();
+        return repo;
+    }
+
+    public Path gitDir() {
+        return gitDir;
+    }
+
+    @Override
+    public void close() {
+        for (Pack p : packs) p.close();
+        synchronized (baseCache) {
+            baseCache.clear();
+            baseCacheBytes = 0;
+        }
+    }
+
+    // ---------- 修订号 ----------
+
+    /**
+     * 把修订号解析为提交：40 位或缩写的对象名、HEAD、分支 / 标签 / 完整引用名，
+     * 可带 ~N（沿第一个父提交后退 N 次）和 ^N（第 N 个父提交）后缀；附注标签会被剥离
+     */
+    public ObjectId resolve(String revision) throws IOException {
+        if (revision == null || revision.isBlank()) revision = "HEAD";
+        int cut = 0;
+        while (cut < revision.length() && revision.charAt(cut) != '~' && revision.charAt(cut) != '^') cut++;
+        ObjectId id = resolveName(revision.substring(0, cut));
+        if (id == null) throw new IllegalArgumentException("找不到修订: " + revision);
+        id = peel(id);
+        int i = cut;
+        while (i < revision.length()) {
+            char op = revision.charAt(i++);
+            int start = i;
+            while (i < revision.length() && Character.isDigit(revision.charAt(i))) i++;
+            int n = start == i ? 1 : Integer.parseInt(revision.substring(start, i));
+            if (op == '~') {
+                for (int k = 0; k < n; k++) id = parent(id, 1, revision);
+            } else if (op == '^') {
+                if (n > 0) id = parent(id, n, revision);
+            } else {
+                throw new IllegalArgumentException("无法解析修订: " + revision);
+            }
+        }
+        return id;
+    }
+
+    private ObjectId parent(ObjectId id, int n, String revision) throws IOException {
+        List<ObjectId> parents = readCommit(id).parents;
+        if (parents.size() < n) throw new IllegalArgumentException("找不到修订: " + revision);
+        return parents.get(n - 1);
+    }
+
+    private ObjectId resolveName(String name) throws IOException {
+        if (name.isEmpty()) name = "HEAD";
+        if (name.matches("[0-9a-fA-F]{40}")) return ObjectId.fromHex(name.toLowerCase(Locale.ROOT));
+        String[] candidates = { name, "refs/" + name, "refs/tags/" + name, "refs/heads/" + name,
+                "refs/remotes/" + name, "refs/remotes/" + name + "/HEAD" };
+        for (String ref : candidates) {
+            ObjectId id = readRef(ref, 0);
+            if (id != null) return id;
+        }
+        if (name.matches("[0-9a-fA-F]{4,39}")) return resolveAbbreviation(name.toLowerCase(Locale.ROOT));
+        return null;
+    }
+
+    /** 读取引用（松散引用优先，其次 packed-refs），符号引用最多跟随 5 层 */
+    private ObjectId readRef(String ref, int depth) throws IOException {
+        if (depth > 5 || ref.contains("..")) return null;
+        Path dir = ref.equals("HEAD") || !ref.startsWith("refs/") ? gitDir : commonDir;
+        Path file = dir.resolve(ref);
+        if (Files.isRegularFile(file)) {
+            String content = Files.readString(file, StandardCharsets.UTF_8).trim();
+            if (content.startsWith("ref:")) return readRef(content.substring(4).trim(), depth + 1);
+            if (content.matches("[0-9a-fA-F]{40}")) return ObjectId.fromHex(content.toLowerCase(Locale.ROOT));
+            return null;
+        }
+        Path packed = commonDir.resolve("packed-refs");
+        if (!ref.startsWith("refs/") || !Files.isRegularFile(packed)) return null;
+        for (String line : Files.readAllLines(packed, StandardCharsets.UTF_8)) {
+            if (line.isEmpty() || line.charAt(0) == '#' || line.charAt(0) == '^') continue;
+            int sp = line.indexOf(' ');
+            if (sp == 40 && line.substring(41).equals(ref)) return ObjectId.fromHex(line.substring(0, 40));
+        }
+        return null;
+    }
+
+    private ObjectId resolveAbbreviation(String prefix) throws IOException {
+        Set<ObjectId> found = new HashSet<>();
+        Path dir = objectsDir.resolve(prefix.substring(0, 2));
+        if (Files.isDirectory(dir)) {
+            try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir)) {
+                for (Path p : ds) {
+                    String name = prefix.substring(0, 2) + p.getFileName();
+                    if (name.length() == 40 && name.startsWith(prefix)) found.add(ObjectId.fromHex(name));
+                }
+            }
+        }
+        for (Pack p : packs) p.index.findPrefix(prefix, found);
+        if (found.size() > 1) throw new IllegalArgumentException("对象名缩写有歧义: " + prefix);
+        return found.isEmpty() ? null : found.iterator().next();
+    }
+
+    /** 附注标签剥离到它指向的对象 */
+    private ObjectId peel(ObjectId id) throws IOException {
+        for (int i = 0; i < 10; i++) {
+            RawObject obj = read(id);
+            if (obj.type != OBJ_TAG) return id;
+            String text = new String(obj.data, StandardCharsets.UTF_8);
+            if (!text.startsWith("object ")) break;
+            id = ObjectId.fromHex(text.substring(7, 47));
+        }
+        return id;
+    }
+
+    // ---------- 提交与树 ----------
+
+    public Commit readCommit(ObjectId id) throws IOException {
+        RawObject obj = read(id);
+        if (obj.type != OBJ_COMMIT) throw new IllegalArgumentException("不是提交对象: " + id);
+        String text = new String(obj.data, StandardCharsets.UTF_8);
+        ObjectId tree = null;
+        List<ObjectId> parents = new ArrayList<>(1);
+        String author = "";
+        long time = 0;
+        int pos = 0;
+        while (pos < text.length()) {
+            int eol = text.indexOf('\n', pos);
+            if (eol < 0) eol = text.length();
+            if (eol == pos) { // 空行之后是提交说明
+                pos++;
+                break;
+            }
+            String line = text.substring(pos, eol);
+            if (line.startsWith("tree ")) {
+                tree = ObjectId.fromHex(line.substring(5, 45));
+            } else if (line.startsWith("parent ")) {
+                parents.add(ObjectId.fromHex(line.substring(7, 47)));
+            } else if (line.startsWith("author ")) {
+                int lt = line.indexOf(" <");
+                author = lt > 7 ? line.substring(7, lt) : "";
+            } else if (line.startsWith("committer ")) {
+                time = personTime(line);
+            }
+            pos = eol + 1;
+        }
+        int end = text.indexOf('\n', Math.min(pos, text.length()));
+        String subject = pos >= text.length() ? "" : text.substring(pos, end < 0 ? text.length() : end);
+        if (tree == null) throw new IOException("提交对象缺少 tree: " + id);
+        return new Commit(id, tree, Collections.unmodifiableList(parents), author, time, subject);
+    }
+
+    /** "committer 名字 <邮箱> 1700000000 +0800" 中的时间戳 */
+    private static long personTime(String line) {
+        int gt = line.lastIndexOf('>');
+        if (gt < 0) return 0;
+        String[] parts = line.substring(gt + 1).trim().split(" ");
+        try {
+            return Long.parseLong(parts[0]);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    /** 读取一层树 */
+    public List<TreeEntry> readTree(ObjectId id) throws IOException {
+        RawObject obj = read(id);
+        if (obj.type != OBJ_TREE) throw new IllegalArgumentException("不是树对象: " + id);
+        byte[] d = obj.data;
+        List<TreeEntry> entries = new ArrayList<>();
+        int pos = 0;
+        while (pos < d.length) {
+            int mode = 0;
+            while (d[pos] != ' ') mode = mode * 8 + (d[pos++] - '0');
+            int nameStart = ++pos;
+            while (d[pos] != 0) pos++;
+            String name = new String(d, nameStart, pos - nameStart, StandardCharsets.UTF_8);
+            pos++;
+            entries.add(new TreeEntry(mode, name, ObjectId.fromRaw(d, pos)));
+            pos += 20;
+        }
+        return entries;
+    }
+
+    /** 按树中的顺序递归遍历所有普通文件（跳过符号链接和子模块） */
+    public void walkTree(ObjectId tree, TreeVisitor visitor) throws IOException {
+        walkTree(tree, "", visitor);
+    }
+
+    private void walkTree(ObjectId tree, String prefix, TreeVisitor visitor) throws IOException {
+        for (TreeEntry e : readTree(tree)) {
+            String path = prefix + e.name;
+            if (e.isTree()) {
+                if (visitor.enterDirectory(path)) walkTree(e.id, path + "/", visitor);
+            } else if (e.isFile()) {
+                visitor.visitFile(path, e);
+            }
+        }
+    }
+
+    /** 读取文件内容 */
+    public byte[] readBlob(ObjectId id) throws IOException {
+        RawObject obj = read(id);
+        if (obj.type != OBJ_BLOB) throw new IllegalArgumentException("不是文件对象: " + id);
+        return obj.data;
+    }
+
+    /** 对象内容的大小（只解析头部，不解压整个对象） */
+    public long objectSize(ObjectId id) throws IOException {
+        for (Pack p : packs) {
+            long off = p.index.find(id);
+            if (off >= 0) return p.objectSize(off);
+        }
+        Path loose = looseFile(id);
+        if (Files.isRegularFile(loose)) return parseLooseHeader(inflateLoosePrefix(loose), id)[1];
+        if (reloadPacks()) return objectSize(id);
+        throw new IOException("找不到对象: " + id);
+    }
+
+    // ---------- 读取对象 ----------
+
+    /** 读取并解压对象（packfile 优先，其次松散对象） */
+    public RawObject read(ObjectId id) throws IOException {
+        for (Pack p : packs) {
+            long off = p.index.find(id);
+            if (off >= 0) return p.read(off);
+        }
+        Path loose = looseFile(id);
+        if (Files.isRegularFile(loose)) return readLoose(loose, id);
+        // 分析期间可能执行过 gc：重新扫描 pack 目录再找一次
+        if (reloadPacks()) return read(id);
+        throw new IOException("找不到对象: " + id);
+    }
+
+    private Path looseFile(ObjectId id) {
+        String hex = id.hex();
+        return objectsDir.resolve(hex.substring(0, 2)).resolve(hex.substring(2));
+    }
+
+    private RawObject readLoose(Path file, ObjectId id) throws IOException {
+        byte[] compressed = Files.readAllBytes(file);
+        Inflater inf = INFLATER.get();
+        inf.reset();
+        inf.setInput(compressed);
+        try {
+            byte[] head = new byte[64];
+            int n = inf.inflate(head);
+            long[] header = parseLooseHeader(Arrays.copyOf(head, n), id);
+            int headerLen = (int) header[2];
+            byte[] data = new byte[checkedSize(header[1], id)];
+            int copied = Math.min(n - headerLen, data.length);
+            System.arraycopy(head, headerLen, data, 0, copied);
+            inflateFully(inf, data, copied, id);
+            return new RawObject((int) header[0], data);
+        } catch (DataFormatException e) {
+            throw new IOException("对象已损坏: " + id, e);
+        }
+    }
+
+    private static byte[] inflateLoosePrefix(Path file) throws IOException {
+        byte[] compressed = Files.readAllBytes(file);
+        Inflater inf = INFLATER.get();
+        inf.reset();
+        inf.setInput(compressed);
+        try {
+            byte[] head = new byte[64];
+            return Arrays.copyOf(head, inf.inflate(head));
+        } catch (DataFormatException e) {
+            throw new IOException("对象已损坏: " + file, e);
+        }
+    }
+
+    /** 松散对象头 "blob 123\0" -> {类型, 大小, 头部长度} */
+    private static long[] parseLooseHeader(byte[] head, ObjectId id) throws IOException {
+        int sp = -1;
+        int nul = -1;
+        for (int i = 0; i < head.length; i++) {
+            if (head[i] == ' ' && sp < 0) sp = i;
+            if (head[i] == 0) {
+                nul = i;
+                break;
+            }
+        }
+        if (sp < 0 || nul < sp) throw new IOException("对象头无效: " + id);
+        int type = switch (new String(head, 0, sp, StandardCharsets.US_ASCII)) {
+            case "commit" -> OBJ_COMMIT;
+            case "tree" -> OBJ_TREE;
+            case "blob" -> OBJ_BLOB;
+            case "tag" -> OBJ_TAG;
+            default -> throw new IOException("未知的对象类型: " + id);
+        };
+        long size = Long.parseLong(new String(head, sp + 1, nul - sp - 1, StandardCharsets.US_ASCII));
+        return new long[] { type, size, nul + 1 };
+    }
+
+    private static int checkedSize(long size, Object what) throws IOException {
+        if (size < 0 || size > Integer.MAX_VALUE - 8) throw new IOException("对象过大: " + what);
+        return (int) size;
+    }
+
+    /** 解压到 out[from, out.length)，必须恰好在流结束时填满 */
+    private static void inflateFully(Inflater inf, byte[] out, int from, Object what)
+            throws DataFormatException, IOException {
+        int pos = from;
+        while (pos < out.length) {
+            int n = inf.inflate(out, pos, out.length - pos);
+            if (n == 0 && (inf.needsInput() || inf.needsDictionary() || inf.finished())) {
+                throw new IOException("对象数据不完整: " + what);
+            }
+            pos += n;
+        }
+    }
+
+    // ---------- packfile ----------
+
+    private List<Pack> scanPacks() throws IOException {
+        List<Pack> list = new ArrayList<>();
+        Path dir = objectsDir.resolve("pack");
+        if (!Files.isDirectory(dir)) return list;
+        try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, "*.idx")) {
+            for (Path idx : ds) {
+                String name = idx.getFileName().toString();
+                Path pack = dir.resolve(name.substring(0, name.length() - 4) + ".pack");
+                if (Files.isRegularFile(pack)) list.add(new Pack(list.size(), idx, pack));
+            }
+        }
+        return list;
+    }
+
+    /** 有新的 packfile 时替换列表并返回 true */
+    private synchronized boolean reloadPacks() throws IOException {
+        List<Pack> now = scanPacks();
+        Set<Path> old = new HashSet<>();
+        for (Pack p : packs) old.add(p.file);
+        boolean changed = false;
+        for (Pack p : now) changed |= !old.contains(p.file);
+        if (!changed) {
+            for (Pack p : now) p.close();
+            return false;
+        }
+        List<Pack> previous = packs;
+        packs = now;
+        synchronized (baseCache) {
+            baseCache.clear();
+            baseCacheBytes = 0;
+        }
+        for (Pack p : previous) p.close();
+        return true;
+    }
+
+    private RawObject cachedBase(long key) {
+        synchronized (baseCache) {
+            return baseCache.get(key);
+        }
+    }
+
+    private void cacheBase(long key, RawObject obj) {
+        if (obj.data.length > BASE_CACHE_BYTES / 4) return;
+        synchronized (baseCache) {
+            if (baseCache.put(key, obj) == null) baseCacheBytes += obj.data.length;
+            Iterator<RawObject> it = baseCache.values().iterator();
+            while (baseCacheBytes > BASE_CACHE_BYTES && it.hasNext()) {
+                baseCacheBytes -= it.next().data.length;
+                it.remove();
+            }
+        }
+    }
+
+    /** 一个 packfile 及其索引 */
+    private final class Pack {
+        final int number;
+        final Path file;
+        final PackIndex index;
+        final FileChannel channel;
+        final long size;
+        final MappedByteBuffer mapped; // 超过 2GB 时为 null，改用 window
+        private final ThreadLocal<PackWindow> window = new ThreadLocal<>();
+
+        Pack(int number, Path idx, Path file) throws IOException {
+            this.number = number;
+            this.file = file;
+            this.index = new PackIndex(idx);
+            this.channel = FileChannel.open(file, StandardOpenOption.READ);
+            this.size = channel.size();
+            this.mapped = size <= MAX_MAPPED_PACK ? channel.map(FileChannel.MapMode.READ_ONLY, 0, size) : null;
+        }
+
+        /**
+         * 位置在 offset 处的只读视图。整体映射时到文件末尾为止；否则是本线程的窗口，
+         * 至少覆盖 offset 之后的对象头，不够时从 offset 起重新映射 PACK_WINDOW_BYTES
+         */
+        ByteBuffer at(long offset) throws IOException {
+            if (offset < 0 || offset >= size) throw new IOException("pack 偏移越界: " + file + "@" + offset);
+            if (mapped != null) return mapped.duplicate().position((int) offset);
+            PackWindow w = window.get();
+            if (w == null || !w.covers(offset, size)) {
+                long length = Math.min(size - offset, PACK_WINDOW_BYTES);
+                w = new PackWindow(offset, channel.map(FileChannel.MapMode.READ_ONLY, offset, length));
+                window.set(w);
+            }
+            return w.buf.duplicate().position((int) (offset - w.start));
+        }
+
+        RawObject read(long offset) throws IOException {
+            ByteBuffer b = at(offset);
+            int start = b.position();
+            int c = b.get() & 0xFF;
+            int type = (c >> 4) & 7;
+            long size = c & 15;
+            for (int shift = 4; (c & 0x80) != 0; shift += 7) {
+                c = b.get() & 0xFF;
+                size |= (long) (c & 0x7F) << shift;
+            }
+            switch (type) {
+                case OBJ_COMMIT, OBJ_TREE, OBJ_BLOB, OBJ_TAG:
+                    return new RawObject(type, inflate(b, offset + b.position() - start, size, offset));
+                case OBJ_OFS_DELTA: {
+                    c = b.get() & 0xFF;
+                    long rel = c & 0x7F;
+                    while ((c & 0x80) != 0) {
+                        c = b.get() & 0xFF;
+                        rel = ((rel + 1) << 7) | (c & 0x7F);
+                    }
+                    byte[] delta = inflate(b, offset + b.position() - start, size, offset);
+                    RawObject base = readBase(offset - rel);
+                    return new RawObject(base.type, applyDelta(base.data, delta, offset));
+                }
+                case OBJ_REF_DELTA: {
+                    byte[] raw = new byte[20];
+                    b.get(raw);
+                    byte[] delta = inflate(b, offset + b.position() - start, size, offset);
+                    RawObject base = GitRepository.this.read(new ObjectId(raw));
+                    return new RawObject(base.type, applyDelta(base.data, delta, offset));
+                }
+                default:
+                    throw new IOException("未知的 pack 对象类型 " + type + ": " + file + "@" + offset);
+            }
+        }
+
+        private RawObject readBase(long offset) throws IOException {
+            long key = (long) number << 40 | offset;
+            RawObject base = cachedBase(key);
+            if (base == null) {
+                base = read(offset);
+                cacheBase(key, base);
+            }
+            return base;
+        }
+
+        /** 对象内容的大小；增量对象读取增量数据头部中的目标大小 */
+        long objectSize(long offset) throws IOException {
+            ByteBuffer b = at(offset);
+            int start = b.position();
+            int c = b.get() & 0xFF;
+            int type = (c >> 4) & 7;
+            long size = c & 15;
+            for (int shift = 4; (c & 0x80) != 0; shift += 7) {
+                c = b.get() & 0xFF;
+                size |= (long) (c & 0x7F) << shift;
+            }
+            if (type != OBJ_OFS_DELTA && type != OBJ_REF_DELTA) return size;
+            if (type == OBJ_OFS_DELTA) {
+                do {
+                    c = b.get() & 0xFF;
+                } while ((c & 0x80) != 0);
+            } else {
+                b.position(b.position() + 20);
+            }
+            byte[] head = new byte[(int) Math.min(size, 20)];
+            int n = inflateAt(b, offset + b.position() - start, head, offset);
+            int[] pos = { 0 };
+            readVarint(head, pos, n);              // 基对象大小
+            return readVarint(head, pos, n);       // 目标大小
+        }
+
+        /** 解压 b 当前位置（pack 中的 dataOffset）开始的对象数据 */
+        private byte[] inflate(ByteBuffer b, long dataOffset, long size, long offset) throws IOException {
+            byte[] out = new byte[checkedSize(size, file + "@" + offset)];
+            if (inflateAt(b, dataOffset, out, offset) < out.length) {
+                throw new IOException("对象数据不完整: " + file + "@" + offset);
+            }
+            return out;
+        }
+
+        /** 解压到 out，直到填满或流结束，返回解压出的字节数；窗口内的输入用完时映射其后的窗口继续 */
+        private int inflateAt(ByteBuffer b, long dataOffset, byte[] out, long offset) throws IOException {
+            Inflater inf = INFLATER.get();
+            inf.reset();
+            inf.setInput(b);
+            int pos = 0;
+            try {
+                while (pos < out.length) {
+                    int n = inf.inflate(out, pos, out.length - pos);
+                    pos += n;
+                    if (n > 0) continue;
+                    long next = dataOffset + inf.getBytesRead();
+                    if (!inf.needsInput() || mapped != null || next >= size) break;
+                    inf.setInput(at(next));
+                }
+            } catch (DataFormatException e) {
+                throw new IOException("pack 数据已损坏: " + file + "@" + offset, e);
+            }
+            return pos;
+        }
+
+        void close() {
+            try {
+                channel.close();
+            } catch (IOException ignored) {}
+        }
+    }
+
+    /** 大 packfile 的一段映射：[start, start + buf.capacity()) */
+    private static final class PackWindow {
+        final long start;
+        final MappedByteBuffer buf;
+
+        PackWindow(long start, MappedByteBuffer buf) {
+            this.start = start;
+            this.buf = buf;
+        }
+
+        /** offset 在窗口内，且其后的对象头也在窗口内（或窗口已到文件末尾） */
+        boolean covers(long offset, long packSize) {
+            long end = start + buf.capacity();
+            return offset >= start && offset < end && (offset + PACK_HEADER_MAX <= end || end == packSize);
+        }
+    }
+
+    private static long readVarint(byte[] d, int[] pos, int limit) throws IOException {
+        long v = 0;
+        int shift = 0;
+        int c;
+        do {
+            if (pos[0] >= limit) throw new IOException("增量数据头部无效");
+            c = d[pos[0]++] & 0xFF;
+            v |= (long) (c & 0x7F) << shift;
+            shift += 7;
+        } while ((c & 0x80) != 0);
+        return v;
+    }
+
+    /** 按增量指令（复制基对象的一段 / 插入新数据）由基对象生成目标对象 */
+    static byte[] applyDelta(byte[] base, byte[] delta, Object what) throws IOException {
+        int[] pos = { 0 };
+        long baseSize = readVarint(delta, pos, delta.length);
+        long resultSize = readVarint(delta, pos, delta.length);
+        if (baseSize != base.length) throw new IOException("增量的基对象大小不符: " + what);
+        byte[] out = new byte[checkedSize(resultSize, what)];
+        int o = 0;
+        int p = pos[0];
+        while (p < delta.length) {
+            int op = delta[p++] & 0xFF;
+            if ((op & 0x80) != 0) {
+                long off = 0;
+                int len = 0;
+                for (int i = 0; i < 4; i++) if ((op & (1 << i)) != 0) off |= (long) (delta[p++] & 0xFF) << (8 * i);
+                for (int i = 0; i < 3; i++) if ((op & (0x10 << i)) != 0) len |= (delta[p++] & 0xFF) << (8 * i);
+                if (len == 0) len = 0x10000;
+                if (off + len > base.length || o + len > out.length) throw new IOException("增量指令越界: " + what);
+                System.arraycopy(base, (int) off, out, o, len);
+                o += len;
+            } else if (op != 0) {
+                if (p + op > delta.length || o + op > out.length) throw new IOException("增量指令越界: " + what);
+                System.arraycopy(delta, p, out, o, op);
+                p += op;
+                o += op;
+            } else {
+                throw new IOException("增量指令无效: " + what);
+            }
+        }
+        if (o != out.length) throw new IOException("增量结果大小不符: " + what);
+        return out;
+    }
+
+    /** .idx 文件：256 项扇出表 + 按名字排序的对象名 + 偏移（v2 另有 CRC 和 64 位偏移表） */
+    private static final class PackIndex {
+        private static final int V2_MAGIC = 0xFF744F63;
+
+        final MappedByteBuffer buf;
+        final int version;
+        final int count;
+        final int namesOffset;
+        final int offsetsOffset;
+        final int largeOffsetsOffset;
+
+        PackIndex(Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            }
+            if (buf.getInt(0) == V2_MAGIC) {
+                if (buf.getInt(4) != 2) throw new IOException("不支持的 pack 索引版本: " + file);
+                version = 2;
+                count = buf.getInt(8 + 255 * 4);
+                namesOffset = 8 + 256 * 4;
+                offsetsOffset = namesOffset + count * 24; // 名字 20 字节 + CRC 4 字节
+                largeOffsetsOffset = offsetsOffset + count * 4;
+            } else {
+                version = 1;
+                count = buf.getInt(255 * 4);
+                namesOffset = 256 * 4 + 4;               // 每项 4 字节偏移 + 20 字节名字
+                offsetsOffset = 256 * 4;
+                largeOffsetsOffset = 0;
+            }
+        }
+
+        private int fanout(int b) {
+            if (b < 0) return 0;
+            return buf.getInt((version == 2 ? 8 : 0) + b * 4);
+        }
+
+        private int nameAt(int i) {
+            return version == 2 ? namesOffset + i * 20 : namesOffset + i * 24;
+        }
+
+        private int compare(int i, byte[] id) {
+            int at = nameAt(i);
+            for (int k = 0; k < 20; k++) {
+                int d = (buf.get(at + k) & 0xFF) - (id[k] & 0xFF);
+                if (d != 0) return d;
+            }
+            return 0;
+        }
+
+        /** 对象在 pack 中的偏移，不在本 pack 中返回 -1 */
+        long find(ObjectId id) {
+            int first = id.raw[0] & 0xFF;
+            int lo = fanout(first - 1);
+            int hi = fanout(first) - 1;
+            while (lo <= hi) {
+                int mid = (lo + hi) >>> 1;
+                int c = compare(mid, id.raw);
+                if (c < 0) lo = mid + 1;
+                else if (c > 0) hi = mid - 1;
+                else return offsetAt(mid);
+            }
+            return -1;
+        }
+
+        private long offsetAt(int i) {
+            if (version == 1) return buf.getInt(offsetsOffset + i * 24) & 0xFFFFFFFFL;
+            int off = buf.getInt(offsetsOffset + i * 4);
+            if (off >= 0) return off;
+            return buf.getLong(largeOffsetsOffset + (off & 0x7FFFFFFF) * 8);
+        }
+
+        /** 把名字以 prefix（十六进制）开头的对象加入 out */
+        void findPrefix(String prefix, Set<ObjectId> out) {
+            int first = Integer.parseInt(prefix.substring(0, 2), 16);
+            for (int i = fanout(first - 1); i < fanout(first); i++) {
+                byte[] raw = new byte[20];
+                buf.get(nameAt(i), raw);
+                ObjectId id = new ObjectId(raw);
+                if (id.hex().startsWith(prefix)) out.add(id);
+            }
+        }
+    }
+}
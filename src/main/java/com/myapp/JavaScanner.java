@@ -0,0 +1,454 @@
+package com.myapp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import com.myapp.CodeStatsCore.FunctionStat;
+
+/**
+ * Java 快速扫描：不建语法树，只做词法分析（注释、字符串、文本块、字符字面量）并跟踪大括号，
+ * 识别类型声明和方法 / 构造器的边界，输出与 JavaAnalyzer 相同规则的 FunctionStat：
+ *  - 具名类型（类 / 接口 / 枚举 / record / 注解类型，含局部类）中的方法和构造器各输出一次，
+ *    包括没有方法体的抽象方法；注解类型的成员不算；
+ *  - 匿名类和枚举常量类体中的方法不算，其中的局部类照常统计；
+ *  - 起始行为声明的第一个词法单元（注解 / 修饰符）所在行，结束行为 } 或 ; 所在行。
+ *
+ * 遇到没有把握的写法时返回 null，由调用方改用 JavaParser：
+ * 可能改变词法的 \\u 转义（代码中的任何转义、字面量中的引号 / 反斜杠 / 换行、注释中的换行 / * /）、
+ * 字面量或注释没有结束、括号不配对、无法识别的字符，
+ * 以及类型体中看起来像方法但参数表之后出现意外内容的声明。
+ * 不检查语法错误：JavaParser 会拒绝的源码这里仍可能给出结果。
+ */
+final class JavaScanner {
+
+    // 词法单元类型
+    private static final byte IDENT = 1;
+    private static final byte PUNCT = 2;
+    private static final byte LITERAL = 3;
+
+    // 大括号层的类型
+    private static final int TYPE = 1;     // 具名类型的类体
+    private static final int METHOD = 2;   // 具名类型中方法 / 构造器的方法体
+    private static final int BLOCK = 3;    // 其它：语句块、初始化块、lambda、匿名类、数组初始化等
+
+    private final String code;
+    private final String filePath;
+
+    // 词法单元（并行数组）
+    private byte[] kinds = new byte[1024];
+    private int[] starts = new int[1024];
+    private int[] ends = new int[1024];
+    private int[] lines = new int[1024];
+    private int count;
+
+    private JavaScanner(String code, String filePath) {
+        this.code = code;
+        this.filePath = filePath;
+    }
+
+    /** 扫描一个文件；没有把握时返回 null */
+    static List<FunctionStat> scan(String code, String filePath) {
+        JavaScanner s = new JavaScanner(code, filePath);
+        if (!s.tokenize()) return null;
+        return s.structure();
+    }
+
+    // ---------- 词法 ----------
+
+    private boolean tokenize() {
+        int n = code.length();
+        int line = 1;
+        int i = 0;
+        while (i < n) {
+            char c = code.charAt(i);
+            if (c == '\n') {
+                line++;
+                i++;
+            } else if (c == '\r') {
+                line++;
+                i += i + 1 < n && code.charAt(i + 1) == '\n' ? 2 : 1;
+            } else if (c == ' ' || c == '\t' || c == '\f') {
+                i++;
+            } else if (c == '/' && i + 1 < n && code.charAt(i + 1) == '/') {
+                int start = i;
+                i += 2;
+                while (i < n && code.charAt(i) != '\n' && code.charAt(i) != '\r') i++;
+                if (!commentEscapesSafe(start, i)) return false;
+            } else if (c == '/' && i + 1 < n && code.charAt(i + 1) == '*') {
+                int close = code.indexOf("*/", i + 2);
+                if (close < 0 || !commentEscapesSafe(i, close)) return false;
+                line += newlines(i + 2, close);
+                i = close + 2;
+            } else if (c == '"') {
+                int start = i;
+                int startLine = line;
+                if (code.startsWith("\"\"\"", i)) {
+                    // 文本块：到未转义的 """ 为止
+                    i += 3;
+                    while (true) {
+                        if (i >= n) return false;
+                        char d = code.charAt(i);
+                        if (d == '\\') {
+                            i = escape(i);
+                            if (i < 0) return false;
+                        } else if (d == '"' && code.startsWith("\"\"\"", i)) {
+                            i += 3;
+                            break;
+                        } else {
+                            if (d == '\n' || (d == '\r' && (i + 1 >= n || code.charAt(i + 1) != '\n'))) line++;
+                            i++;
+                        }
+                    }
+                } else {
+                    i = quoted(i, '"');
+                    if (i < 0) return false;
+                }
+                add(LITERAL, start, i, startLine);
+            } else if (c == '\'') {
+                int start = i;
+                i = quoted(i, '\'');
+                if (i < 0) return false;
+                add(LITERAL, start, i, line);
+            } else if (Character.isJavaIdentifierStart(c)) {
+                int start = i;
+                i++;
+                while (i < n && Character.isJavaIdentifierPart(code.charAt(i))) i++;
+                add(IDENT, start, i, line);
+            } else if (c >= '0' && c <= '9' || c == '.' && i + 1 < n && Character.isDigit(code.charAt(i + 1))) {
+                // 数字字面量（含 1.5e-3 中 e 之后的部分：- 作为运算符不影响结构）
+                int start = i;
+                i++;
+                while (i < n && (Character.isJavaIdentifierPart(code.charAt(i)) || code.charAt(i) == '.')) i++;
+                add(LITERAL, start, i, line);
+            } else if ("{}()[];,.@=<>?:!~+-*/&|^%".indexOf(c) >= 0) {
+                add(PUNCT, i, i + 1, line);
+                i++;
+            } else if (Character.isWhitespace(c) || Character.isIdentifierIgnorable(c)) {
+                i++;
+            } else {
+                return false; // # ` 等：不是合法的 Java
+            }
+        }
+        return true;
+    }
+
+    /** 普通字符串 / 字符字面量：返回结束引号之后的位置，没有在本行结束时返回 -1 */
+    private int quoted(int i, char quote) {
+        int n = code.length();
+        i++;
+        while (i < n) {
+            char d = code.charAt(i);
+            if (d == '\\') {
+                i = escape(i);
+                if (i < 0) return -1;
+            } else if (d == quote) {
+                return i + 1;
+            } else if (d == '\n' || d == '\r') {
+                return -1;
+            } else {
+                i++;
+            }
+        }
+        return -1;
+    }
+
+    /** 字面量中 i 处的转义序列：返回其后的位置；\\u 转义解码为引号、反斜杠或换行时返回 -1 */
+    private int escape(int i) {
+        if (i + 1 < code.length() && code.charAt(i + 1) == 'u') {
+            int end = unicodeEscapeEnd(i);
+            if (end < 0) return -1;
+            char c = (char) Integer.parseInt(code.substring(end - 4, end), 16);
+            return c == '"' || c == '\'' || c == '\\' || c == '\n' || c == '\r' ? -1 : end;
+        }
+        return i + 2;
+    }
+
+    /** 注释中的 \\u 转义不能是换行、* 或 /（会提前结束注释） */
+    private boolean commentEscapesSafe(int from, int to) {
+        for (int k = code.indexOf("\\u", from); k >= 0 && k < to; k = code.indexOf("\\u", k + 2)) {
+            int end = unicodeEscapeEnd(k);
+            if (end < 0) return false;
+            char c = (char) Integer.parseInt(code.substring(end - 4, end), 16);
+            if (c == '\n' || c == '\r' || c == '*' || c == '/') return false;
+        }
+        return true;
+    }
+
+    /** \\u+XXXX 的结束位置，不合法时返回 -1 */
+    private int unicodeEscapeEnd(int i) {
+        int j = i + 1;
+        while (j < code.length() && code.charAt(j) == 'u') j++;
+        if (j + 4 > code.length()) return -1;
+        for (int k = j; k < j + 4; k++) {
+            if (Character.digit(code.charAt(k), 16) < 0) return -1;
+        }
+        return j + 4;
+    }
+
+    private int newlines(int from, int to) {
+        int lines = 0;
+        for (int i = from; i < to; i++) {
+            char c = code.charAt(i);
+            if (c == '\n' || (c == '\r' && (i + 1 >= to || code.charAt(i + 1) != '\n'))) lines++;
+        }
+        return lines;
+    }
+
+    private void add(byte kind, int start, int end, int line) {
+        if (count == kinds.length) {
+            int cap = count * 2;
+            kinds = Arrays.copyOf(kinds, cap);
+            starts = Arrays.copyOf(starts, cap);
+            ends = Arrays.copyOf(ends, cap);
+            lines = Arrays.copyOf(lines, cap);
+        }
+        kinds[count] = kind;
+        starts[count] = start;
+        ends[count] = end;
+        lines[count] = line;
+        count++;
+    }
+
+    private boolean punct(int t, char c) {
+        return t >= 0 && t < count && kinds[t] == PUNCT && code.charAt(starts[t]) == c;
+    }
+
+    private boolean ident(int t) {
+        return t >= 0 && t < count && kinds[t] == IDENT;
+    }
+
+    private boolean ident(int t, String word) {
+        return ident(t) && ends[t] - starts[t] == word.length() && code.startsWith(word, starts[t]);
+    }
+
+    private String text(int t) {
+        return code.substring(starts[t], ends[t]);
+    }
+
+    // ---------- 结构 ----------
+
+    /** 一个大括号层 */
+    private static final class Frame {
+        final int kind;
+        final String name;          // TYPE：类型名
+        final boolean annotation;   // TYPE：注解类型（其成员不是方法）
+        boolean enumConstants;      // TYPE：枚举的常量部分（第一个 ; 之前）
+        int slot = -1;              // METHOD：在输出中的位置
+        final Header saved;         // 打开本层时外层的声明状态
+
+        Frame(int kind, String name, boolean annotation, boolean enumConstants, Header saved) {
+            this.kind = kind;
+            this.name = name;
+            this.annotation = annotation;
+            this.enumConstants = enumConstants;
+            this.saved = saved;
+        }
+    }
+
+    /** 当前层中正在读的声明 / 语句（从上一个 ; { } 之后开始） */
+    private static final class Header {
+        int startLine = -1;
+        int parenDepth;
+        boolean assign;             // 括号外出现 =（字段初始化、赋值语句）
+        String typeName;            // 类型声明的名字
+        boolean isEnum;
+        boolean isAnnotation;
+        String methodName;          // 类型体中括号外第一个 ( 之前的标识符
+        boolean paramsClosed;       // 参数表已结束
+        boolean inThrows;
+        boolean annotationDefault;  // 参数表之后的 default：注解成员的默认值
+        boolean odd;                // 参数表之后出现意外内容
+
+        Header copy() {
+            Header h = new Header();
+            h.startLine = startLine;
+            h.parenDepth = parenDepth;
+            h.assign = assign;
+            h.typeName = typeName;
+            h.isEnum = isEnum;
+            h.isAnnotation = isAnnotation;
+            h.methodName = methodName;
+            h.paramsClosed = paramsClosed;
+            h.inThrows = inThrows;
+            h.annotationDefault = annotationDefault;
+            h.odd = odd;
+            return h;
+        }
+
+        boolean isMethod() {
+            return typeName == null && !assign && methodName != null && paramsClosed && !odd && !annotationDefault;
+        }
+    }
+
+    private List<FunctionStat> structure() {
+        List<FunctionStat> out = new ArrayList<>();
+        List<Frame> stack = new ArrayList<>();
+        Header h = new Header();
+        for (int t = 0; t < count; t++) {
+            Frame frame = stack.isEmpty() ? null : stack.get(stack.size() - 1);
+            boolean typeBody = frame == null || frame.kind == TYPE;
+            int line = lines[t];
+            if (kinds[t] == PUNCT) {
+                char c = code.charAt(starts[t]);
+                switch (c) {
+                    case '@' -> {
+                        if (h.startLine < 0) h.startLine = line;
+                        if (ident(t + 1, "interface")) {
+                            if (!ident(t + 2)) return null;
+                            h.typeName = text(t + 2);
+                            h.isAnnotation = true;
+                            t += 2;
+                        } else {
+                            // 注解：限定名 + 可选的括号参数，整体跳过
+                            int u = t + 1;
+                            if (!ident(u)) return null;
+                            while (punct(u + 1, '.') && ident(u + 2)) u += 2;
+                            if (punct(u + 1, '(')) {
+                                int depth = 0;
+                                u++;
+                                for (; u < count; u++) {
+                                    if (punct(u, '(')) depth++;
+                                    else if (punct(u, ')') && --depth == 0) break;
+                                }
+                                if (u >= count) return null;
+                            }
+                            t = u;
+                        }
+                    }
+                    case '(' -> {
+                        if (h.startLine < 0) h.startLine = line;
+                        if (h.parenDepth == 0 && typeBody && h.typeName == null && !h.assign) {
+                            if (h.methodName == null && !h.paramsClosed && ident(t - 1)) {
+                                h.methodName = text(t - 1);
+                            } else {
+                                h.odd = true;
+                            }
+                        }
+                        h.parenDepth++;
+                    }
+                    case ')' -> {
+                        if (--h.parenDepth < 0) return null;
+                        if (h.parenDepth == 0 && h.methodName != null && !h.paramsClosed) h.paramsClosed = true;
+                    }
+                    case ';' -> {
+                        if (h.parenDepth > 0) break; // for (;;)
+                        if (frame != null && frame.kind == TYPE) {
+                            if (frame.enumConstants) {
+                                frame.enumConstants = false;
+                            } else if (!frame.annotation && h.isMethod()) {
+                                out.add(function(stack, h.methodName, h.startLine, line));
+                            } else if (!frame.annotation && h.methodName != null && h.typeName == null && !h.assign
+                                    && !h.annotationDefault) {
+                                return null; // 像方法又不完全是
+                            }
+                        }
+                        h = new Header();
+                    }
+                    case '{' -> {
+                        if (h.startLine < 0) h.startLine = line;
+                        Frame f;
+                        if (h.typeName != null && h.parenDepth == 0) {
+                            f = new Frame(TYPE, h.typeName, h.isAnnotation, h.isEnum, null);
+                        } else if (typeBody && frame != null && !frame.enumConstants && h.parenDepth == 0
+                                && h.methodName != null && h.typeName == null && !h.assign) {
+                            if (!h.isMethod()) {
+                                if (h.annotationDefault) {
+                                    f = new Frame(BLOCK, null, false, false, h);
+                                } else {
+                                    return null;
+                                }
+                            } else {
+                                f = new Frame(METHOD, null, false, false, null);
+                                f.slot = out.size();
+                                out.add(function(stack, h.methodName, h.startLine, line));
+                            }
+                        } else {
+                            f = new Frame(BLOCK, null, false, false, h);
+                        }
+                        stack.add(f);
+                        h = new Header();
+                    }
+                    case '}' -> {
+                        if (frame == null || h.parenDepth != 0) return null;
+                        stack.remove(stack.size() - 1);
+                        if (frame.kind == METHOD) {
+                            FunctionStat open = out.get(frame.slot);
+                            out.set(frame.slot, new FunctionStat(filePath, open.qualName, open.startLine, line,
+                                    true, open.isNested, false));
+                        }
+                        // 表达式中的块（lambda、匿名类、数组初始化、switch 表达式）之后，外层的语句继续
+                        Header saved = frame.saved;
+                        h = saved != null && (saved.parenDepth > 0 || saved.assign) ? saved.copy() : new Header();
+                    }
+                    case ',' -> {
+                        if (h.parenDepth == 0 && frame != null && frame.kind == TYPE && frame.enumConstants) {
+                            h = new Header();
+                        } else {
+                            afterParams(h, t);
+                        }
+                    }
+                    case '=' -> {
+                        if (h.parenDepth == 0) {
+                            h.assign = true;
+                            if (h.paramsClosed) h.odd = true;
+                        }
+                    }
+                    default -> {
+                        if (h.startLine < 0) h.startLine = line;
+                        afterParams(h, t);
+                    }
+                }
+            } else {
+                if (h.startLine < 0) h.startLine = line;
+                if (kinds[t] == IDENT && h.parenDepth == 0) {
+                    if ((ident(t, "class") || ident(t, "interface") || ident(t, "enum")) && !punct(t - 1, '.')) {
+                        if (!ident(t + 1)) return null;
+                        h.isEnum = ident(t, "enum");
+                        h.typeName = text(t + 1);
+                        t++;
+                        continue;
+                    }
+                    if (ident(t, "record") && ident(t + 1) && (punct(t + 2, '(') || punct(t + 2, '<'))
+                            && h.methodName == null) {
+                        h.typeName = text(t + 1);
+                        t++;
+                        continue;
+                    }
+                    if (h.paramsClosed) {
+                        if (ident(t, "throws")) h.inThrows = true;
+                        else if (ident(t, "default")) h.annotationDefault = true;
+                        else if (!h.inThrows) h.odd = true;
+                    }
+                } else if (h.paramsClosed && h.parenDepth == 0 && !h.annotationDefault) {
+                    h.odd = true; // 参数表之后的字面量
+                }
+            }
+        }
+        if (!stack.isEmpty() || h.parenDepth != 0) return null;
+        return out;
+    }
+
+    /** 参数表之后只允许 throws 子句中的类型（. , < > ? [ ] &）和数组维度 */
+    private void afterParams(Header h, int t) {
+        if (!h.paramsClosed || h.parenDepth != 0 || h.annotationDefault) return;
+        char c = code.charAt(starts[t]);
+        if (c == '[' || c == ']') return;
+        if (h.inThrows && ".,<>?&".indexOf(c) >= 0) return;
+        h.odd = true;
+    }
+
+    /** 限定名由栈中具名类型的名字组成；结束行在方法体结束时回填 */
+    private FunctionStat function(List<Frame> stack, String name, int startLine, int endLine) {
+        StringBuilder qual = new StringBuilder();
+        int named = 0;
+        for (Frame f : stack) {
+            if (f.kind == TYPE) {
+                qual.append(f.name).append('.');
+                named++;
+            }
+        }
+        qual.append(name);
+        return new FunctionStat(filePath, qual.toString(), startLine, endLine, true, named > 1, false);
+    }
+}
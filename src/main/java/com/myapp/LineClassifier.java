@@ -0,0 +1,192 @@
+package com.myapp;
+
+import java.nio.ByteBuffer;
+
+import com.myapp.CodeStatsCore.CodeMetrics;
+
+/**
+ * 字节级行分类器：直接在 UTF-8 字节（ByteBuffer / 内存映射文件）上统计空行、注释行、代码行，
+ * 不按行切分字符串，也不为每行分配 String。
+ *
+ * 分类规则与原先 split("\\r?\\n", -1) + trim() 的实现完全一致：
+ * trim() 去掉的是 <= ' ' 的字符，在 UTF-8 中它们都是单字节，多字节序列的每个字节都 >= 0x80，
+ * 所以按字节去首尾空白、匹配注释标记得到的结果相同。
+ */
+final class LineClassifier {
+
+    private LineClassifier() {}
+
+    /** C 系语言（Java / C / C++ / C#）：// 单行注释、块注释；非法 UTF-8 返回 null */
+    static CodeMetrics cLike(ByteBuffer buf) {
+        if (!isValidUtf8(buf)) return null;
+        CodeMetrics metrics = newMetrics();
+        int limit = buf.limit();
+        boolean inBlockComment = false;
+
+        int lineStart = buf.position();
+        while (true) {
+            int lineEnd = indexOf(buf, (byte) '\n', lineStart, limit);
+            int end = lineEnd < 0 ? limit : lineEnd;
+            metrics.totalLines++;
+
+            int s = trimStart(buf, lineStart, end);
+            int e = trimEnd(buf, s, end);
+            if (s == e) {
+                // 空行
+                metrics.blankLines++;
+            } else if (inBlockComment) {
+                // 块注释处理
+                metrics.commentLines++;
+                if (contains(buf, s, e, '*', '/')) inBlockComment = false;
+            } else if (startsWith(buf, s, e, '/', '*')) {
+                // 开始块注释
+                metrics.commentLines++;
+                if (!contains(buf, s, e, '*', '/')) inBlockComment = true;
+            } else if (startsWith(buf, s, e, '/', '/')) {
+                // 单行注释
+                metrics.commentLines++;
+            } else {
+                metrics.codeLines++;
+            }
+
+            if (lineEnd < 0) break;
+            lineStart = lineEnd + 1;
+        }
+        return metrics;
+    }
+
+    /** Python：# 单行注释、三引号文档字符串；非法 UTF-8 返回 null */
+    static CodeMetrics python(ByteBuffer buf) {
+        if (!isValidUtf8(buf)) return null;
+        CodeMetrics metrics = newMetrics();
+        int limit = buf.limit();
+        boolean inBlockComment = false;
+
+        int lineStart = buf.position();
+        while (true) {
+            int lineEnd = indexOf(buf, (byte) '\n', lineStart, limit);
+            int end = lineEnd < 0 ? limit : lineEnd;
+            metrics.totalLines++;
+
+            int s = trimStart(buf, lineStart, end);
+            int e = trimEnd(buf, s, end);
+            byte quote = s == e ? 0 : tripleQuoteAt(buf, s, e);
+            if (s == e) {
+                metrics.blankLines++;
+            } else if (quote != 0) {
+                // 多行字符串（文档字符串）：同一行没有第二个同类三引号时切换状态
+                metrics.commentLines++;
+                if (!containsTriple(buf, s + 3, e, quote)) inBlockComment = !inBlockComment;
+            } else if (inBlockComment) {
+                metrics.commentLines++;
+                if (containsTriple(buf, s, e, (byte) '"') || containsTriple(buf, s, e, (byte) '\'')) {
+                    inBlockComment = false;
+                }
+            } else if (buf.get(s) == '#') {
+                metrics.commentLines++;
+            } else {
+                metrics.codeLines++;
+            }
+
+            if (lineEnd < 0) break;
+            lineStart = lineEnd + 1;
+        }
+        return metrics;
+    }
+
+    private static CodeMetrics newMetrics() {
+        CodeMetrics metrics = new CodeMetrics();
+        metrics.fileCount = 1;
+        return metrics;
+    }
+
+    private static int indexOf(ByteBuffer buf, byte b, int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf.get(i) == b) return i;
+        }
+        return -1;
+    }
+
+    /** 与 String.trim() 相同：跳过 <= ' ' 的字节（按无符号比较） */
+    private static int trimStart(ByteBuffer buf, int from, int to) {
+        while (from < to && (buf.get(from) & 0xFF) <= ' ') from++;
+        return from;
+    }
+
+    private static int trimEnd(ByteBuffer buf, int from, int to) {
+        while (to > from && (buf.get(to - 1) & 0xFF) <= ' ') to--;
+        return to;
+    }
+
+    private static boolean startsWith(ByteBuffer buf, int s, int e, char c0, char c1) {
+        return e - s >= 2 && buf.get(s) == c0 && buf.get(s + 1) == c1;
+    }
+
+    private static boolean contains(ByteBuffer buf, int s, int e, char c0, char c1) {
+        for (int i = s; i + 1 < e; i++) {
+            if (buf.get(i) == c0 && buf.get(i + 1) == c1) return true;
+        }
+        return false;
+    }
+
+    /** 行首是三引号时返回引号字符，否则返回 0 */
+    private static byte tripleQuoteAt(ByteBuffer buf, int s, int e) {
+        if (e - s < 3) return 0;
+        byte q = buf.get(s);
+        if ((q == '"' || q == '\'') && buf.get(s + 1) == q && buf.get(s + 2) == q) return q;
+        return 0;
+    }
+
+    private static boolean containsTriple(ByteBuffer buf, int s, int e, byte q) {
+        for (int i = s; i + 2 < e; i++) {
+            if (buf.get(i) == q && buf.get(i + 1) == q && buf.get(i + 2) == q) return true;
+        }
+        return false;
+    }
+
+    /**
+     * 严格 UTF-8 校验（与 Files.readString 的解码器一致：拒绝过长编码、代理区和超出 U+10FFFF 的码点）。
+     * 纯 ASCII 部分每次检查 8 个字节。
+     */
+    static boolean isValidUtf8(ByteBuffer buf) {
+        int i = buf.position();
+        int limit = buf.limit();
+        while (i < limit) {
+            // ASCII 快速路径
+            if (i + 8 <= limit && (buf.getLong(i) & 0x8080808080808080L) == 0) {
+                i += 8;
+                continue;
+            }
+            int b0 = buf.get(i) & 0xFF;
+            if (b0 < 0x80) {
+                i++;
+                continue;
+            }
+            int need;
+            int lo = 0x80;
+            int hi = 0xBF;
+            if (b0 >= 0xC2 && b0 <= 0xDF) {
+                need = 1;
+            } else if (b0 >= 0xE0 && b0 <= 0xEF) {
+                need = 2;
+                if (b0 == 0xE0) lo = 0xA0;        // 过长编码
+                else if (b0 == 0xED) hi = 0x9F;   // 代理区
+            } else if (b0 >= 0xF0 && b0 <= 0xF4) {
+                need = 3;
+                if (b0 == 0xF0) lo = 0x90;        // 过长编码
+                else if (b0 == 0xF4) hi = 0x8F;   // > U+10FFFF
+            } else {
+                return false;
+            }
+            if (i + need >= limit) return false;  // 序列被截断
+            int b1 = buf.get(i + 1) & 0xFF;
+            if (b1 < lo || b1 > hi) return false;
+            for (int k = 2; k <= need; k++) {
+                int b = buf.get(i + k) & 0xFF;
+                if (b < 0x80 || b > 0xBF) return false;
+            }
+            i += need + 1;
+        }
+        return true;
+    }
+}
@@ -0,0 +1,299 @@
+package com.myapp;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * 目录遍历时的文件过滤：请求中的 include / exclude 规则和 .gitignore 类忽略文件。
+ * 规则使用 .gitignore 语法（*、?、[...]、**、前导 / 锚定、末尾 / 只匹配目录、! 取反），
+ * exclude 和 include 相对于遍历的根目录，忽略文件中的规则相对于其所在目录。
+ *
+ * 被排除的目录由遍历方直接跳过（SKIP_SUBTREE），其中的内容不会被列出；
+ * 与 git 一样，目录被排除后其中的文件不能再被取反规则重新包含。
+ * 每个目录的忽略文件只读取一次并缓存，之后修改忽略文件不会生效。
+ */
+final class PathFilter {
+    static final String IGNORE_FILE = ".gitignore";
+    private static final String GIT_DIR = ".git";
+    private static final IgnoreRules[] NO_RULES = new IgnoreRules[0];
+
+    private final List<Rule> includes;
+    private final List<Rule> excludes;
+    private final boolean ignoreFiles;
+    // 目录 -> 作用于其中条目的忽略规则（从仓库顶层到该目录，浅的在前）
+    private final Map<Path, IgnoreRules[]> chains = new ConcurrentHashMap<>();
+    // 遍历根目录 -> 所在 git 仓库的顶层目录（没有仓库时为根目录本身）
+    private final Map<Path, Path> tops = new ConcurrentHashMap<>();
+
+    private PathFilter(List<Rule> includes, List<Rule> excludes, boolean ignoreFiles) {
+        this.includes = includes;
+        this.excludes = excludes;
+        this.ignoreFiles = ignoreFiles;
+    }
+
+    /** 没有任何规则时返回 null（不过滤） */
+    static PathFilter of(List<String> includes, List<String> excludes, boolean ignoreFiles) {
+        List<Rule> in = parse(includes);
+        List<Rule> ex = parse(excludes);
+        if (in.isEmpty() && ex.isEmpty() && !ignoreFiles) return null;
+        return new PathFilter(in, ex, ignoreFiles);
+    }
+
+    static PathFilter of(CodeStatsService.AnalyzeRequest req) {
+        return of(req.includes, req.excludes, req.ignoreFiles);
+    }
+
+    /**
+     * path（root 下的文件或目录）本身是否被排除；不检查上级目录（遍历时上级目录已经检查过）。
+     * 被排除的目录应整个跳过
+     */
+    boolean excluded(Path root, Path path, boolean directory) {
+        Path abs = absolute(path);
+        if (ignoreFiles && directory && GIT_DIR.equals(fileName(abs))) return true;
+        Path absRoot = absolute(root);
+        if (abs.equals(absRoot)) return false;
+        if (!excludes.isEmpty() && matchLast(excludes, relative(absRoot, abs), directory)) return true;
+        if (!ignoreFiles || abs.getParent() == null) return false;
+        Boolean ignored = null;
+        for (IgnoreRules rules : chain(absRoot, abs.getParent())) {
+            String rel = relative(rules.base, abs);
+            for (Rule r : rules.rules) {
+                if (r.matches(rel, directory)) ignored = !r.negate;
+            }
+        }
+        return ignored != null && ignored;
+    }
+
+    /** 没有 include 规则，或文件本身 / 某个上级目录（在 root 下）匹配某条 include 规则 */
+    boolean included(Path root, Path file) {
+        if (includes.isEmpty()) return true;
+        Path absRoot = absolute(root);
+        Path abs = absolute(file);
+        if (matchLast(includes, relative(absRoot, abs), false)) return true;
+        for (Path d = abs.getParent(); d != null && d.startsWith(absRoot) && !d.equals(absRoot); d = d.getParent()) {
+            if (matchLast(includes, relative(absRoot, d), true)) return true;
+        }
+        return false;
+    }
+
+    /** 完整检查（用于不经过遍历得到的路径，例如监视事件）：path 本身或它在 root 下的某一级上级目录被排除 */
+    boolean excludedWithParents(Path root, Path path, boolean directory) {
+        Path absRoot = absolute(root);
+        Path abs = absolute(path);
+        if (!abs.startsWith(absRoot)) return true;
+        List<Path> dirs = new ArrayList<>();
+        for (Path d = abs.getParent(); d != null && !d.equals(absRoot) && d.startsWith(absRoot); d = d.getParent()) {
+            dirs.add(d);
+        }
+        for (int i = dirs.size() - 1; i >= 0; i--) {
+            if (excluded(absRoot, dirs.get(i), true)) return true;
+        }
+        return excluded(absRoot, abs, directory);
+    }
+
+    /** 文件未被排除（含上级目录）且满足 include */
+    boolean accepts(Path root, Path file) {
+        return !excludedWithParents(root, file, false) && included(root, file);
+    }
+
+    /**
+     * 仓库模式：rel 为相对根目录、以 / 分隔的路径字符串（例如 git 树中的路径），不经过 Path，
+     * 任何在 git 中合法的路径名都可以使用；只检查 include / exclude 规则，不读取忽略文件
+     */
+    boolean excluded(String rel, boolean directory) {
+        return !excludes.isEmpty() && matchLast(excludes, rel, directory);
+    }
+
+    /** 同 included(Path, Path)，rel 为以 / 分隔的相对路径 */
+    boolean included(String rel) {
+        if (includes.isEmpty()) return true;
+        if (matchLast(includes, rel, false)) return true;
+        for (int i = rel.lastIndexOf('/'); i > 0; i = rel.lastIndexOf('/', i - 1)) {
+            if (matchLast(includes, rel.substring(0, i), true)) return true;
+        }
+        return false;
+    }
+
+    // ---------- 忽略文件 ----------
+
+    /** 某个目录下生效的忽略规则链（从仓库顶层到 dir），按目录缓存 */
+    private IgnoreRules[] chain(Path absRoot, Path dir) {
+        IgnoreRules[] cached = chains.get(dir);
+        if (cached != null) return cached;
+        Path top = tops.computeIfAbsent(absRoot, PathFilter::repositoryTop);
+        List<IgnoreRules> list = new ArrayList<>();
+        if (!dir.equals(top) && dir.startsWith(top) && dir.getParent() != null) {
+            list.addAll(List.of(chain(absRoot, dir.getParent())));
+        } else if (dir.equals(top)) {
+            // 仓库级的排除规则优先级低于 .gitignore
+            IgnoreRules info = load(dir.resolve(GIT_DIR).resolve("info").resolve("exclude"), dir);
+            if (info != null) list.add(info);
+        }
+        IgnoreRules own = load(dir.resolve(IGNORE_FILE), dir);
+        if (own != null) list.add(own);
+        IgnoreRules[] chain = list.isEmpty() ? NO_RULES : list.toArray(NO_RULES);
+        chains.putIfAbsent(dir, chain);
+        return chain;
+    }
+
+    /** 向上查找包含 .git 的目录；在仓库的子目录中分析时，上级目录中的 .gitignore 同样生效 */
+    private static Path repositoryTop(Path absRoot) {
+        for (Path d = absRoot; d != null; d = d.getParent()) {
+            if (Files.exists(d.resolve(GIT_DIR))) return d;
+        }
+        return absRoot;
+    }
+
+    /** 读取一个忽略文件；不存在或没有规则时返回 null */
+    private static IgnoreRules load(Path file, Path base) {
+        if (!Files.isRegularFile(file)) return null;
+        try {
+            List<Rule> rules = parse(Files.readAllLines(file, StandardCharsets.UTF_8));
+            return rules.isEmpty() ? null : new IgnoreRules(base, rules);
+        } catch (IOException | RuntimeException e) {
+            return null; // 无法读取或不是合法 UTF-8：当作没有规则
+        }
+    }
+
+    /** 一个忽略文件中的规则，base 为其所在目录 */
+    private static final class IgnoreRules {
+        final Path base;
+        final List<Rule> rules;
+
+        IgnoreRules(Path base, List<Rule> rules) {
+            this.base = base;
+            this.rules = rules;
+        }
+    }
+
+    // ---------- 规则 ----------
+
+    /** 按顺序匹配，最后一条匹配的规则决定结果 */
+    private static boolean matchLast(List<Rule> rules, String rel, boolean directory) {
+        boolean matched = false;
+        for (Rule r : rules) {
+            if (r.matches(rel, directory)) matched = !r.negate;
+        }
+        return matched;
+    }
+
+    private static List<Rule> parse(List<String> lines) {
+        List<Rule> rules = new ArrayList<>();
+        if (lines == null) return rules;
+        for (String line : lines) {
+            Rule r = line == null ? null : Rule.parse(line);
+            if (r != null) rules.add(r);
+        }
+        return rules;
+    }
+
+    /** 一条 .gitignore 语法的规则，编译为对相对路径（以 / 分隔）的正则 */
+    private static final class Rule {
+        final Pattern pattern;
+        final boolean negate;
+        final boolean directoryOnly;
+
+        private Rule(Pattern pattern, boolean negate, boolean directoryOnly) {
+            this.pattern = pattern;
+            this.negate = negate;
+            this.directoryOnly = directoryOnly;
+        }
+
+        boolean matches(String rel, boolean directory) {
+            return (directory || !directoryOnly) && pattern.matcher(rel).matches();
+        }
+
+        /** 空行和 # 注释返回 null */
+        static Rule parse(String line) {
+            String s = stripTrailingSpaces(line);
+            if (s.isEmpty() || s.startsWith("#")) return null;
+            boolean negate = s.startsWith("!");
+            if (negate) s = s.substring(1);
+            else if (s.startsWith("\\!") || s.startsWith("\\#")) s = s.substring(1);
+            boolean directoryOnly = s.endsWith("/");
+            if (directoryOnly) s = s.substring(0, s.length() - 1);
+            if (s.isEmpty()) return null;
+            // 含 / 的规则相对于基准目录锚定，否则匹配任意一级的名字
+            boolean anchored = s.indexOf('/') >= 0;
+            if (s.startsWith("/")) s = s.substring(1);
+            String regex = (anchored ? "" : "(?:.*/)?") + globToRegex(s);
+            return new Rule(Pattern.compile(regex), negate, directoryOnly);
+        }
+
+        /** 去掉行尾未转义的空格 */
+        private static String stripTrailingSpaces(String line) {
+            int end = line.length();
+            while (end > 0 && line.charAt(end - 1) == ' ' && (end < 2 || line.charAt(end - 2) != '\\')) end--;
+            return line.substring(0, end);
+        }
+
+        private static String globToRegex(String glob) {
+            StringBuilder sb = new StringBuilder();
+            int n = glob.length();
+            for (int i = 0; i < n; i++) {
+                char c = glob.charAt(i);
+                switch (c) {
+                    case '*' -> {
+                        if (i + 1 < n && glob.charAt(i + 1) == '*') {
+                            boolean atStart = i == 0 || glob.charAt(i - 1) == '/';
+                            if (atStart && i + 2 < n && glob.charAt(i + 2) == '/') {
+                                sb.append("(?:.*/)?"); // **/ ：零或多级目录
+                                i += 2;
+                            } else {
+                                sb.append(".*");
+                                i++;
+                            }
+                        } else {
+                            sb.append("[^/]*");
+                        }
+                    }
+                    case '?' -> sb.append("[^/]");
+                    case '[' -> {
+                        int close = glob.indexOf(']', i + 2);
+                        if (close < 0) {
+                            sb.append("\\[");
+                        } else {
+                            String body = glob.substring(i + 1, close);
+                            if (body.startsWith("!")) body = "^" + body.substring(1);
+                            sb.append('[').append(body.replace("\\", "\\\\").replace("[", "\\[")).append(']');
+                            i = close;
+                        }
+                    }
+                    case '\\' -> {
+                        if (i + 1 < n) sb.append(Pattern.quote(String.valueOf(glob.charAt(++i))));
+                    }
+                    default -> {
+                        if ("$^.+(){}|".indexOf(c) >= 0) sb.append('\\');
+                        sb.append(c);
+                    }
+                }
+            }
+            return sb.toString();
+        }
+    }
+
+    // ---------- 路径工具 ----------
+
+    private static Path absolute(Path p) {
+        return p.toAbsolutePath().normalize();
+    }
+
+    private static String fileName(Path p) {
+        Path name = p.getFileName();
+        return name == null ? "" : name.toString();
+    }
+
+    /** abs 相对于 base 的路径，统一用 / 分隔 */
+    private static String relative(Path base, Path abs) {
+        String rel = base.relativize(abs).toString();
+        return File.separatorChar == '/' ? rel : rel.replace(File.separatorChar, '/');
+    }
+}
@@ -0,0 +1,177 @@
+package com.myapp;
+
+import java.util.AbstractList;
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.ConcurrentModificationException;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.myapp.CodeStatsCore.FunctionStat;
+
+/**
+ * 按给定顺序排列的函数明细（只读的 List 视图），插入、删除和按下标访问都是 O(log n)：
+ * 带子树大小的 treap，键为 (order, seq)。seq 由调用方给出且互不相同，
+ * 相等（按 order）的元素按 seq 排列，因此按出现顺序递增分配 seq 即得到与稳定排序相同的结果。
+ *
+ * 不是线程安全的；遍历期间修改会抛出 ConcurrentModificationException。
+ */
+final class SortedFunctionList extends AbstractList<FunctionStat> {
+
+    private static final class Node {
+        final FunctionStat value;
+        final long seq;
+        final int priority;
+        int size = 1;
+        Node left;
+        Node right;
+
+        Node(FunctionStat value, long seq, int priority) {
+            this.value = value;
+            this.seq = seq;
+            this.priority = priority;
+        }
+    }
+
+    private final Comparator<FunctionStat> order;
+    private Node root;
+    private int seed = 0x2545F491;   // 固定种子：同样的操作序列得到同样的树
+
+    SortedFunctionList(Comparator<FunctionStat> order) {
+        this.order = order;
+    }
+
+    /** 插入 f；seq 在列表中必须唯一，删除时需给出同一个 seq */
+    void insert(FunctionStat f, long seq) {
+        Node[] parts = split(root, f, seq);
+        root = merge(merge(parts[0], new Node(f, seq, nextPriority())), parts[1]);
+        modCount++;
+    }
+
+    /** 删除以 (f, seq) 插入的元素；不存在时返回 false */
+    boolean remove(FunctionStat f, long seq) {
+        int before = size();
+        root = erase(root, f, seq);
+        if (size() == before) return false;
+        modCount++;
+        return true;
+    }
+
+    @Override
+    public FunctionStat get(int index) {
+        if (index < 0 || index >= size()) throw new IndexOutOfBoundsException("index " + index + ", size " + size());
+        Node t = root;
+        while (true) {
+            int left = size(t.left);
+            if (index < left) {
+                t = t.left;
+            } else if (index == left) {
+                return t.value;
+            } else {
+                index -= left + 1;
+                t = t.right;
+            }
+        }
+    }
+
+    @Override
+    public int size() {
+        return size(root);
+    }
+
+    /** 中序遍历，每个元素均摊 O(1) */
+    @Override
+    public Iterator<FunctionStat> iterator() {
+        return new Iterator<>() {
+            private final Deque<Node> stack = new ArrayDeque<>();
+            private final int expectedModCount = modCount;
+
+            {
+                pushLeft(root);
+            }
+
+            @Override
+            public boolean hasNext() {
+                return !stack.isEmpty();
+            }
+
+            @Override
+            public FunctionStat next() {
+                if (modCount != expectedModCount) throw new ConcurrentModificationException();
+                if (stack.isEmpty()) throw new NoSuchElementException();
+                Node t = stack.pop();
+                pushLeft(t.right);
+                return t.value;
+            }
+
+            private void pushLeft(Node t) {
+                for (; t != null; t = t.left) stack.push(t);
+            }
+        };
+    }
+
+    // ---------- treap ----------
+
+    private int compare(FunctionStat f, long seq, Node t) {
+        int c = order.compare(f, t.value);
+        return c != 0 ? c : Long.compare(seq, t.seq);
+    }
+
+    /** 分成小于 (f, seq) 的部分和其余部分 */
+    private Node[] split(Node t, FunctionStat f, long seq) {
+        if (t == null) return new Node[2];
+        if (compare(f, seq, t) > 0) {
+            Node[] parts = split(t.right, f, seq);
+            t.right = parts[0];
+            update(t);
+            parts[0] = t;
+            return parts;
+        }
+        Node[] parts = split(t.left, f, seq);
+        t.left = parts[1];
+        update(t);
+        parts[1] = t;
+        return parts;
+    }
+
+    /** a 的所有键都小于 b 的 */
+    private static Node merge(Node a, Node b) {
+        if (a == null) return b;
+        if (b == null) return a;
+        if (a.priority > b.priority) {
+            a.right = merge(a.right, b);
+            update(a);
+            return a;
+        }
+        b.left = merge(a, b.left);
+        update(b);
+        return b;
+    }
+
+    private Node erase(Node t, FunctionStat f, long seq) {
+        if (t == null) return null;
+        int c = compare(f, seq, t);
+        if (c == 0) return merge(t.left, t.right);
+        if (c < 0) t.left = erase(t.left, f, seq);
+        else t.right = erase(t.right, f, seq);
+        update(t);
+        return t;
+    }
+
+    private static void update(Node t) {
+        t.size = 1 + size(t.left) + size(t.right);
+    }
+
+    private static int size(Node t) {
+        return t == null ? 0 : t.size;
+    }
+
+    private int nextPriority() {
+        // xorshift32
+        seed ^= seed << 13;
+        seed ^= seed >>> 17;
+        seed ^= seed << 5;
+        return seed;
+    }
+}